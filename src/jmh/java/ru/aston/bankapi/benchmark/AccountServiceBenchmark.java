@@ -0,0 +1,97 @@
+package ru.aston.bankapi.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.aston.bankapi.model.Account;
+import ru.aston.bankapi.service.AccountService;
+
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Пропускная способность изменяющих баланс операций. В режиме contended все потоки
+ * работают с одной парой счетов и конкурируют за блокировки, в режиме uncontended
+ * у каждого потока своя пара.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = {"-Xms1g", "-Xmx2g"})
+public class AccountServiceBenchmark {
+
+    static final String PIN_CODE = "1234";
+    private static final BigDecimal INITIAL_AMOUNT = new BigDecimal("1000000000000");
+
+    @Param({"contended", "uncontended"})
+    public String accounts;
+
+    private AccountService accountService;
+    private AccountPair shared;
+
+    @Setup(Level.Trial)
+    public void setUp(BankContext context) {
+        accountService = context.getBean(AccountService.class);
+        shared = createPair();
+    }
+
+    AccountPair createPair() {
+        return new AccountPair(createAccount(), createAccount());
+    }
+
+    private String createAccount() {
+        Account account = accountService.createAccount("benchmark", PIN_CODE).orElseThrow();
+        accountService.deposit(account.getAccNum(), INITIAL_AMOUNT);
+        return account.getAccNum();
+    }
+
+    @State(Scope.Thread)
+    public static class ThreadAccounts {
+
+        AccountPair pair;
+        long invocations;
+
+        @Setup(Level.Trial)
+        public void setUp(AccountServiceBenchmark benchmark) {
+            pair = "contended".equals(benchmark.accounts) ? benchmark.shared : benchmark.createPair();
+        }
+    }
+
+    record AccountPair(String first, String second) {
+    }
+
+    @Benchmark
+    public void deposit(ThreadAccounts thread) {
+        accountService.deposit(thread.pair.first(), BigDecimal.ONE);
+    }
+
+    @Benchmark
+    public void withdraw(ThreadAccounts thread) {
+        accountService.withdraw(thread.pair.first(), BigDecimal.ONE, PIN_CODE);
+    }
+
+    @Benchmark
+    public void transfer(ThreadAccounts thread) {
+        // Направление чередуется, чтобы балансы пары не расходились.
+        var forward = (thread.invocations++ & 1) == 0;
+        var pair = thread.pair;
+        accountService.transfer(forward ? pair.first() : pair.second(), forward ? pair.second() : pair.first(),
+                BigDecimal.ONE, PIN_CODE);
+    }
+
+    @Benchmark
+    public Account getAccount(ThreadAccounts thread) {
+        return accountService.getAccountByAccNum(thread.pair.first()).orElseThrow();
+    }
+}
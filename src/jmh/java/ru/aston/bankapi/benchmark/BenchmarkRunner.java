@@ -0,0 +1,43 @@
+package ru.aston.bankapi.benchmark;
+
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.results.format.ResultFormatFactory;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Запускает все замеры JMH для каждого числа потоков из bank.jmh.threads и пишет
+ * общий JSON-отчет, пригодный для сравнения между релизами.
+ * Аргументы командной строки передаются JMH без изменений.
+ */
+public class BenchmarkRunner {
+
+    private static final String DEFAULT_RESULT = "target/jmh-result.json";
+
+    public static void main(String[] args) throws Exception {
+        var commandLine = new CommandLineOptions(args);
+        var threads = Arrays.stream(System.getProperty("bank.jmh.threads", "1,8,64").split(","))
+                .map(String::trim)
+                .mapToInt(Integer::parseInt)
+                .toArray();
+
+        List<RunResult> results = new ArrayList<>();
+        for (int count : threads) {
+            var options = new OptionsBuilder()
+                    .parent(commandLine)
+                    .threads(count)
+                    .build();
+            results.addAll(new Runner(options).run());
+        }
+
+        var result = commandLine.getResult().orElse(DEFAULT_RESULT);
+        ResultFormatFactory.getInstance(ResultFormatType.JSON, result).writeOut(results);
+        System.out.println("Результаты JMH записаны в " + result);
+    }
+}
@@ -0,0 +1,76 @@
+package ru.aston.bankapi.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import ru.aston.bankapi.BankApiApplication;
+import ru.aston.bankapi.service.AccountService;
+
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Стоимость логирования на горячем пути deposit. В режиме sync используются настройки
+ * по умолчанию (SQL в консоли, синхронный вывод), в режиме async включается профиль prod
+ * с асинхронным аппендером и выключенным логированием SQL.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = {"-Xms1g", "-Xmx2g"})
+public class LoggingBenchmark {
+
+    @Param({"sync", "async"})
+    public String logging;
+
+    private ConfigurableApplicationContext context;
+    private AccountService accountService;
+
+    @Setup(Level.Trial)
+    public void start() {
+        var builder = new SpringApplicationBuilder(BankApiApplication.class).web(WebApplicationType.NONE);
+        if ("async".equals(logging)) {
+            builder.profiles("prod");
+        }
+        context = builder.run();
+        accountService = context.getBean(AccountService.class);
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() {
+        context.close();
+    }
+
+    @State(Scope.Thread)
+    public static class ThreadAccount {
+
+        String accNum;
+
+        @Setup(Level.Trial)
+        public void setUp(LoggingBenchmark benchmark) {
+            accNum = benchmark.accountService.createAccount("benchmark", AccountServiceBenchmark.PIN_CODE)
+                    .orElseThrow()
+                    .getAccNum();
+        }
+    }
+
+    @Benchmark
+    public void deposit(ThreadAccount thread) {
+        accountService.deposit(thread.accNum, BigDecimal.ONE);
+    }
+}
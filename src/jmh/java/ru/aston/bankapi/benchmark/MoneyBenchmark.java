@@ -0,0 +1,95 @@
+package ru.aston.bankapi.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.aston.bankapi.exceptionHandler.NotEnoughFundsException;
+import ru.aston.bankapi.model.Money;
+
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Арифметика баланса при пополнении и переводе: BigDecimal против копеек в long.
+ * Распределение памяти на операцию смотреть с -prof gc.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MoneyBenchmark {
+
+    private static final BigDecimal DECIMAL_AMOUNT = new BigDecimal("12.34");
+    private static final Money MONEY_AMOUNT = Money.of(DECIMAL_AMOUNT);
+
+    private BigDecimal decimalFrom = new BigDecimal("1000000.00");
+    private BigDecimal decimalTo = new BigDecimal("1000000.00");
+    private Money moneyFrom = Money.of(decimalFrom);
+    private Money moneyTo = Money.of(decimalTo);
+    private long invocations;
+
+    @Benchmark
+    public BigDecimal decimalDeposit() {
+        decimalTo = decimalTo.add(DECIMAL_AMOUNT);
+        return decimalTo;
+    }
+
+    @Benchmark
+    public Money moneyDeposit() {
+        moneyTo = moneyTo.plus(MONEY_AMOUNT);
+        return moneyTo;
+    }
+
+    @Benchmark
+    public BigDecimal decimalTransfer() {
+        // Направление чередуется, чтобы балансы не расходились.
+        if ((invocations++ & 1) == 0) {
+            if (decimalFrom.compareTo(DECIMAL_AMOUNT) < 0) {
+                throw new NotEnoughFundsException();
+            }
+            decimalFrom = decimalFrom.subtract(DECIMAL_AMOUNT);
+            decimalTo = decimalTo.add(DECIMAL_AMOUNT);
+        } else {
+            if (decimalTo.compareTo(DECIMAL_AMOUNT) < 0) {
+                throw new NotEnoughFundsException();
+            }
+            decimalTo = decimalTo.subtract(DECIMAL_AMOUNT);
+            decimalFrom = decimalFrom.add(DECIMAL_AMOUNT);
+        }
+        return decimalFrom;
+    }
+
+    @Benchmark
+    public Money moneyTransfer() {
+        if ((invocations++ & 1) == 0) {
+            if (moneyFrom.isLessThan(MONEY_AMOUNT)) {
+                throw new NotEnoughFundsException();
+            }
+            moneyFrom = moneyFrom.minus(MONEY_AMOUNT);
+            moneyTo = moneyTo.plus(MONEY_AMOUNT);
+        } else {
+            if (moneyTo.isLessThan(MONEY_AMOUNT)) {
+                throw new NotEnoughFundsException();
+            }
+            moneyTo = moneyTo.minus(MONEY_AMOUNT);
+            moneyFrom = moneyFrom.plus(MONEY_AMOUNT);
+        }
+        return moneyFrom;
+    }
+
+    /**
+     * Путь от суммы запроса: проверка масштаба и преобразование BigDecimal в копейки.
+     */
+    @Benchmark
+    public Money moneyFromRequest() {
+        return Money.of(DECIMAL_AMOUNT);
+    }
+}
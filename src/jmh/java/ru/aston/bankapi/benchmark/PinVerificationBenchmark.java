@@ -0,0 +1,76 @@
+package ru.aston.bankapi.benchmark;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.aston.bankapi.config.PinProperties;
+import ru.aston.bankapi.service.pin.PinVerifier;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Стоимость проверки пин-кода на один запрос. cached=true - повторные проверки
+ * 100 счетов в пределах времени жизни кэша (кэш заполняется при подготовке),
+ * cached=false - каждая проверка считает PBKDF2 заново, как до появления кэша. Бюджет на запрос - 50 мкс; без кэша он
+ * превышается на порядки при рабочем числе итераций.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PinVerificationBenchmark {
+
+    private static final int ACCOUNTS = 100;
+    private static final String PIN_CODE = "1234";
+
+    @Param({"120000"})
+    public int iterations;
+
+    @Param({"true", "false"})
+    public boolean cached;
+
+    private PinVerifier pinVerifier;
+    private String[] accNums;
+    private String[] hashes;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        var properties = new PinProperties();
+        properties.setIterations(iterations);
+        // Подготовка на медленной машине может занять больше минуты, записи не должны истечь к замеру.
+        properties.setCacheTtl(Duration.ofHours(1));
+        pinVerifier = new PinVerifier(properties, new SimpleMeterRegistry());
+        accNums = new String[ACCOUNTS];
+        hashes = new String[ACCOUNTS];
+        for (int i = 0; i < ACCOUNTS; i++) {
+            accNums[i] = "account-" + i;
+            hashes[i] = pinVerifier.hash(PIN_CODE);
+            if (cached) {
+                pinVerifier.matches(accNums[i], hashes[i], PIN_CODE);
+            }
+        }
+    }
+
+    @Benchmark
+    public boolean verify() {
+        int i = ThreadLocalRandom.current().nextInt(ACCOUNTS);
+        if (!cached) {
+            pinVerifier.invalidate(accNums[i]);
+        }
+        return pinVerifier.matches(accNums[i], hashes[i], PIN_CODE);
+    }
+}
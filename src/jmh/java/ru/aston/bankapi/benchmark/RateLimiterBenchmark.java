@@ -0,0 +1,61 @@
+package ru.aston.bankapi.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.aston.bankapi.service.ratelimit.TokenBuckets;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Конкуренция за таблицу корзин токенов при 64 потоках. stripes=1 - одна общая блокировка,
+ * stripes=64 - сегменты по умолчанию. В режиме spread потоки обращаются к случайным
+ * из 10 000 счетов, в режиме hot - все к одному счету.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(64)
+@Fork(1)
+public class RateLimiterBenchmark {
+
+    private static final int ACCOUNTS = 10_000;
+
+    @Param({"1", "64"})
+    public int stripes;
+
+    @Param({"spread", "hot"})
+    public String keys;
+
+    private TokenBuckets buckets;
+    private String[] accNums;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        // Корзины не пустеют, чтобы измерялась работа с таблицей, а не отказы.
+        buckets = new TokenBuckets(Integer.MAX_VALUE, 1e12, 100_000, stripes);
+        accNums = new String[ACCOUNTS];
+        for (int i = 0; i < ACCOUNTS; i++) {
+            accNums[i] = "account-" + i;
+        }
+    }
+
+    @Benchmark
+    public long tryConsume() {
+        var accNum = "hot".equals(keys) ? accNums[0] : accNums[ThreadLocalRandom.current().nextInt(ACCOUNTS)];
+        return buckets.tryConsume(accNum);
+    }
+}
@@ -0,0 +1,87 @@
+package ru.aston.bankapi.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.aston.bankapi.dto.TransactionFilterDto;
+import ru.aston.bankapi.dto.TransactionPageDto;
+import ru.aston.bankapi.model.Operation;
+import ru.aston.bankapi.model.Transaction;
+import ru.aston.bankapi.service.TransactionService;
+import ru.aston.bankapi.service.history.HistoryRelay;
+
+import java.math.BigDecimal;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Запросы истории операций по заранее заполненной таблице. В режиме contended
+ * все потоки читают историю одного счета, в режиме uncontended - случайных счетов.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = {"-Xms1g", "-Xmx2g"})
+public class TransactionServiceBenchmark {
+
+    private static final int ACCOUNTS = 1_000;
+    private static final int TRANSACTIONS = 100_000;
+    private static final int CHUNK = 1_000;
+    private static final int PAGE_SIZE = 100;
+
+    @Param({"contended", "uncontended"})
+    public String accounts;
+
+    private TransactionService transactionService;
+
+    @Setup(Level.Trial)
+    public void setUp(BankContext context) {
+        transactionService = context.getBean(TransactionService.class);
+
+        var random = ThreadLocalRandom.current();
+        List<Transaction> chunk = new ArrayList<>(CHUNK);
+        for (int i = 0; i < TRANSACTIONS; i++) {
+            chunk.add(new Transaction(accNum(random.nextInt(ACCOUNTS)), accNum(random.nextInt(ACCOUNTS)),
+                    LocalTime.ofSecondOfDay(random.nextInt(86_400)), BigDecimal.ONE, Operation.TRANSFER));
+            if (chunk.size() == CHUNK) {
+                transactionService.saveAll(chunk);
+                chunk = new ArrayList<>(CHUNK);
+            }
+        }
+        // История читается из проекции, которую заполняет HistoryRelay.
+        context.getBean(HistoryRelay.class).drain();
+    }
+
+    private String nextAccNum() {
+        return "contended".equals(accounts) ? accNum(0) : accNum(ThreadLocalRandom.current().nextInt(ACCOUNTS));
+    }
+
+    private static String accNum(int index) {
+        return "account-" + index;
+    }
+
+    @Benchmark
+    public List<Transaction> history() {
+        return transactionService.getAllTransactionsByAccNum(nextAccNum());
+    }
+
+    @Benchmark
+    public TransactionPageDto firstPage() {
+        var filter = new TransactionFilterDto(nextAccNum(), null, null, null);
+        return transactionService.getTransactionsPage(filter, null, PAGE_SIZE);
+    }
+}
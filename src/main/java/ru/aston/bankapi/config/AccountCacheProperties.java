@@ -0,0 +1,25 @@
+package ru.aston.bankapi.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+@Getter
+@Setter
+@Component
+@ConfigurationProperties(prefix = "bank.cache.accounts")
+public class AccountCacheProperties {
+
+    /**
+     * Максимальное число счетов в кэше; 0 отключает кэширование.
+     */
+    private long maximumSize = 10_000;
+
+    /**
+     * Время жизни записи с момента загрузки из БД.
+     */
+    private Duration ttl = Duration.ofSeconds(30);
+}
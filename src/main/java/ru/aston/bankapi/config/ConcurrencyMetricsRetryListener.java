@@ -0,0 +1,68 @@
+package ru.aston.bankapi.config;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.retry.RetryContext;
+import org.springframework.retry.interceptor.MethodInvocationRetryCallback;
+import org.springframework.retry.listener.MethodInvocationRetryListenerSupport;
+import org.springframework.stereotype.Component;
+
+/**
+ * Метрики повторов операций со счетами:
+ * bank.concurrency.conflicts - число конфликтов блокировок/версий,
+ * bank.concurrency.attempts - число попыток на один вызов (count - число вызовов).
+ * Доля конфликтов = conflicts / attempts.count в разрезе operation и mode.
+ */
+@Component
+@RequiredArgsConstructor
+public class ConcurrencyMetricsRetryListener extends MethodInvocationRetryListenerSupport {
+
+    private final MeterRegistry meterRegistry;
+    private final ConcurrencyProperties concurrencyProperties;
+
+    @Override
+    protected <T, E extends Throwable> void doOnError(RetryContext context,
+                                                      MethodInvocationRetryCallback<T, E> callback,
+                                                      Throwable throwable) {
+        if (throwable instanceof ConcurrencyFailureException) {
+            Counter.builder("bank.concurrency.conflicts")
+                    .tag("operation", operation(callback))
+                    .tag("mode", mode())
+                    .tag("exception", throwable.getClass().getSimpleName())
+                    .register(meterRegistry)
+                    .increment();
+        }
+    }
+
+    @Override
+    protected <T, E extends Throwable> void doClose(RetryContext context,
+                                                    MethodInvocationRetryCallback<T, E> callback,
+                                                    Throwable throwable) {
+        String outcome;
+        if (throwable == null) {
+            outcome = "success";
+        } else if (throwable instanceof ConcurrencyFailureException) {
+            outcome = "exhausted";
+        } else {
+            outcome = "failure";
+        }
+
+        DistributionSummary.builder("bank.concurrency.attempts")
+                .tag("operation", operation(callback))
+                .tag("mode", mode())
+                .tag("outcome", outcome)
+                .register(meterRegistry)
+                .record(throwable == null ? context.getRetryCount() + 1 : context.getRetryCount());
+    }
+
+    private String operation(MethodInvocationRetryCallback<?, ?> callback) {
+        return callback.getInvocation().getMethod().getName();
+    }
+
+    private String mode() {
+        return concurrencyProperties.getMode().name().toLowerCase();
+    }
+}
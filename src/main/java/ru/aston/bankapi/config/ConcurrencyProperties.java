@@ -0,0 +1,19 @@
+package ru.aston.bankapi.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Getter
+@Setter
+@Component
+@ConfigurationProperties(prefix = "bank.concurrency")
+public class ConcurrencyProperties {
+
+    /**
+     * PESSIMISTIC - блокировка строк SELECT ... FOR UPDATE в порядке номеров счетов,
+     * OPTIMISTIC - проверка версии счета при фиксации и повтор операции при конфликте.
+     */
+    private LockingMode mode = LockingMode.PESSIMISTIC;
+}
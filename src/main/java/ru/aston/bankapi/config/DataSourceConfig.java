@@ -0,0 +1,57 @@
+package ru.aston.bankapi.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.util.Map;
+
+/**
+ * Отдельный пул для транзакций readOnly (история операций, списки счетов), чтобы
+ * длинные чтения не занимали соединения, нужные переводам. Оба пула настраиваются
+ * как spring.datasource.hikari.*, пул чтения - через bank.datasource.read-only.hikari.*;
+ * по умолчанию оба смотрят в одну БД, для реплики задается bank.datasource.read-only.hikari.jdbc-url.
+ * Схему создает Hibernate только в основной БД.
+ */
+@Configuration
+@ConditionalOnProperty(name = "bank.datasource.read-only.enabled", havingValue = "true")
+public class DataSourceConfig {
+
+    @Bean
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource primaryDataSource(DataSourceProperties properties) {
+        var dataSource = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        dataSource.setPoolName("bank-primary");
+        return dataSource;
+    }
+
+    @Bean
+    @ConfigurationProperties("bank.datasource.read-only.hikari")
+    public HikariDataSource readOnlyDataSource(DataSourceProperties properties) {
+        var dataSource = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        dataSource.setPoolName("bank-read-only");
+        dataSource.setReadOnly(true);
+        return dataSource;
+    }
+
+    @Bean
+    @Primary
+    public DataSource dataSource(@Qualifier("primaryDataSource") DataSource primaryDataSource,
+                                 @Qualifier("readOnlyDataSource") DataSource readOnlyDataSource,
+                                 ReplicaLagGuard replicaLagGuard) {
+        var routing = new ReadOnlyRoutingDataSource(replicaLagGuard);
+        routing.setTargetDataSources(Map.of(
+                ReadOnlyRoutingDataSource.Route.PRIMARY, primaryDataSource,
+                ReadOnlyRoutingDataSource.Route.READ_ONLY, readOnlyDataSource));
+        routing.setDefaultTargetDataSource(primaryDataSource);
+        routing.afterPropertiesSet();
+        return new LazyConnectionDataSourceProxy(routing);
+    }
+}
@@ -0,0 +1,40 @@
+package ru.aston.bankapi.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+@Getter
+@Setter
+@Component
+@ConfigurationProperties(prefix = "bank.events")
+public class EventsProperties {
+
+    /**
+     * Максимальное число одновременных подписок на узле.
+     */
+    private int maxSubscriptions = 50_000;
+
+    /**
+     * Время жизни подписки, после которого клиент переподключается.
+     */
+    private Duration timeout = Duration.ofMinutes(30);
+
+    /**
+     * Число неотправленных операций на подписчика; при переполнении старые операции отбрасываются.
+     */
+    private int queueCapacity = 64;
+
+    /**
+     * Число потоков, отправляющих события подписчикам.
+     */
+    private int dispatchThreads = 4;
+
+    /**
+     * Период отправки комментария-пульса, по которому обнаруживаются закрытые соединения.
+     */
+    private Duration heartbeatInterval = Duration.ofSeconds(30);
+}
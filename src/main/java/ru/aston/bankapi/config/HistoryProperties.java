@@ -0,0 +1,35 @@
+package ru.aston.bankapi.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+@Getter
+@Setter
+@Component
+@ConfigurationProperties(prefix = "bank.history")
+public class HistoryProperties {
+
+    private int defaultPageSize = 100;
+
+    private int maxPageSize = 1000;
+
+    /**
+     * Включает периодический перенос outbox в историю счетов. В тестах выключен,
+     * перенос запускается явно через HistoryRelay.drain().
+     */
+    private boolean relayEnabled = true;
+
+    /**
+     * Пауза между переносами outbox в историю счетов.
+     */
+    private Duration relayInterval = Duration.ofMillis(100);
+
+    /**
+     * Число записей outbox, переносимых одной транзакцией.
+     */
+    private int relayBatchSize = 500;
+}
@@ -0,0 +1,35 @@
+package ru.aston.bankapi.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+@Getter
+@Setter
+@Component
+@ConfigurationProperties(prefix = "bank.idempotency")
+public class IdempotencyProperties {
+
+    /**
+     * Сколько хранится ключ; повтор после этого срока выполняется как новый запрос.
+     */
+    private Duration ttl = Duration.ofHours(24);
+
+    /**
+     * Максимальное число ключей в кэше перед БД.
+     */
+    private long cacheMaximumSize = 100_000;
+
+    /**
+     * Максимальная длина ключа из заголовка Idempotency-Key.
+     */
+    private int maxKeyLength = 64;
+
+    /**
+     * Период удаления устаревших ключей из БД.
+     */
+    private Duration cleanupInterval = Duration.ofMinutes(10);
+}
@@ -0,0 +1,46 @@
+package ru.aston.bankapi.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.nio.file.Path;
+import java.time.Duration;
+
+@Getter
+@Setter
+@Component
+@ConfigurationProperties(prefix = "bank.journal")
+public class JournalProperties {
+
+    /**
+     * Включает запись истории операций через журнал вместо вставки в БД в каждой транзакции.
+     */
+    private boolean enabled = false;
+
+    private Path directory = Path.of("journal");
+
+    /**
+     * Размер файла сегмента журнала, отображаемого в память.
+     */
+    private DataSize segmentSize = DataSize.ofMegabytes(64);
+
+    /**
+     * Максимальное число записей, сбрасываемых на диск одним fsync.
+     */
+    private int groupCommitBatchSize = 1000;
+
+    /**
+     * Сколько ждать накопления группы после первой записи.
+     */
+    private Duration groupCommitWindow = Duration.ofMillis(2);
+
+    /**
+     * Максимальное число записей, загружаемых в таблицу transactions одной транзакцией.
+     */
+    private int loadBatchSize = 1000;
+
+    private Duration loadInterval = Duration.ofMillis(200);
+}
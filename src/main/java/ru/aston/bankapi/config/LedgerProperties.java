@@ -0,0 +1,48 @@
+package ru.aston.bankapi.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.nio.file.Path;
+import java.time.Duration;
+
+@Getter
+@Setter
+@Component
+@ConfigurationProperties(prefix = "bank.ledger")
+public class LedgerProperties {
+
+    /**
+     * Включает шардированный движок балансов в памяти вместо AccountServiceImpl.
+     */
+    private boolean enabled = false;
+
+    /**
+     * Число шардов, каждый обслуживается одним потоком.
+     */
+    private int shards = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * Максимальное число операций, записываемых в БД одной транзакцией.
+     */
+    private int flushBatchSize = 500;
+
+    /**
+     * Максимальное ожидание накопления пакета перед записью в БД.
+     */
+    private Duration flushInterval = Duration.ofMillis(20);
+
+    /**
+     * Емкость очереди записи; при заполнении шарды ждут освобождения места.
+     */
+    private int writeQueueCapacity = 100_000;
+
+    /**
+     * Число попыток записи пакета, после которых он откладывается в deadLetterDirectory.
+     */
+    private int maxFlushAttempts = 5;
+
+    private Path deadLetterDirectory = Path.of("ledger-dead-letter");
+}
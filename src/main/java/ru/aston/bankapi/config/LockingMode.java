@@ -0,0 +1,6 @@
+package ru.aston.bankapi.config;
+
+public enum LockingMode {
+    PESSIMISTIC,
+    OPTIMISTIC
+}
@@ -0,0 +1,35 @@
+package ru.aston.bankapi.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+@Getter
+@Setter
+@Component
+@ConfigurationProperties(prefix = "bank.pin")
+public class PinProperties {
+
+    /**
+     * Число итераций PBKDF2 для новых хешей пин-кодов.
+     */
+    private int iterations = 120_000;
+
+    /**
+     * Сколько успешная проверка пин-кода избавляет от повторного хеширования.
+     */
+    private Duration cacheTtl = Duration.ofMinutes(1);
+
+    /**
+     * Максимальное число счетов в кэше проверенных пин-кодов; 0 отключает кэш.
+     */
+    private long cacheMaximumSize = 100_000;
+
+    /**
+     * Размер пакета счетов при переводе пин-кодов из открытого вида в хеши.
+     */
+    private int migrationBatchSize = 100;
+}
@@ -0,0 +1,23 @@
+package ru.aston.bankapi.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Getter
+@Setter
+@Component
+@ConfigurationProperties(prefix = "bank.provisioning")
+public class ProvisioningProperties {
+
+    /**
+     * Число счетов, вставляемых одним пакетом JDBC в одной транзакции.
+     */
+    private int batchSize = 1000;
+
+    /**
+     * Число потоков хеширования пин-кодов пакета.
+     */
+    private int hashParallelism = Runtime.getRuntime().availableProcessors();
+}
@@ -0,0 +1,61 @@
+package ru.aston.bankapi.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+@Getter
+@Setter
+@Component
+@ConfigurationProperties(prefix = "bank.rate-limit")
+public class RateLimitProperties {
+
+    /**
+     * Включает ограничение частоты операций и блокировку подбора пин-кода.
+     */
+    private boolean enabled = true;
+
+    /**
+     * Допустимый всплеск операций по одному счету.
+     */
+    private int accountCapacity = 20;
+
+    /**
+     * Устойчивая частота операций по одному счету, в секунду.
+     */
+    private double accountRefillPerSecond = 10;
+
+    /**
+     * Допустимый всплеск операций одного клиента.
+     */
+    private int clientCapacity = 100;
+
+    /**
+     * Устойчивая частота операций одного клиента, в секунду.
+     */
+    private double clientRefillPerSecond = 50;
+
+    /**
+     * Число неверных пин-кодов подряд, после которого операции по счету блокируются.
+     */
+    private int maxPinFailures = 5;
+
+    /**
+     * За это время счет восстанавливает все попытки ввода пин-кода.
+     */
+    private Duration pinLockout = Duration.ofMinutes(15);
+
+    /**
+     * Максимальное число ключей в таблицах частоты по счету и по клиенту; давно не использованные
+     * вытесняются. Попытки ввода пин-кода не вытесняются и хранятся до восстановления.
+     */
+    private int maximumSize = 100_000;
+
+    /**
+     * Число независимо блокируемых сегментов таблицы ограничителя.
+     */
+    private int stripes = 64;
+}
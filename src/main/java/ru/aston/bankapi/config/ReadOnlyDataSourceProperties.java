@@ -0,0 +1,31 @@
+package ru.aston.bankapi.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+@Getter
+@Setter
+@Component
+@ConfigurationProperties(prefix = "bank.datasource.read-only")
+public class ReadOnlyDataSourceProperties {
+
+    /**
+     * Направляет транзакции readOnly в отдельный пул (реплику), настройки пула - в hikari.*.
+     */
+    private boolean enabled = false;
+
+    /**
+     * Сколько после изменения счета его чтения идут в основную БД; должно покрывать
+     * отставание реплики и переноса истории.
+     */
+    private Duration readYourWritesWindow = Duration.ofSeconds(5);
+
+    /**
+     * Максимальное число недавно измененных счетов, которые помнит защита от отставания реплики.
+     */
+    private long maximumTrackedAccounts = 100_000;
+}
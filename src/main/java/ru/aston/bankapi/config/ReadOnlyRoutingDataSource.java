@@ -0,0 +1,30 @@
+package ru.aston.bankapi.config;
+
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Выбирает пул по признаку readOnly текущей транзакции. Признак известен только после
+ * начала транзакции, поэтому источник используется за LazyConnectionDataSourceProxy,
+ * который берет соединение при первом запросе к БД. Чтение недавно измененного счета
+ * остается в основной БД, см. {@link ReplicaLagGuard}.
+ */
+public class ReadOnlyRoutingDataSource extends AbstractRoutingDataSource {
+
+    private final ReplicaLagGuard replicaLagGuard;
+
+    public ReadOnlyRoutingDataSource(ReplicaLagGuard replicaLagGuard) {
+        this.replicaLagGuard = replicaLagGuard;
+    }
+
+    enum Route {
+        PRIMARY,
+        READ_ONLY
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        return TransactionSynchronizationManager.isCurrentTransactionReadOnly() && !replicaLagGuard.isPrimaryRequired()
+                ? Route.READ_ONLY : Route.PRIMARY;
+    }
+}
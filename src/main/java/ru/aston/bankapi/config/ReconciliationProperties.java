@@ -0,0 +1,50 @@
+package ru.aston.bankapi.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+@Getter
+@Setter
+@Component
+@ConfigurationProperties(prefix = "bank.reconciliation")
+public class ReconciliationProperties {
+
+    /**
+     * Включает ежедневную сверку балансов с историей операций.
+     */
+    private boolean enabled = true;
+
+    /**
+     * Расписание сверки в формате cron.
+     */
+    private String cron = "0 0 0 * * *";
+
+    /**
+     * Число потоков, сверяющих пакеты счетов.
+     */
+    private int workers = Math.min(Runtime.getRuntime().availableProcessors(), 4);
+
+    /**
+     * Число счетов в одном пакете; в памяти одновременно не больше двух пакетов на поток.
+     */
+    private int chunkSize = 1000;
+
+    /**
+     * Размер выборки JDBC при чтении счетов и операций.
+     */
+    private int fetchSize = 1000;
+
+    /**
+     * Максимальное число расхождений, сохраняемых в отчете; остальные только подсчитываются.
+     */
+    private int maxReportedMismatches = 1000;
+
+    /**
+     * Сколько ждать загрузки журнала операций в БД перед сверкой и перед перепроверкой счета.
+     */
+    private Duration journalLoadTimeout = Duration.ofSeconds(30);
+}
@@ -0,0 +1,93 @@
+package ru.aston.bankapi.config;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Чтение своих записей при отставании реплики. Изменяющие операции после фиксации отмечают
+ * счета, чтение по отмеченному счету в пределах readYourWritesWindow переключает текущую
+ * транзакцию readOnly на основную БД. Отметка действует до конца транзакции; соединение
+ * берется при первом запросе, поэтому отметку нужно ставить до обращения к БД.
+ * Отметку нужно регистрировать раньше сброса кэша: иначе читатель между сбросом
+ * и отметкой прочитает реплику и снова заполнит кэш старой строкой.
+ */
+@Component
+public class ReplicaLagGuard {
+
+    private static final ThreadLocal<Boolean> PRIMARY_REQUIRED = new ThreadLocal<>();
+
+    private final ReadOnlyDataSourceProperties properties;
+    private final Cache<String, Boolean> recentWrites;
+    private final Counter guardedReads;
+
+    public ReplicaLagGuard(ReadOnlyDataSourceProperties properties, MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.recentWrites = Caffeine.newBuilder()
+                .maximumSize(properties.getMaximumTrackedAccounts())
+                .expireAfterWrite(properties.getReadYourWritesWindow())
+                .build();
+        this.guardedReads = Counter.builder("bank.datasource.read-your-writes")
+                .description("Число чтений, направленных в основную БД из-за недавнего изменения счета")
+                .register(meterRegistry);
+    }
+
+    public void recordWritesAfterCommit(String... accNums) {
+        recordWritesAfterCommit(List.of(accNums));
+    }
+
+    public void recordWritesAfterCommit(Collection<String> accNums) {
+        if (!properties.isEnabled() || accNums.isEmpty()) {
+            return;
+        }
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            accNums.forEach(accNum -> recentWrites.put(accNum, Boolean.TRUE));
+            return;
+        }
+        var keys = List.copyOf(accNums);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                keys.forEach(accNum -> recentWrites.put(accNum, Boolean.TRUE));
+            }
+        });
+    }
+
+    /**
+     * Если счет изменялся недавно, текущая транзакция читает из основной БД.
+     */
+    public void readAfterWrites(String accNum) {
+        if (!properties.isEnabled() || accNum == null || PRIMARY_REQUIRED.get() != null
+                || !TransactionSynchronizationManager.isSynchronizationActive()
+                || recentWrites.getIfPresent(accNum) == null) {
+            return;
+        }
+        guardedReads.increment();
+        PRIMARY_REQUIRED.set(Boolean.TRUE);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                PRIMARY_REQUIRED.remove();
+            }
+        });
+    }
+
+    /**
+     * Пойдет ли чтение текущей транзакции на реплику.
+     */
+    public boolean isReplicaRead() {
+        return properties.isEnabled() && TransactionSynchronizationManager.isCurrentTransactionReadOnly()
+                && !isPrimaryRequired();
+    }
+
+    boolean isPrimaryRequired() {
+        return PRIMARY_REQUIRED.get() != null;
+    }
+}
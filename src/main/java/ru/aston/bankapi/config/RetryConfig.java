@@ -0,0 +1,13 @@
+package ru.aston.bankapi.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.retry.annotation.EnableRetry;
+
+/**
+ * Повторные попытки выполняются снаружи транзакции: каждая попытка открывает новую
+ * транзакцию и заново читает счета.
+ */
+@Configuration
+@EnableRetry
+public class RetryConfig {
+}
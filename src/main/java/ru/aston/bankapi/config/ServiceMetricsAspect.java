@@ -0,0 +1,49 @@
+package ru.aston.bankapi.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.RequiredArgsConstructor;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+/**
+ * Метрика bank.service.operation - время выполнения каждого метода AccountService
+ * и TransactionService в разрезе service, operation и outcome (success или имя исключения).
+ * Число вызовов берется из count таймера. Аспект внешний по отношению к повторам
+ * и транзакции, поэтому время включает ожидание блокировок и все попытки.
+ */
+@Aspect
+@Component
+@RequiredArgsConstructor
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class ServiceMetricsAspect {
+
+    static final String METRIC_NAME = "bank.service.operation";
+
+    private final MeterRegistry meterRegistry;
+
+    @Around("execution(* ru.aston.bankapi.service.AccountService.*(..))"
+            + " || execution(* ru.aston.bankapi.service.TransactionService.*(..))")
+    public Object record(ProceedingJoinPoint joinPoint) throws Throwable {
+        var sample = Timer.start(meterRegistry);
+        var outcome = "success";
+        try {
+            return joinPoint.proceed();
+        } catch (Throwable e) {
+            outcome = e.getClass().getSimpleName();
+            throw e;
+        } finally {
+            sample.stop(Timer.builder(METRIC_NAME)
+                    .tag("service", joinPoint.getTarget().getClass().getSimpleName())
+                    .tag("operation", joinPoint.getSignature().getName())
+                    .tag("outcome", outcome)
+                    .publishPercentiles(0.5, 0.95, 0.99)
+                    .publishPercentileHistogram()
+                    .register(meterRegistry));
+        }
+    }
+}
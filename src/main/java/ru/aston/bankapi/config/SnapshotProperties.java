@@ -0,0 +1,35 @@
+package ru.aston.bankapi.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+@Getter
+@Setter
+@Component
+@ConfigurationProperties(prefix = "bank.snapshots")
+public class SnapshotProperties {
+
+    /**
+     * Включает периодическое снятие снимков балансов.
+     */
+    private boolean enabled = true;
+
+    /**
+     * Период снятия снимков.
+     */
+    private Duration interval = Duration.ofHours(1);
+
+    /**
+     * Число потоков пересчета; не больше размера пула соединений.
+     */
+    private int parallelism = Math.min(Runtime.getRuntime().availableProcessors(), 8);
+
+    /**
+     * Число счетов, обрабатываемых одной задачей в одной транзакции.
+     */
+    private int batchSize = 256;
+}
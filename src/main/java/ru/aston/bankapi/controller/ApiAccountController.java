@@ -1,30 +1,92 @@
 package ru.aston.bankapi.controller;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.RuntimeJsonMappingException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.validation.Valid;
 import jakarta.validation.constraints.NotBlank;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.Pageable;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import ru.aston.bankapi.config.LedgerProperties;
 import ru.aston.bankapi.dto.AccountDto;
+import ru.aston.bankapi.dto.AccountPageDto;
+import ru.aston.bankapi.dto.BatchTransferDto;
 import ru.aston.bankapi.dto.PaymentDto;
+import ru.aston.bankapi.dto.PinChangeDto;
+import ru.aston.bankapi.dto.ProvisioningResultDto;
+import ru.aston.bankapi.dto.TransferDto;
+import ru.aston.bankapi.dto.TransferResultDto;
+import ru.aston.bankapi.exceptionHandler.DuplicateRequestException;
 import ru.aston.bankapi.exceptionHandler.InvalidDataException;
+import ru.aston.bankapi.exceptionHandler.InvalidPinFormatException;
 import ru.aston.bankapi.exceptionHandler.NotEnoughFundsException;
 import ru.aston.bankapi.exceptionHandler.NotFoundException;
+import ru.aston.bankapi.exceptionHandler.SubscriptionLimitException;
+import ru.aston.bankapi.exceptionHandler.TooManyRequestsException;
 import ru.aston.bankapi.model.Account;
+import ru.aston.bankapi.model.IdempotencyKey;
+import ru.aston.bankapi.model.Operation;
 import ru.aston.bankapi.service.AccountService;
-import ru.aston.bankapi.service.AccountServiceImpl;
+import ru.aston.bankapi.service.events.BalanceEventHub;
+import ru.aston.bankapi.service.idempotency.IdempotencyStore;
+import ru.aston.bankapi.service.provisioning.AccountProvisioner;
+import ru.aston.bankapi.service.ratelimit.RequestLimiter;
+import ru.aston.bankapi.service.snapshot.BalanceRebuilder;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
 
 @Slf4j
 @RestController
 @RequestMapping("/api/v1/accounts")
 public class ApiAccountController {
 
+    static final String IDEMPOTENCY_KEY = "Idempotency-Key";
+    static final String DEPRECATION = "Deprecation";
+    static final String IDEMPOTENT_REPLAYED = "Idempotent-Replayed";
+
+    private static final String DEPOSIT_DONE = "Перевод выполнен";
+    private static final String TRANSFER_DONE = "Перевод выполнен успешно";
+    private static final String NDJSON_VALUE = "application/x-ndjson";
+
     private final AccountService accountService;
+    private final IdempotencyStore idempotencyStore;
+    private final BalanceRebuilder balanceRebuilder;
+    private final BalanceEventHub balanceEventHub;
+    private final RequestLimiter requestLimiter;
+    private final AccountProvisioner accountProvisioner;
+    private final LedgerProperties ledgerProperties;
+    private final ObjectMapper objectMapper;
 
-    public ApiAccountController(AccountServiceImpl accountService) {
+    public ApiAccountController(AccountService accountService, IdempotencyStore idempotencyStore,
+                                BalanceRebuilder balanceRebuilder, BalanceEventHub balanceEventHub,
+                                RequestLimiter requestLimiter, AccountProvisioner accountProvisioner,
+                                LedgerProperties ledgerProperties, ObjectMapper objectMapper) {
         this.accountService = accountService;
+        this.idempotencyStore = idempotencyStore;
+        this.balanceRebuilder = balanceRebuilder;
+        this.balanceEventHub = balanceEventHub;
+        this.requestLimiter = requestLimiter;
+        this.accountProvisioner = accountProvisioner;
+        this.ledgerProperties = ledgerProperties;
+        this.objectMapper = objectMapper;
     }
 
     @PostMapping()
@@ -44,12 +106,73 @@ public class ApiAccountController {
 
     }
 
+    /**
+     * Пакетное создание счетов. Тело - счета в формате NDJSON или JSON-массив, ответ -
+     * NDJSON с номером счета или ошибкой для каждой строки. Строки читаются и сохраняются
+     * пакетами по мере поступления; некорректный JSON останавливает загрузку, созданные
+     * до него счета остаются.
+     */
+    @PostMapping(value = "/bulk", consumes = {NDJSON_VALUE, MediaType.APPLICATION_JSON_VALUE},
+            produces = NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> provisionAccounts(HttpServletRequest request) throws IOException {
+        var input = request.getInputStream();
+        StreamingResponseBody body = outputStream -> {
+            try (var generator = objectMapper.getFactory().createGenerator(outputStream)) {
+                generator.setRootValueSeparator(null);
+                var written = new long[1];
+                Consumer<ProvisioningResultDto> results = result -> {
+                    try {
+                        generator.writeObject(result);
+                        generator.writeRaw('\n');
+                        written[0]++;
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                };
+                try (var rows = objectMapper.readerFor(AccountDto.class).<AccountDto>readValues(input)) {
+                    accountProvisioner.provision(rows, results);
+                } catch (JsonProcessingException | RuntimeJsonMappingException e) {
+                    malformed(results, written[0] + 1, e);
+                } catch (RuntimeException e) {
+                    if (!(e.getCause() instanceof JsonProcessingException)) {
+                        throw e;
+                    }
+                    malformed(results, written[0] + 1, e);
+                }
+            }
+        };
+        return ResponseEntity.ok().contentType(MediaType.parseMediaType(NDJSON_VALUE)).body(body);
+    }
+
+    /**
+     * Устарел: список ограничен {@code AccountServiceImpl.MAX_ALL_ACCOUNTS} счетами,
+     * клиентам нужно перейти на /page. Ответ помечается заголовками Deprecation и Link.
+     */
+    @Deprecated
     @GetMapping
     public ResponseEntity<List<Account>> getAllAccounts() {
+        var headers = new HttpHeaders();
+        headers.set(DEPRECATION, "true");
+        headers.set(HttpHeaders.LINK, "</api/v1/accounts/page>; rel=\"successor-version\"");
+
+        List<Account> allAccounts;
+        try {
+            allAccounts = accountService.getAllAccounts();
+        } catch (InvalidDataException e) {
+            return new ResponseEntity<>(headers, HttpStatus.BAD_REQUEST);
+        }
 
-        var allAccounts = accountService.getAllAccounts();
+        return new ResponseEntity<>(allAccounts, headers, HttpStatus.OK);
+    }
 
-        return new ResponseEntity<>(allAccounts, HttpStatus.OK);
+    @GetMapping(value = "/page")
+    public ResponseEntity<AccountPageDto> getAccountsPage(Pageable pageable,
+                                                          @RequestParam(defaultValue = "false") boolean slice) {
+        try {
+            return new ResponseEntity<>(accountService.getAccountsPage(pageable, slice), HttpStatus.OK);
+        } catch (InvalidDataException e) {
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
     }
 
     @GetMapping(value = "/{accNum}")
@@ -61,63 +184,276 @@ public class ApiAccountController {
         return new ResponseEntity<>(HttpStatus.NOT_FOUND);
     }
 
+    @GetMapping(value = "/{accNum}/balance")
+    public ResponseEntity<BigDecimal> getBalance(@PathVariable @NotBlank String accNum,
+                                                 @RequestParam(required = false) Instant asOf) {
+        try {
+            return new ResponseEntity<>(balanceRebuilder.balanceAsOf(accNum, asOf == null ? Instant.now() : asOf),
+                    HttpStatus.OK);
+        } catch (NotFoundException e) {
+            return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+        }
+    }
+
+    /**
+     * Движок балансов в памяти не публикует изменения счетов: подписка отдала бы только
+     * начальный баланс, поэтому с ним она отклоняется.
+     */
+    @GetMapping(value = "/{accNum}/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> subscribe(@PathVariable @NotBlank String accNum) {
+        if (ledgerProperties.isEnabled()) {
+            log.warn("Подписка на счет {} отклонена: события не публикуются движком балансов в памяти", accNum);
+            return new ResponseEntity<>(HttpStatus.NOT_IMPLEMENTED);
+        }
+        try {
+            return new ResponseEntity<>(balanceEventHub.subscribe(accNum, accountService::getAccountByAccNum),
+                    HttpStatus.OK);
+        } catch (NotFoundException e) {
+            return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+        } catch (SubscriptionLimitException e) {
+            return new ResponseEntity<>(HttpStatus.SERVICE_UNAVAILABLE);
+        }
+    }
+
     @PatchMapping(value = "/{accNum}/deposit")
-    public ResponseEntity<String> deposit(@PathVariable @NotBlank String accNum, @RequestBody PaymentDto paymentJson) {
+    public ResponseEntity<String> deposit(@PathVariable @NotBlank String accNum, @Valid @RequestBody PaymentDto paymentJson,
+                                          @RequestHeader(value = IDEMPOTENCY_KEY, required = false) String idempotencyKey,
+                                          HttpServletRequest request) {
 
         var amount = paymentJson.getAmountOfOperation();
 
         try {
-            accountService.deposit(accNum, amount);
+            requestLimiter.acquire(accNum, request.getRemoteAddr());
+        } catch (TooManyRequestsException e) {
+            return tooManyRequests(e).body(e.getMessage());
+        }
+
+        var fingerprint = IdempotencyStore.fingerprint(accNum, accNum, amount);
+        var replay = replay(idempotencyKey, Operation.DEPOSIT, fingerprint, DEPOSIT_DONE);
+        if (replay != null) {
+            return replay;
+        }
+
+        try {
+            accountService.deposit(accNum, amount, idempotencyKey);
         } catch (NotFoundException e) {
             return ResponseEntity.notFound().build();
+        } catch (DuplicateRequestException e) {
+            return duplicate(idempotencyKey, Operation.DEPOSIT, fingerprint, DEPOSIT_DONE);
         }
-        return new ResponseEntity<>("Перевод выполнен", HttpStatus.OK);
+        return new ResponseEntity<>(DEPOSIT_DONE, HttpStatus.OK);
     }
 
     @PatchMapping(value = "/{fromAccNum}/transfer/{toAccNum}")
     public ResponseEntity<String> transfer(@PathVariable @NotBlank String fromAccNum,
                                            @PathVariable @NotBlank String toAccNum,
-                                           @RequestBody PaymentDto paymentJson) {
+                                           @Valid @RequestBody PaymentDto paymentJson,
+                                           @RequestHeader(value = IDEMPOTENCY_KEY, required = false) String idempotencyKey,
+                                           HttpServletRequest request) {
 
         var amount = paymentJson.getAmountOfOperation();
         var pinCode = paymentJson.getPinCode();
 
         try {
-            accountService.transfer(fromAccNum, toAccNum, amount, pinCode);
+            requestLimiter.acquire(fromAccNum, request.getRemoteAddr());
+        } catch (TooManyRequestsException e) {
+            return tooManyRequests(e).body(e.getMessage());
+        }
+
+        var fingerprint = IdempotencyStore.fingerprint(fromAccNum, toAccNum, amount);
+        var replay = replay(idempotencyKey, Operation.TRANSFER, fingerprint, TRANSFER_DONE);
+        if (replay != null) {
+            return replay;
+        }
+
+        try {
+            accountService.transfer(fromAccNum, toAccNum, amount, pinCode, idempotencyKey);
 
+        } catch (DuplicateRequestException e) {
+            return duplicate(idempotencyKey, Operation.TRANSFER, fingerprint, TRANSFER_DONE);
         } catch (NotFoundException e) {
             return new ResponseEntity<>("Ошибка перевода", HttpStatus.BAD_REQUEST);
         } catch (InvalidDataException e) {
+            requestLimiter.recordPinFailure(fromAccNum);
             return new ResponseEntity<>("Неверный пин", HttpStatus.BAD_REQUEST);
         } catch (NotEnoughFundsException e) {
             return new ResponseEntity<>("Недостаточно средств", HttpStatus.BAD_REQUEST);
         }
-        return new ResponseEntity<>("Перевод выполнен успешно", HttpStatus.OK);
+        requestLimiter.recordPinSuccess(fromAccNum);
+        return new ResponseEntity<>(TRANSFER_DONE, HttpStatus.OK);
+
+    }
+
+    @PostMapping(value = "/transfers")
+    public ResponseEntity<List<TransferResultDto>> transferBatch(@Valid @RequestBody BatchTransferDto batchJson,
+                                                                 HttpServletRequest request) {
+
+        if (batchJson.getTransfers() != null) {
+            if (hasDifferentPins(batchJson.getTransfers())) {
+                log.error("В пакете переводов указаны разные пин-коды одного счета");
+                return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+            }
+            try {
+                requestLimiter.acquireBatch(batchJson.getTransfers().stream().map(TransferDto::getFromAccNum)
+                        .filter(Objects::nonNull).collect(Collectors.toSet()), request.getRemoteAddr());
+            } catch (TooManyRequestsException e) {
+                return tooManyRequests(e).build();
+            }
+        }
+
+        List<TransferResultDto> results;
+        try {
+            results = accountService.transferBatch(batchJson.getTransfers(), batchJson.isAtomic());
+        } catch (InvalidDataException e) {
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+        results.stream()
+                .filter(result -> result.getStatus() == TransferResultDto.Status.INVALID_PIN)
+                .map(TransferResultDto::getFromAccNum)
+                .distinct()
+                .forEach(requestLimiter::recordPinFailure);
 
+        var failed = results.stream()
+                .anyMatch(result -> result.getStatus() != TransferResultDto.Status.SUCCESS);
+        if (batchJson.isAtomic() && failed) {
+            return new ResponseEntity<>(results, HttpStatus.BAD_REQUEST);
+        }
+        return new ResponseEntity<>(results, HttpStatus.OK);
     }
 
     @PatchMapping(value = "/{accNum}/withdraw")
     public ResponseEntity<String> withdraw(@PathVariable @NotBlank String accNum,
-                                           @RequestBody PaymentDto paymentJson) {
+                                           @Valid @RequestBody PaymentDto paymentJson,
+                                           @RequestHeader(value = IDEMPOTENCY_KEY, required = false) String idempotencyKey,
+                                           HttpServletRequest request) {
 
         var amount = paymentJson.getAmountOfOperation();
         var pinCode = paymentJson.getPinCode();
 
         try {
-            accountService.withdraw(accNum, amount, pinCode);
+            requestLimiter.acquire(accNum, request.getRemoteAddr());
+        } catch (TooManyRequestsException e) {
+            return tooManyRequests(e).body(e.getMessage());
+        }
+
+        var fingerprint = IdempotencyStore.fingerprint(accNum, accNum, amount);
+        var replay = replay(idempotencyKey, Operation.WITHDRAW, fingerprint, TRANSFER_DONE);
+        if (replay != null) {
+            return replay;
+        }
+
+        try {
+            accountService.withdraw(accNum, amount, pinCode, idempotencyKey);
 
+        } catch (DuplicateRequestException e) {
+            return duplicate(idempotencyKey, Operation.WITHDRAW, fingerprint, TRANSFER_DONE);
         } catch (NotFoundException e) {
             return new ResponseEntity<>("Ошибка перевода", HttpStatus.BAD_REQUEST);
         } catch (NotEnoughFundsException e) {
             return new ResponseEntity<>("Недостаточно средств", HttpStatus.BAD_REQUEST);
         } catch (InvalidDataException e) {
+            requestLimiter.recordPinFailure(accNum);
+            return new ResponseEntity<>("Неверный пин", HttpStatus.BAD_REQUEST);
+
+        }
+
+        requestLimiter.recordPinSuccess(accNum);
+        return new ResponseEntity<>(TRANSFER_DONE, HttpStatus.OK);
+
+
+    }
+
+    @PatchMapping(value = "/{accNum}/pin")
+    public ResponseEntity<String> changePin(@PathVariable @NotBlank String accNum,
+                                            @Valid @RequestBody PinChangeDto pinJson,
+                                            HttpServletRequest request) {
+
+        try {
+            requestLimiter.acquire(accNum, request.getRemoteAddr());
+        } catch (TooManyRequestsException e) {
+            return tooManyRequests(e).body(e.getMessage());
+        }
+
+        try {
+            accountService.changePin(accNum, pinJson.getPinCode(), pinJson.getNewPinCode());
+        } catch (NotFoundException e) {
+            return ResponseEntity.notFound().build();
+        } catch (InvalidPinFormatException e) {
+            return new ResponseEntity<>(e.getMessage(), HttpStatus.BAD_REQUEST);
+        } catch (InvalidDataException e) {
+            requestLimiter.recordPinFailure(accNum);
             return new ResponseEntity<>("Неверный пин", HttpStatus.BAD_REQUEST);
+        }
+
+        requestLimiter.recordPinSuccess(accNum);
+        return new ResponseEntity<>("Пин-код изменен", HttpStatus.OK);
+    }
+
+    /**
+     * Ответ на повтор уже выполненной операции: тот же результат, что и у исходного
+     * запроса, без обращения к счетам. null - ключа нет или операция с ним не выполнялась.
+     * Ключ, использованный для другой операции или других счетов и суммы, отклоняется.
+     */
+    private ResponseEntity<String> replay(String idempotencyKey, Operation operation, String fingerprint,
+                                          String result) {
+        if (idempotencyKey == null) {
+            return null;
+        }
+        Optional<IdempotencyKey> completed;
+        try {
+            completed = idempotencyStore.find(idempotencyKey);
+        } catch (InvalidDataException e) {
+            return new ResponseEntity<>(e.getMessage(), HttpStatus.BAD_REQUEST);
+        }
+        if (completed.isEmpty()) {
+            return null;
+        }
+        if (completed.get().getOperation() != operation) {
+            return new ResponseEntity<>("Ключ идемпотентности использован для другой операции",
+                    HttpStatus.UNPROCESSABLE_ENTITY);
+        }
+        if (!IdempotencyStore.isSameRequest(completed.get(), fingerprint)) {
+            log.warn("Ключ идемпотентности {} использован для запроса с другими параметрами", idempotencyKey);
+            return new ResponseEntity<>("Ключ идемпотентности использован для запроса с другими счетами или суммой",
+                    HttpStatus.UNPROCESSABLE_ENTITY);
+        }
+        log.info("Повтор операции {} с ключом идемпотентности {}", operation, idempotencyKey);
+        return ResponseEntity.ok().header(IDEMPOTENT_REPLAYED, "true").body(result);
+    }
 
+    /**
+     * Пакет с разными пин-кодами одного счета перебирал бы пин-коды в обход блокировки:
+     * блокировка проверяется до пакета, а неверные пин-коды учитываются после него.
+     */
+    private static boolean hasDifferentPins(List<TransferDto> transfers) {
+        Map<String, String> pinCodes = new HashMap<>();
+        for (var transfer : transfers) {
+            if (transfer != null && transfer.getFromAccNum() != null
+                    && !Objects.equals(pinCodes.computeIfAbsent(transfer.getFromAccNum(), accNum -> transfer.getPinCode()),
+                    transfer.getPinCode())) {
+                return true;
+            }
         }
+        return false;
+    }
 
-        return new ResponseEntity<>("Перевод выполнен успешно", HttpStatus.OK);
+    private static void malformed(Consumer<ProvisioningResultDto> results, long row, Exception e) {
+        log.error("Некорректный JSON в строке {} пакетной загрузки", row, e);
+        results.accept(new ProvisioningResultDto(row, null, "Некорректный JSON, загрузка остановлена"));
+    }
 
+    private static ResponseEntity.BodyBuilder tooManyRequests(TooManyRequestsException e) {
+        var seconds = Math.max(1, (e.getRetryAfter().toMillis() + 999) / 1000);
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS).header(HttpHeaders.RETRY_AFTER, String.valueOf(seconds));
+    }
 
+    private ResponseEntity<String> duplicate(String idempotencyKey, Operation operation, String fingerprint,
+                                             String result) {
+        var replay = replay(idempotencyKey, operation, fingerprint, result);
+        if (replay != null) {
+            return replay;
+        }
+        return new ResponseEntity<>("Запрос с этим ключом идемпотентности еще выполняется", HttpStatus.CONFLICT);
     }
 
 
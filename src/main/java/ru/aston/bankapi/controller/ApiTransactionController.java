@@ -1,17 +1,27 @@
 package ru.aston.bankapi.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import jakarta.validation.constraints.NotBlank;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import ru.aston.bankapi.dto.TransactionFilterDto;
+import ru.aston.bankapi.dto.TransactionPageDto;
+import ru.aston.bankapi.exceptionHandler.InvalidDataException;
 import ru.aston.bankapi.model.Transaction;
 import ru.aston.bankapi.service.TransactionService;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.List;
 
 @Slf4j
@@ -20,20 +30,81 @@ import java.util.List;
 @RequiredArgsConstructor
 public class ApiTransactionController {
 
+    private static final MediaType NDJSON = MediaType.parseMediaType("application/x-ndjson");
+
     private final TransactionService transactionService;
+    private final ObjectMapper objectMapper;
 
+    /**
+     * Устарел: список ограничен максимальным размером страницы, клиентам нужно перейти
+     * на /page или /export. Ответ помечается заголовками Deprecation и Link.
+     */
+    @Deprecated
     @GetMapping
     public ResponseEntity<List<Transaction>> getAllTransactions() {
-        var allTransactions = transactionService.getAllTransactions();
+        var headers = deprecationHeaders();
+
+        List<Transaction> allTransactions;
+        try {
+            allTransactions = transactionService.getAllTransactions();
+        } catch (InvalidDataException e) {
+            return new ResponseEntity<>(headers, HttpStatus.BAD_REQUEST);
+        }
+
+        return new ResponseEntity<>(allTransactions, headers, HttpStatus.OK);
+    }
 
-        return new ResponseEntity<>(allTransactions, HttpStatus.OK);
+    @GetMapping(value = "/page")
+    public ResponseEntity<TransactionPageDto> getTransactionsPage(TransactionFilterDto filter,
+                                                                  @RequestParam(required = false) Long afterId,
+                                                                  @RequestParam(required = false) Integer limit) {
+        try {
+            return new ResponseEntity<>(transactionService.getTransactionsPage(filter, afterId, limit), HttpStatus.OK);
+        } catch (InvalidDataException e) {
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
     }
 
+    @GetMapping(value = "/export")
+    public ResponseEntity<StreamingResponseBody> exportTransactions(TransactionFilterDto filter) {
+        StreamingResponseBody body = outputStream -> {
+            try (var generator = objectMapper.getFactory().createGenerator(outputStream)) {
+                generator.setRootValueSeparator(null);
+                transactionService.exportTransactions(filter, transaction -> {
+                    try {
+                        generator.writeObject(transaction);
+                        generator.writeRaw('\n');
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            }
+        };
+        return ResponseEntity.ok().contentType(NDJSON).body(body);
+    }
+
+    /**
+     * Устарел и ограничен так же, как {@link #getAllTransactions}.
+     */
+    @Deprecated
     @GetMapping(value = "/{accNum}")
     public ResponseEntity<List<Transaction>> getAllTransactionsById(@PathVariable @NotBlank String accNum) {
+        var headers = deprecationHeaders();
 
-        var allTransactionsByAccNum = transactionService.getAllTransactionsByAccNum(accNum);
+        List<Transaction> allTransactionsByAccNum;
+        try {
+            allTransactionsByAccNum = transactionService.getAllTransactionsByAccNum(accNum);
+        } catch (InvalidDataException e) {
+            return new ResponseEntity<>(headers, HttpStatus.BAD_REQUEST);
+        }
+
+        return new ResponseEntity<>(allTransactionsByAccNum, headers, HttpStatus.OK);
+    }
 
-        return new ResponseEntity<>(allTransactionsByAccNum, HttpStatus.OK);
+    private static HttpHeaders deprecationHeaders() {
+        var headers = new HttpHeaders();
+        headers.set(ApiAccountController.DEPRECATION, "true");
+        headers.set(HttpHeaders.LINK, "</api/version1/transactions/page>; rel=\"successor-version\"");
+        return headers;
     }
 }
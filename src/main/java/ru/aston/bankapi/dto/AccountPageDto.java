@@ -0,0 +1,28 @@
+package ru.aston.bankapi.dto;
+
+import lombok.Getter;
+import lombok.EqualsAndHashCode;
+import lombok.Setter;
+import lombok.ToString;
+import lombok.AllArgsConstructor;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Getter
+@Setter
+@EqualsAndHashCode
+@ToString
+@NoArgsConstructor
+@AllArgsConstructor
+public class AccountPageDto {
+    private List<AccountSummaryDto> accounts;
+    private int page;
+    private int size;
+    private boolean hasNext;
+
+    /**
+     * Общее количество счетов, null - в режиме slice, где подсчет не выполняется.
+     */
+    private Long totalElements;
+}
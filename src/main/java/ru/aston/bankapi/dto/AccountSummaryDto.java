@@ -0,0 +1,22 @@
+package ru.aston.bankapi.dto;
+
+import lombok.Getter;
+import lombok.EqualsAndHashCode;
+import lombok.Setter;
+import lombok.ToString;
+import lombok.AllArgsConstructor;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+
+@Getter
+@Setter
+@EqualsAndHashCode
+@ToString
+@NoArgsConstructor
+@AllArgsConstructor
+public class AccountSummaryDto {
+    private String accNum;
+    private String name;
+    private BigDecimal amount;
+}
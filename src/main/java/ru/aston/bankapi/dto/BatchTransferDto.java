@@ -0,0 +1,28 @@
+package ru.aston.bankapi.dto;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotNull;
+import lombok.Getter;
+import lombok.EqualsAndHashCode;
+import lombok.Setter;
+import lombok.ToString;
+import lombok.AllArgsConstructor;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Getter
+@Setter
+@EqualsAndHashCode
+@ToString
+@NoArgsConstructor
+@AllArgsConstructor
+public class BatchTransferDto {
+    private List<@Valid @NotNull TransferDto> transfers;
+
+    /**
+     * true - все переводы выполняются или не выполняется ни один,
+     * false - каждый перевод выполняется независимо от остальных.
+     */
+    private boolean atomic;
+}
@@ -1,11 +1,13 @@
 package ru.aston.bankapi.dto;
 
+import jakarta.validation.constraints.Digits;
 import lombok.Getter;
 import lombok.EqualsAndHashCode;
 import lombok.Setter;
 import lombok.ToString;
 import lombok.AllArgsConstructor;
-import lombok.NoArgsConstructor;;
+import lombok.NoArgsConstructor;
+import ru.aston.bankapi.model.Money;
 
 import java.math.BigDecimal;
 
@@ -16,6 +18,7 @@ import java.math.BigDecimal;
 @NoArgsConstructor
 @AllArgsConstructor
 public class PaymentDto {
+    @Digits(integer = 16, fraction = Money.SCALE)
     private BigDecimal amountOfOperation;
     private String pinCode;
 }
@@ -0,0 +1,26 @@
+package ru.aston.bankapi.dto;
+
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+import lombok.Getter;
+import lombok.EqualsAndHashCode;
+import lombok.Setter;
+import lombok.ToString;
+import lombok.AllArgsConstructor;
+import lombok.NoArgsConstructor;
+
+@Getter
+@Setter
+@EqualsAndHashCode
+@ToString
+@NoArgsConstructor
+@AllArgsConstructor
+public class PinChangeDto {
+    @ToString.Exclude
+    private String pinCode;
+
+    @ToString.Exclude
+    @NotNull
+    @Size(min = 4, max = 4)
+    private String newPinCode;
+}
@@ -0,0 +1,29 @@
+package ru.aston.bankapi.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Getter;
+import lombok.EqualsAndHashCode;
+import lombok.Setter;
+import lombok.ToString;
+import lombok.AllArgsConstructor;
+import lombok.NoArgsConstructor;
+
+/**
+ * Результат создания счета по строке пакетного запроса: номер счета или текст ошибки.
+ */
+@Getter
+@Setter
+@EqualsAndHashCode
+@ToString
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class ProvisioningResultDto {
+
+    /**
+     * Номер строки во входном потоке, начиная с 1.
+     */
+    private long row;
+    private String accNum;
+    private String error;
+}
@@ -0,0 +1,29 @@
+package ru.aston.bankapi.dto;
+
+import lombok.Getter;
+import lombok.EqualsAndHashCode;
+import lombok.Setter;
+import lombok.ToString;
+import lombok.AllArgsConstructor;
+import lombok.NoArgsConstructor;
+import ru.aston.bankapi.model.Transaction;
+
+import java.util.List;
+
+@Getter
+@Setter
+@EqualsAndHashCode
+@ToString
+@NoArgsConstructor
+@AllArgsConstructor
+public class TransactionPageDto {
+    private List<Transaction> transactions;
+
+    /**
+     * Значение afterId для запроса следующей страницы, null - страница последняя.
+     * Операции, перенесенные в историю позже чтения страницы, могут иметь номер
+     * меньше курсора и в следующих страницах не появятся, см.
+     * {@link ru.aston.bankapi.service.history.HistoryRelay}.
+     */
+    private Long nextAfterId;
+}
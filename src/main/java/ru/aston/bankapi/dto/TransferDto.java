@@ -0,0 +1,33 @@
+package ru.aston.bankapi.dto;
+
+import jakarta.validation.constraints.Digits;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Positive;
+import lombok.Getter;
+import lombok.EqualsAndHashCode;
+import lombok.Setter;
+import lombok.ToString;
+import lombok.AllArgsConstructor;
+import lombok.NoArgsConstructor;
+import ru.aston.bankapi.model.Money;
+
+import java.math.BigDecimal;
+
+@Getter
+@Setter
+@EqualsAndHashCode
+@ToString(exclude = "pinCode")
+@NoArgsConstructor
+@AllArgsConstructor
+public class TransferDto {
+    @NotBlank
+    private String fromAccNum;
+    @NotBlank
+    private String toAccNum;
+    @NotNull
+    @Positive
+    @Digits(integer = 16, fraction = Money.SCALE)
+    private BigDecimal amount;
+    private String pinCode;
+}
@@ -0,0 +1,38 @@
+package ru.aston.bankapi.dto;
+
+import lombok.Getter;
+import lombok.EqualsAndHashCode;
+import lombok.Setter;
+import lombok.ToString;
+import lombok.AllArgsConstructor;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+
+@Getter
+@Setter
+@EqualsAndHashCode
+@ToString
+@NoArgsConstructor
+@AllArgsConstructor
+public class TransferResultDto {
+    private String fromAccNum;
+    private String toAccNum;
+    private BigDecimal amount;
+    private Status status;
+
+    public enum Status {
+        SUCCESS,
+        NOT_FOUND,
+        INVALID_PIN,
+        NOT_ENOUGH_FUNDS,
+        /**
+         * Перевод был выполним, но отменен из-за ошибки другого перевода атомарного пакета.
+         */
+        ROLLED_BACK,
+        /**
+         * Перевод не проверялся, так как атомарный пакет уже завершился ошибкой.
+         */
+        SKIPPED
+    }
+}
@@ -0,0 +1,7 @@
+package ru.aston.bankapi.exceptionHandler;
+
+public class DuplicateRequestException extends RuntimeException {
+    public DuplicateRequestException(String string) {
+        super(string);
+    }
+}
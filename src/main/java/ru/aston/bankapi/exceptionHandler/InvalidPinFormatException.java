@@ -0,0 +1,11 @@
+package ru.aston.bankapi.exceptionHandler;
+
+/**
+ * Новый пин-код не подходит по формату. В отличие от неверного текущего пин-кода
+ * не считается попыткой подбора.
+ */
+public class InvalidPinFormatException extends InvalidDataException {
+    public InvalidPinFormatException(String message) {
+        super(message);
+    }
+}
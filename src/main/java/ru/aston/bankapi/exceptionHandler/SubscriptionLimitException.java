@@ -0,0 +1,7 @@
+package ru.aston.bankapi.exceptionHandler;
+
+public class SubscriptionLimitException extends RuntimeException {
+    public SubscriptionLimitException(String string) {
+        super(string);
+    }
+}
@@ -0,0 +1,17 @@
+package ru.aston.bankapi.exceptionHandler;
+
+import java.time.Duration;
+
+public class TooManyRequestsException extends RuntimeException {
+
+    private final Duration retryAfter;
+
+    public TooManyRequestsException(String string, Duration retryAfter) {
+        super(string);
+        this.retryAfter = retryAfter;
+    }
+
+    public Duration getRetryAfter() {
+        return retryAfter;
+    }
+}
@@ -1,9 +1,11 @@
 package ru.aston.bankapi.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
 import jakarta.persistence.Id;
 import jakarta.persistence.Table;
+import jakarta.persistence.Version;
 import lombok.ToString;
 import lombok.AllArgsConstructor;
 import lombok.Getter;
@@ -11,7 +13,6 @@ import lombok.NoArgsConstructor;
 import lombok.Setter;
 
 import java.math.BigDecimal;
-import java.util.UUID;
 
 @Entity
 @Getter
@@ -27,14 +28,29 @@ public class Account {
 
     private String name;
 
-    @Column(length = 4)
+    /**
+     * Хеш пин-кода, см. {@link ru.aston.bankapi.service.pin.PinVerifier}.
+     */
+    @JsonIgnore
+    @ToString.Exclude
+    @Column(length = 128)
     private String pinCode;
 
-    @Column(columnDefinition = "numeric")
+    @Column(precision = 19, scale = Money.SCALE)
     private BigDecimal amount;
 
+    @Version
+    private Long version;
+
+    public Account(String accNum, String name, String pinCode, BigDecimal amount) {
+        this.accNum = accNum;
+        this.name = name;
+        this.pinCode = pinCode;
+        this.amount = amount;
+    }
+
     public Account(String name, String pinCode) {
-        this.accNum = UUID.randomUUID().toString();
+        this.accNum = TimeOrderedUuid.next().toString();
         this.name = name;
         this.pinCode = pinCode;
         this.amount = BigDecimal.valueOf(0);
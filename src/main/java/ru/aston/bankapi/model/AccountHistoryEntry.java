@@ -0,0 +1,82 @@
+package ru.aston.bankapi.model;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.EnumType;
+import jakarta.persistence.Enumerated;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.SequenceGenerator;
+import jakarta.persistence.Table;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import lombok.ToString;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.LocalTime;
+
+/**
+ * Строка истории счета, построенная из outbox. Перевод между разными счетами дает две
+ * строки: OUTGOING у отправителя и INCOMING у получателя, остальные операции - одну
+ * строку OUTGOING. История счета читается одним сканированием индекса (accNum, transactionId),
+ * общий список операций - по строкам OUTGOING индексом (direction, transactionId).
+ */
+@Entity
+@Getter
+@Setter
+@ToString
+@NoArgsConstructor
+@Table(name = "account_history", indexes = {
+        @Index(name = "uk_account_history_acc_num_transaction_id", columnList = "accNum, transactionId", unique = true),
+        @Index(name = "idx_account_history_direction_transaction_id", columnList = "direction, transactionId")
+})
+public class AccountHistoryEntry {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "account_history_seq")
+    @SequenceGenerator(name = "account_history_seq", sequenceName = "account_history_seq", allocationSize = 50)
+    private Long id;
+
+    private String accNum;
+
+    @Enumerated(EnumType.STRING)
+    private Direction direction;
+
+    private Long transactionId;
+
+    private String accNumFrom;
+
+    private String accNumTo;
+
+    private LocalTime time;
+
+    @Column(precision = 19, scale = Money.SCALE)
+    private BigDecimal amount;
+
+    @Enumerated(EnumType.STRING)
+    private Operation operation;
+
+    private Instant createdAt;
+
+    public AccountHistoryEntry(TransactionOutboxEntry entry, Direction direction) {
+        this.accNum = direction == Direction.OUTGOING ? entry.getAccNumFrom() : entry.getAccNumTo();
+        this.direction = direction;
+        this.transactionId = entry.getTransactionId();
+        this.accNumFrom = entry.getAccNumFrom();
+        this.accNumTo = entry.getAccNumTo();
+        this.time = entry.getTime();
+        this.amount = entry.getAmount();
+        this.operation = entry.getOperation();
+        this.createdAt = entry.getCreatedAt();
+    }
+
+    public Transaction toTransaction() {
+        var transaction = new Transaction(transactionId, accNumFrom, accNumTo, time, amount, operation);
+        transaction.setCreatedAt(createdAt);
+        return transaction;
+    }
+}
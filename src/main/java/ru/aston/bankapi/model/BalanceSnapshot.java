@@ -0,0 +1,52 @@
+package ru.aston.bankapi.model;
+
+import jakarta.persistence.Convert;
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.SequenceGenerator;
+import jakarta.persistence.Table;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import lombok.ToString;
+
+import java.time.Instant;
+
+/**
+ * Баланс счета, накопленный по всем операциям с id не больше lastTransactionId.
+ * Снимок снят не раньше фиксации этих операций, поэтому все они имеют createdAt до takenAt.
+ */
+@Entity
+@Getter
+@Setter
+@ToString
+@NoArgsConstructor
+@Table(name = "balance_snapshots", indexes = {
+        @Index(name = "idx_balance_snapshots_acc_num_taken_at", columnList = "accNum, takenAt")
+})
+public class BalanceSnapshot {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "balance_snapshots_seq")
+    @SequenceGenerator(name = "balance_snapshots_seq", sequenceName = "balance_snapshots_seq", allocationSize = 50)
+    private Long id;
+
+    private String accNum;
+
+    private Long lastTransactionId;
+
+    @Convert(converter = MoneyConverter.class)
+    private Money balance;
+
+    private Instant takenAt;
+
+    public BalanceSnapshot(String accNum, Long lastTransactionId, Money balance, Instant takenAt) {
+        this.accNum = accNum;
+        this.lastTransactionId = lastTransactionId;
+        this.balance = balance;
+        this.takenAt = takenAt;
+    }
+}
@@ -0,0 +1,10 @@
+package ru.aston.bankapi.model;
+
+/**
+ * Направление операции относительно счета в истории: списание (или пополнение и снятие
+ * по самому счету) и входящий перевод от другого счета.
+ */
+public enum Direction {
+    OUTGOING,
+    INCOMING
+}
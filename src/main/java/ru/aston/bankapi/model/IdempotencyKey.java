@@ -0,0 +1,84 @@
+package ru.aston.bankapi.model;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.EnumType;
+import jakarta.persistence.Enumerated;
+import jakarta.persistence.Id;
+import jakarta.persistence.PostLoad;
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.Table;
+import jakarta.persistence.Transient;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import lombok.ToString;
+import org.springframework.data.domain.Persistable;
+
+import java.time.Instant;
+
+/**
+ * Ключ идемпотентности выполненной операции. Записывается в той же транзакции,
+ * что и изменение балансов, поэтому повтор запроса не может провести операцию дважды.
+ * Ключ назначается клиентом, поэтому сущность всегда сохраняется через persist:
+ * повторная вставка того же ключа нарушает первичный ключ, а не перезаписывает строку.
+ */
+@Entity
+@Getter
+@Setter
+@ToString
+@NoArgsConstructor
+@Table(name = "idempotency_keys")
+public class IdempotencyKey implements Persistable<String> {
+
+    @Id
+    private String idempotencyKey;
+
+    @Enumerated(EnumType.STRING)
+    private Operation operation;
+
+    /**
+     * Идентификатор записи истории; null, если операция записана через журнал.
+     */
+    private Long transactionId;
+
+    /**
+     * Номер записи журнала операции. В режиме журнала id записи истории назначается
+     * позже, при загрузке в БД, и запись находится по transactions.journal_seq.
+     */
+    private Long journalSeq;
+
+    /**
+     * SHA-256 счетов и суммы запроса, см. {@link ru.aston.bankapi.service.idempotency.IdempotencyStore#fingerprint}.
+     */
+    @Column(length = 64)
+    private String requestFingerprint;
+
+    private Instant createdAt;
+
+    @Transient
+    private boolean persisted;
+
+    public IdempotencyKey(String idempotencyKey, Operation operation, String requestFingerprint, Instant createdAt) {
+        this.idempotencyKey = idempotencyKey;
+        this.operation = operation;
+        this.requestFingerprint = requestFingerprint;
+        this.createdAt = createdAt;
+    }
+
+    @Override
+    public String getId() {
+        return idempotencyKey;
+    }
+
+    @Override
+    public boolean isNew() {
+        return !persisted;
+    }
+
+    @PostLoad
+    @PostPersist
+    void markPersisted() {
+        persisted = true;
+    }
+}
@@ -0,0 +1,66 @@
+package ru.aston.bankapi.model;
+
+import ru.aston.bankapi.exceptionHandler.InvalidDataException;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Денежная сумма в копейках. Арифметика проверяет переполнение, а преобразование
+ * из BigDecimal отклоняет суммы с дробной частью меньше копейки.
+ */
+public record Money(long minorUnits) implements Comparable<Money> {
+
+    public static final int SCALE = 2;
+    public static final Money ZERO = new Money(0);
+
+    public static Money of(BigDecimal amount) {
+        if (amount == null) {
+            throw new InvalidDataException("Сумма не указана");
+        }
+        try {
+            return new Money(amount.setScale(SCALE, RoundingMode.UNNECESSARY).unscaledValue().longValueExact());
+        } catch (ArithmeticException e) {
+            throw new InvalidDataException("Сумма должна содержать не больше " + SCALE
+                    + " знаков после запятой и не превышать " + BigDecimal.valueOf(Long.MAX_VALUE, SCALE));
+        }
+    }
+
+    public Money plus(Money other) {
+        try {
+            return new Money(Math.addExact(minorUnits, other.minorUnits));
+        } catch (ArithmeticException e) {
+            throw new InvalidDataException("Переполнение суммы");
+        }
+    }
+
+    public Money minus(Money other) {
+        try {
+            return new Money(Math.subtractExact(minorUnits, other.minorUnits));
+        } catch (ArithmeticException e) {
+            throw new InvalidDataException("Переполнение суммы");
+        }
+    }
+
+    public Money negate() {
+        return ZERO.minus(this);
+    }
+
+    public boolean isLessThan(Money other) {
+        return minorUnits < other.minorUnits;
+    }
+
+    public BigDecimal toBigDecimal() {
+        return BigDecimal.valueOf(minorUnits, SCALE);
+    }
+
+    @Override
+    public int compareTo(Money other) {
+        return Long.compare(minorUnits, other.minorUnits);
+    }
+
+    @Override
+    public String toString() {
+        return toBigDecimal().toPlainString();
+    }
+}
@@ -0,0 +1,22 @@
+package ru.aston.bankapi.model;
+
+import jakarta.persistence.AttributeConverter;
+import jakarta.persistence.Converter;
+
+/**
+ * Хранит {@link Money} в столбце bigint в копейках. Не применяется автоматически:
+ * поле подключает его через {@code @Convert(converter = MoneyConverter.class)}.
+ */
+@Converter
+public class MoneyConverter implements AttributeConverter<Money, Long> {
+
+    @Override
+    public Long convertToDatabaseColumn(Money money) {
+        return money == null ? null : money.minorUnits();
+    }
+
+    @Override
+    public Money convertToEntityAttribute(Long minorUnits) {
+        return minorUnits == null ? null : new Money(minorUnits);
+    }
+}
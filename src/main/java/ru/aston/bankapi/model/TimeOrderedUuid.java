@@ -0,0 +1,29 @@
+package ru.aston.bankapi.model;
+
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Генератор UUID версии 7: старшие 48 бит - время в миллисекундах, следующие 12 -
+ * счетчик внутри миллисекунды, остальное - случайные биты из ThreadLocalRandom.
+ * Номера возрастают в пределах процесса, поэтому новые строки попадают в конец
+ * индекса по первичному ключу, а генерация не блокируется на общем SecureRandom,
+ * как {@link UUID#randomUUID()}.
+ */
+public final class TimeOrderedUuid {
+
+    private static final AtomicLong LAST = new AtomicLong();
+
+    private TimeOrderedUuid() {
+    }
+
+    public static UUID next() {
+        long now = System.currentTimeMillis() << 12;
+        // При переполнении счетчика метка уходит в следующую миллисекунду, порядок сохраняется.
+        long stamp = LAST.updateAndGet(last -> Math.max(last + 1, now));
+        long mostSigBits = (stamp >>> 12) << 16 | 0x7000L | (stamp & 0xFFFL);
+        long leastSigBits = ThreadLocalRandom.current().nextLong() & 0x3FFFFFFFFFFFFFFFL | 0x8000000000000000L;
+        return new UUID(mostSigBits, leastSigBits);
+    }
+}
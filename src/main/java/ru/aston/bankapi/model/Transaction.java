@@ -4,6 +4,8 @@ import jakarta.persistence.Entity;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.SequenceGenerator;
 import jakarta.persistence.Table;
 import jakarta.persistence.Temporal;
 import jakarta.persistence.TemporalType;
@@ -17,6 +19,7 @@ import lombok.Setter;
 import lombok.ToString;
 
 import java.math.BigDecimal;
+import java.time.Instant;
 import java.time.LocalTime;
 
 @Entity
@@ -24,12 +27,16 @@ import java.time.LocalTime;
 @Setter
 @ToString
 @NoArgsConstructor
-@Table(name = "transactions")
+@Table(name = "transactions", indexes = {
+        @Index(name = "idx_transactions_acc_num_from_id", columnList = "accNumFrom, id"),
+        @Index(name = "idx_transactions_acc_num_to_id", columnList = "accNumTo, id")
+})
 @AllArgsConstructor
 public class Transaction {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.AUTO)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "transactions_seq")
+    @SequenceGenerator(name = "transactions_seq", sequenceName = "transactions_seq", allocationSize = 50)
     private Long id;
 
     private String accNumFrom;
@@ -39,17 +46,31 @@ public class Transaction {
     @Temporal(TemporalType.TIME)
     private LocalTime time;
 
-    @Column(columnDefinition = "numeric")
+    @Column(precision = 19, scale = Money.SCALE)
     private BigDecimal amount;
 
     @Enumerated(EnumType.STRING)
     private Operation operation;
 
+    @Column(unique = true)
+    private Long journalSeq;
+
+    /**
+     * Полная отметка времени операции; id из transactions_seq служит сквозным порядковым номером.
+     */
+    private Instant createdAt;
+
+    public Transaction(Long id, String accNumFrom, String accNumTo, LocalTime time, BigDecimal amount, Operation operation) {
+        this(accNumFrom, accNumTo, time, amount, operation);
+        this.id = id;
+    }
+
     public Transaction(String accNumFrom, String accNumTo, LocalTime time, BigDecimal amount, Operation operation) {
         this.accNumFrom = accNumFrom;
         this.accNumTo = accNumTo;
         this.time = time;
         this.amount = amount;
         this.operation = operation;
+        this.createdAt = Instant.now();
     }
 }
@@ -0,0 +1,63 @@
+package ru.aston.bankapi.model;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.EnumType;
+import jakarta.persistence.Enumerated;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.SequenceGenerator;
+import jakarta.persistence.Table;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import lombok.ToString;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.LocalTime;
+
+/**
+ * Запись транзакционного outbox: копия операции, вставленная в той же транзакции,
+ * что и сама операция. Удаляется после переноса в историю счетов.
+ */
+@Entity
+@Getter
+@Setter
+@ToString
+@NoArgsConstructor
+@Table(name = "transaction_outbox")
+public class TransactionOutboxEntry {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "transaction_outbox_seq")
+    @SequenceGenerator(name = "transaction_outbox_seq", sequenceName = "transaction_outbox_seq", allocationSize = 50)
+    private Long id;
+
+    private Long transactionId;
+
+    private String accNumFrom;
+
+    private String accNumTo;
+
+    private LocalTime time;
+
+    @Column(precision = 19, scale = Money.SCALE)
+    private BigDecimal amount;
+
+    @Enumerated(EnumType.STRING)
+    private Operation operation;
+
+    private Instant createdAt;
+
+    public TransactionOutboxEntry(Transaction transaction) {
+        this.transactionId = transaction.getId();
+        this.accNumFrom = transaction.getAccNumFrom();
+        this.accNumTo = transaction.getAccNumTo();
+        this.time = transaction.getTime();
+        this.amount = transaction.getAmount();
+        this.operation = transaction.getOperation();
+        this.createdAt = transaction.getCreatedAt();
+    }
+}
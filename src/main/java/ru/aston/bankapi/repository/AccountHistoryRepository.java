@@ -0,0 +1,62 @@
+package ru.aston.bankapi.repository;
+
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import ru.aston.bankapi.model.AccountHistoryEntry;
+import ru.aston.bankapi.model.Direction;
+import ru.aston.bankapi.model.Operation;
+
+import java.time.LocalTime;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Запросы к проекции истории. Фильтр accNum в постраничном списке и выгрузке, как и прежде,
+ * отбирает операции, списанные со счета, то есть строки OUTGOING.
+ */
+@Repository
+public interface AccountHistoryRepository extends JpaRepository<AccountHistoryEntry, Long> {
+
+    List<AccountHistoryEntry> findByAccNumOrderByTransactionId(String accNum, Pageable pageable);
+
+    List<AccountHistoryEntry> findByDirectionOrderByTransactionId(Direction direction, Pageable pageable);
+
+    @Query("""
+            select h from AccountHistoryEntry h
+            where h.direction = ru.aston.bankapi.model.Direction.OUTGOING
+              and h.transactionId > :afterId
+              and (:accNum is null or h.accNum = :accNum)
+              and (:operation is null or h.operation = :operation)
+              and (:timeFrom is null or h.time >= :timeFrom)
+              and (:timeTo is null or h.time < :timeTo)
+            order by h.transactionId""")
+    List<AccountHistoryEntry> findPage(@Param("afterId") long afterId,
+                                       @Param("accNum") String accNum,
+                                       @Param("operation") Operation operation,
+                                       @Param("timeFrom") LocalTime timeFrom,
+                                       @Param("timeTo") LocalTime timeTo,
+                                       Pageable pageable);
+
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("""
+            select h from AccountHistoryEntry h
+            where h.direction = ru.aston.bankapi.model.Direction.OUTGOING
+              and (:accNum is null or h.accNum = :accNum)
+              and (:operation is null or h.operation = :operation)
+              and (:timeFrom is null or h.time >= :timeFrom)
+              and (:timeTo is null or h.time < :timeTo)
+            order by h.transactionId""")
+    Stream<AccountHistoryEntry> streamAll(@Param("accNum") String accNum,
+                                          @Param("operation") Operation operation,
+                                          @Param("timeFrom") LocalTime timeFrom,
+                                          @Param("timeTo") LocalTime timeTo);
+}
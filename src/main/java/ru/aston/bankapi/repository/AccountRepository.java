@@ -1,11 +1,60 @@
 package ru.aston.bankapi.repository;
 
+import jakarta.persistence.LockModeType;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import ru.aston.bankapi.dto.AccountSummaryDto;
 import ru.aston.bankapi.model.Account;
 
+import java.math.BigDecimal;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
+
 @Repository
 public interface AccountRepository extends JpaRepository<Account, String> {
     List<Account> findAll();
+
+    List<Account> findAllBy(Pageable pageable);
+
+    @Query(value = "select new ru.aston.bankapi.dto.AccountSummaryDto(a.accNum, a.name, a.amount) from Account a",
+            countQuery = "select count(a) from Account a")
+    Page<AccountSummaryDto> findSummaries(Pageable pageable);
+
+    @Query("select new ru.aston.bankapi.dto.AccountSummaryDto(a.accNum, a.name, a.amount) from Account a")
+    Slice<AccountSummaryDto> findSummarySlice(Pageable pageable);
+
+    @Query("select a.accNum from Account a order by a.accNum")
+    List<String> findAllAccNums();
+
+    @Query("select a.pinCode from Account a where a.accNum = :accNum")
+    Optional<String> findPinCode(@Param("accNum") String accNum);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select a from Account a where a.accNum = :accNum")
+    Optional<Account> findByIdForUpdate(@Param("accNum") String accNum);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select a from Account a where a.accNum in :accNums order by a.accNum")
+    List<Account> findAllByIdForUpdate(@Param("accNums") Collection<String> accNums);
+
+    @Modifying
+    @Query("update Account a set a.amount = a.amount + :delta, a.version = a.version + 1 where a.accNum = :accNum")
+    int addToAmount(@Param("accNum") String accNum, @Param("delta") BigDecimal delta);
+
+    @Query("select a from Account a where a.pinCode is not null and a.pinCode not like concat(:prefix, '%') order by a.accNum")
+    List<Account> findWithPinCodeNotStartingWith(@Param("prefix") String prefix, Pageable pageable);
+
+    @Modifying
+    @Query("update Account a set a.pinCode = :newPinCode, a.version = a.version + 1 "
+            + "where a.accNum = :accNum and a.pinCode = :pinCode")
+    int replacePinCode(@Param("accNum") String accNum, @Param("pinCode") String pinCode,
+                       @Param("newPinCode") String newPinCode);
 }
@@ -0,0 +1,14 @@
+package ru.aston.bankapi.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+import ru.aston.bankapi.model.BalanceSnapshot;
+
+import java.time.Instant;
+import java.util.Optional;
+
+@Repository
+public interface BalanceSnapshotRepository extends JpaRepository<BalanceSnapshot, Long> {
+
+    Optional<BalanceSnapshot> findFirstByAccNumAndTakenAtLessThanEqualOrderByTakenAtDesc(String accNum, Instant asOf);
+}
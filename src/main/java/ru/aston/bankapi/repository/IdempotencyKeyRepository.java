@@ -0,0 +1,18 @@
+package ru.aston.bankapi.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import ru.aston.bankapi.model.IdempotencyKey;
+
+import java.time.Instant;
+
+@Repository
+public interface IdempotencyKeyRepository extends JpaRepository<IdempotencyKey, String> {
+
+    @Modifying
+    @Query("delete from IdempotencyKey k where k.createdAt < :before")
+    int deleteCreatedBefore(@Param("before") Instant before);
+}
@@ -0,0 +1,36 @@
+package ru.aston.bankapi.repository;
+
+import jakarta.persistence.LockModeType;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+import ru.aston.bankapi.model.Transaction;
+import ru.aston.bankapi.model.TransactionOutboxEntry;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface TransactionOutboxRepository extends JpaRepository<TransactionOutboxEntry, Long> {
+
+    /**
+     * Добавляет операции в outbox; вызывается в транзакции, сохраняющей сами операции.
+     */
+    default void append(Collection<Transaction> transactions) {
+        saveAll(transactions.stream().map(TransactionOutboxEntry::new).toList());
+    }
+
+    /**
+     * Первые записи outbox под блокировкой: перенос, запущенный параллельно на другом
+     * экземпляре, ждет фиксации и не видит уже удаленных записей.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select e from TransactionOutboxEntry e order by e.id")
+    List<TransactionOutboxEntry> findBatch(Pageable pageable);
+
+    @Query("select min(e.createdAt) from TransactionOutboxEntry e")
+    Instant findOldestCreatedAt();
+}
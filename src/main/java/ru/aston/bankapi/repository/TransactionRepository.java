@@ -1,13 +1,56 @@
 package ru.aston.bankapi.repository;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import ru.aston.bankapi.model.Transaction;
 
-import java.util.List;
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.Optional;
+import java.util.Set;
 
 @Repository
 public interface TransactionRepository extends JpaRepository<Transaction,Long> {
 
-    List<Transaction> findTransactionsByAccNumFrom(String accNum);
+    /**
+     * Изменение баланса счета за операции с id в (afterId, upToId] и createdAt не позже asOf.
+     * Пополнение увеличивает баланс, снятие уменьшает, перевод уменьшает баланс отправителя
+     * и увеличивает баланс получателя; перевод самому себе баланс не меняет.
+     */
+    String BALANCE_DELTA_QUERY = """
+            select coalesce(sum(delta), 0) from (
+                select case when operation = 'DEPOSIT' then amount
+                            when operation = 'TRANSFER' and acc_num_to = :accNum then 0
+                            else -amount end as delta
+                from transactions
+                where acc_num_from = :accNum and id > :afterId and id <= :upToId and created_at <= :asOf
+                union all
+                select amount from transactions
+                where acc_num_to = :accNum and acc_num_from <> :accNum
+                  and id > :afterId and id <= :upToId and created_at <= :asOf
+            ) deltas""";
+
+    String LAST_ID_QUERY = """
+            select coalesce(max(id), 0) from (
+                select max(id) as id from transactions where acc_num_from = :accNum
+                union all
+                select max(id) from transactions where acc_num_to = :accNum
+            ) ids""";
+
+    @Query(value = BALANCE_DELTA_QUERY, nativeQuery = true)
+    BigDecimal sumBalanceDelta(@Param("accNum") String accNum,
+                               @Param("afterId") long afterId,
+                               @Param("upToId") long upToId,
+                               @Param("asOf") Instant asOf);
+
+    @Query(value = LAST_ID_QUERY, nativeQuery = true)
+    long findLastIdByAccNum(@Param("accNum") String accNum);
+
+    @Query("select t.journalSeq from Transaction t where t.journalSeq between :from and :to")
+    Set<Long> findJournalSeqsBetween(@Param("from") long from, @Param("to") long to);
+
+    @Query("select max(t.journalSeq) from Transaction t")
+    Optional<Long> findMaxJournalSeq();
 }
@@ -1,6 +1,10 @@
 package ru.aston.bankapi.service;
 
 
+import org.springframework.data.domain.Pageable;
+import ru.aston.bankapi.dto.AccountPageDto;
+import ru.aston.bankapi.dto.TransferDto;
+import ru.aston.bankapi.dto.TransferResultDto;
 import ru.aston.bankapi.model.Account;
 
 import java.math.BigDecimal;
@@ -10,10 +14,21 @@ import java.util.Optional;
 public interface AccountService {
     Optional<Account> createAccount(String name, String pinCode);
     List<Account> getAllAccounts();
+    AccountPageDto getAccountsPage(Pageable pageable, boolean slice);
     Optional<Account> getAccountByAccNum(String accNum);
     void deposit (String accNum, BigDecimal amount);
 
+    void deposit(String accNum, BigDecimal amount, String idempotencyKey);
+
     void transfer(String fromAccNum, String toAccNum, BigDecimal amount, String pinCode);
 
+    void transfer(String fromAccNum, String toAccNum, BigDecimal amount, String pinCode, String idempotencyKey);
+
     void withdraw(String accNum, BigDecimal amount, String pinCode);
+
+    void withdraw(String accNum, BigDecimal amount, String pinCode, String idempotencyKey);
+
+    void changePin(String accNum, String pinCode, String newPinCode);
+
+    List<TransferResultDto> transferBatch(List<TransferDto> transfers, boolean atomic);
 }
@@ -2,21 +2,48 @@ package ru.aston.bankapi.service;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import ru.aston.bankapi.config.ConcurrencyProperties;
+import ru.aston.bankapi.config.LockingMode;
+import ru.aston.bankapi.config.ReplicaLagGuard;
+import ru.aston.bankapi.dto.AccountPageDto;
+import ru.aston.bankapi.dto.AccountSummaryDto;
+import ru.aston.bankapi.dto.TransferDto;
+import ru.aston.bankapi.dto.TransferResultDto;
 import ru.aston.bankapi.exceptionHandler.InvalidDataException;
+import ru.aston.bankapi.exceptionHandler.InvalidPinFormatException;
 import ru.aston.bankapi.exceptionHandler.NotEnoughFundsException;
 import ru.aston.bankapi.exceptionHandler.NotFoundException;
 import ru.aston.bankapi.model.Account;
+import ru.aston.bankapi.model.IdempotencyKey;
 import ru.aston.bankapi.model.Operation;
 import ru.aston.bankapi.model.Transaction;
 import ru.aston.bankapi.repository.AccountRepository;
-import ru.aston.bankapi.repository.TransactionRepository;
+import ru.aston.bankapi.service.cache.AccountCache;
+import ru.aston.bankapi.service.events.BalanceEventHub;
+import ru.aston.bankapi.service.idempotency.IdempotencyStore;
+import ru.aston.bankapi.service.pin.PinVerifier;
 
 import java.math.BigDecimal;
 import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
@@ -24,33 +51,54 @@ import java.util.Optional;
 @Transactional(readOnly = true)
 public class AccountServiceImpl implements AccountService {
 
+    static final int MAX_TRANSFER_BATCH_SIZE = 1000;
+    static final int MAX_ALL_ACCOUNTS = 1000;
+    static final Set<String> SORTABLE_PROPERTIES = Set.of("accNum", "name", "amount");
+
     private final AccountRepository accountRepository;
-    private final TransactionRepository transactionRepository;
+    private final TransactionService transactionService;
+    private final ConcurrencyProperties concurrencyProperties;
+    private final AccountCache accountCache;
+    private final IdempotencyStore idempotencyStore;
+    private final BalanceEventHub balanceEventHub;
+    private final PinVerifier pinVerifier;
+    private final ReplicaLagGuard replicaLagGuard;
 
     @Override
     @Transactional
     public Optional<Account> createAccount(String name, String pinCode) {
-        log.info("Вызван метод createAccount с параметрами name={}, pinCode={}", name, "*".repeat(pinCode.length()));
+        if (log.isDebugEnabled()) {
+            log.debug("Вызван метод createAccount с параметрами name={}, pinCode={}", name,
+                    "*".repeat(pinCode == null ? 0 : pinCode.length()));
+        }
 
         if ((name == null) || (pinCode.length() != 4)) {
             log.error("Введены некорректные данные");
             throw new InvalidDataException("Введены некорректные данные");
         }
 
-        var account = new Account(name, pinCode);
+        var account = new Account(name, pinVerifier.hash(pinCode));
 
         accountRepository.save(account);
 
-        log.info("Учетная запись успешно создана: name={}, pinCode={}", name, "*".repeat(pinCode.length()));
+        log.info("Учетная запись успешно создана: accNum={}, name={}", account.getAccNum(), name);
 
         return Optional.of(account);
     }
 
+    /**
+     * Полный список счетов оставлен для совместимости и ограничен MAX_ALL_ACCOUNTS счетами:
+     * при большем числе список не собирается целиком, нужно читать {@link #getAccountsPage}.
+     */
     @Override
     public List<Account> getAllAccounts() {
-        log.info("Вызван метод getAllAccounts");
+        log.debug("Вызван метод getAllAccounts");
 
-        List<Account> accounts = accountRepository.findAll();
+        List<Account> accounts = accountRepository.findAllBy(PageRequest.of(0, MAX_ALL_ACCOUNTS + 1, Sort.by("accNum")));
+        if (accounts.size() > MAX_ALL_ACCOUNTS) {
+            log.error("Счетов больше {}, полный список не отдается", MAX_ALL_ACCOUNTS);
+            throw new InvalidDataException("Счетов больше " + MAX_ALL_ACCOUNTS + ", используйте постраничный список");
+        }
 
         log.info("Найдено {} аккаунтов", accounts.size());
 
@@ -58,15 +106,43 @@ public class AccountServiceImpl implements AccountService {
     }
 
     @Override
+    public AccountPageDto getAccountsPage(Pageable pageable, boolean slice) {
+        log.debug("Вызван метод getAccountsPage с параметрами pageable={}, slice={}", pageable, slice);
+
+        for (var order : pageable.getSort()) {
+            if (!SORTABLE_PROPERTIES.contains(order.getProperty())) {
+                log.error("Недопустимое поле сортировки: {}", order.getProperty());
+                throw new InvalidDataException("Сортировка возможна только по полям " + SORTABLE_PROPERTIES);
+            }
+        }
+        // Без явной сортировки страницы не стабильны, поэтому по умолчанию упорядочиваем по номеру счета.
+        var request = pageable.getSort().isSorted() ? pageable
+                : PageRequest.of(pageable.getPageNumber(), pageable.getPageSize(), Sort.by("accNum"));
+
+        if (slice) {
+            Slice<AccountSummaryDto> accounts = accountRepository.findSummarySlice(request);
+            return new AccountPageDto(accounts.getContent(), accounts.getNumber(), accounts.getSize(),
+                    accounts.hasNext(), null);
+        }
+        Page<AccountSummaryDto> accounts = accountRepository.findSummaries(request);
+        return new AccountPageDto(accounts.getContent(), accounts.getNumber(), accounts.getSize(),
+                accounts.hasNext(), accounts.getTotalElements());
+    }
+
+    @Override
+    @Transactional(readOnly = true, propagation = Propagation.SUPPORTS)
     public Optional<Account> getAccountByAccNum(String accNum) {
-        log.info("Вызван метод getAccountByAccNum с параметром {}", accNum);
+        log.debug("Вызван метод getAccountByAccNum с параметром {}", accNum);
 
-        Optional<Account> account = accountRepository.findById(accNum);
+        replicaLagGuard.readAfterWrites(accNum);
+        Optional<Account> account = replicaLagGuard.isReplicaRead()
+                ? accountCache.getIfPresent(accNum, accountRepository::findById)
+                : accountCache.get(accNum, accountRepository::findById);
 
         if (account.isEmpty()) {
             log.error("Аккаунт с номером {} не найден", accNum);
         } else {
-            log.info("Найден аккаунт: {}", account.get());
+            log.debug("Найден аккаунт {}", accNum);
         }
 
         return account;
@@ -74,10 +150,19 @@ public class AccountServiceImpl implements AccountService {
 
     @Override
     @Transactional
+    @ConcurrencyRetryable
     public void deposit(String accNum, BigDecimal amount) {
-        log.info("Вызван метод deposit с параметрами {}, {}", accNum, amount);
+        deposit(accNum, amount, null);
+    }
 
-        Optional<Account> byAccountId = accountRepository.findById(accNum);
+    @Override
+    @Transactional
+    @ConcurrencyRetryable
+    public void deposit(String accNum, BigDecimal amount, String idempotencyKey) {
+        log.debug("Вызван метод deposit с параметрами {}, {}", accNum, amount);
+
+        var key = reserve(idempotencyKey, Operation.DEPOSIT, accNum, accNum, amount);
+        Optional<Account> byAccountId = findForUpdate(accNum);
 
         if (byAccountId.isEmpty()) {
             log.error("Аккаунт с номером {} не найден", accNum);
@@ -90,25 +175,46 @@ public class AccountServiceImpl implements AccountService {
         account.setAmount(account.getAmount().add(amount));
 
         accountRepository.save(account);
-        transactionRepository.save(transaction);
+        transactionService.save(transaction);
+        complete(key, transaction);
+        replicaLagGuard.recordWritesAfterCommit(accNum);
+        accountCache.evictAfterCommit(accNum);
+        balanceEventHub.publishAfterCommit(List.of(account), List.of(transaction));
 
         log.info("Сумма {} успешно зачислена на аккаунт {}", amount, accNum);
     }
 
     @Override
     @Transactional
+    @ConcurrencyRetryable
     public void transfer(String fromAccNum, String toAccNum, BigDecimal amount, String pinCode) {
-        log.info("Вызван метод transfer с параметрами {}, {}",
-                fromAccNum, toAccNum);
+        transfer(fromAccNum, toAccNum, amount, pinCode, null);
+    }
+
+    @Override
+    @Transactional
+    @ConcurrencyRetryable
+    public void transfer(String fromAccNum, String toAccNum, BigDecimal amount, String pinCode,
+                         String idempotencyKey) {
+        log.debug("Вызван метод transfer с параметрами {}, {}", fromAccNum, toAccNum);
 
-        var fromAccount = accountRepository.findById(fromAccNum);
-        var toAccount = accountRepository.findById(toAccNum);
+        var key = reserve(idempotencyKey, Operation.TRANSFER, fromAccNum, toAccNum, amount);
+        var verifiedPin = verifyPin(fromAccNum, pinCode);
+
+        // В пессимистичном режиме блокировки берутся в порядке возрастания номера счета,
+        // чтобы встречные переводы A->B и B->A не приводили к взаимоблокировке.
+        boolean fromFirst = fromAccNum.compareTo(toAccNum) <= 0;
+        var firstAccount = findForUpdate(fromFirst ? fromAccNum : toAccNum);
+        var secondAccount = findForUpdate(fromFirst ? toAccNum : fromAccNum);
+
+        var fromAccount = fromFirst ? firstAccount : secondAccount;
+        var toAccount = fromFirst ? secondAccount : firstAccount;
 
         if ((fromAccount.isEmpty()) || (toAccount.isEmpty())) {
             log.error("Ошибка! Перевод не выполнен!");
             throw new NotFoundException("Ошибка! Перевод не выполнен!");
         }
-        if (!(fromAccount.get().getPinCode().equals(pinCode))) {
+        if (!isPinUnchanged(verifiedPin, fromAccount.get())) {
             log.error("Пин код введен неверно!");
             throw new InvalidDataException("Пин код введен неверно!");
         }
@@ -124,18 +230,32 @@ public class AccountServiceImpl implements AccountService {
 
         accountRepository.save(fromAccount.get());
         accountRepository.save(toAccount.get());
-        transactionRepository.save(transaction);
+        transactionService.save(transaction);
+        complete(key, transaction);
+        replicaLagGuard.recordWritesAfterCommit(fromAccNum, toAccNum);
+        accountCache.evictAfterCommit(fromAccNum, toAccNum);
+        balanceEventHub.publishAfterCommit(List.of(fromAccount.get(), toAccount.get()), List.of(transaction));
 
         log.info("Перевод успешно выполнен");
     }
 
     @Override
     @Transactional
+    @ConcurrencyRetryable
     public void withdraw(String accNum, BigDecimal amount, String pinCode) {
-        log.info("Вызван метод withdraw с параметрами {}, {}",
-                accNum, amount);
+        withdraw(accNum, amount, pinCode, null);
+    }
 
-        var byAccountId = accountRepository.findById(accNum);
+    @Override
+    @Transactional
+    @ConcurrencyRetryable
+    public void withdraw(String accNum, BigDecimal amount, String pinCode, String idempotencyKey) {
+        log.debug("Вызван метод withdraw с параметрами {}, {}", accNum, amount);
+
+        var key = reserve(idempotencyKey, Operation.WITHDRAW, accNum, accNum, amount);
+        var verifiedPin = verifyPin(accNum, pinCode);
+
+        var byAccountId = findForUpdate(accNum);
 
         if (byAccountId.isEmpty()) {
             log.error("Аккаунта с таким номером - {} не найдено", accNum);
@@ -145,7 +265,7 @@ public class AccountServiceImpl implements AccountService {
             log.error("Недостаточно средств для данной операции");
             throw new NotEnoughFundsException();
         }
-        if (!(byAccountId.get().getPinCode().equals(pinCode))) {
+        if (!isPinUnchanged(verifiedPin, byAccountId.get())) {
             log.error("Пин-код введен неверно!");
             throw new InvalidDataException("Пин код вееден неверно!");
         }
@@ -156,8 +276,202 @@ public class AccountServiceImpl implements AccountService {
         account.setAmount(account.getAmount().subtract(amount));
 
         accountRepository.save(account);
-        transactionRepository.save(transaction);
+        transactionService.save(transaction);
+        complete(key, transaction);
+        replicaLagGuard.recordWritesAfterCommit(accNum);
+        accountCache.evictAfterCommit(accNum);
+        balanceEventHub.publishAfterCommit(List.of(account), List.of(transaction));
         log.info("Операция по снятию денежных средств успешно выполнена!");
     }
 
+    @Override
+    @Transactional
+    @ConcurrencyRetryable
+    public void changePin(String accNum, String pinCode, String newPinCode) {
+        log.debug("Вызван метод changePin с параметром {}", accNum);
+
+        if (newPinCode == null || newPinCode.length() != 4) {
+            log.error("Введены некорректные данные");
+            throw new InvalidPinFormatException("Новый пин-код должен состоять из 4 символов");
+        }
+
+        var verifiedPin = verifyPin(accNum, pinCode);
+        var byAccountId = findForUpdate(accNum);
+
+        if (byAccountId.isEmpty()) {
+            log.error("Аккаунт с номером {} не найден", accNum);
+            throw new NotFoundException("Аккаунт с данным номером не найден");
+        }
+        if (!isPinUnchanged(verifiedPin, byAccountId.get())) {
+            log.error("Пин-код введен неверно!");
+            throw new InvalidDataException("Пин код введен неверно!");
+        }
+
+        var account = byAccountId.get();
+        account.setPinCode(pinVerifier.hash(newPinCode));
+
+        accountRepository.save(account);
+        replicaLagGuard.recordWritesAfterCommit(accNum);
+        accountCache.evictAfterCommit(accNum);
+        // Запись кэша со старым хешем и так не совпадет с новым, сброс только освобождает место.
+        pinVerifier.invalidate(accNum);
+
+        log.info("Пин-код аккаунта {} изменен", accNum);
+    }
+
+    @Override
+    @Transactional
+    @ConcurrencyRetryable
+    public List<TransferResultDto> transferBatch(List<TransferDto> transfers, boolean atomic) {
+        log.debug("Вызван метод transferBatch: atomic={}", atomic);
+
+        checkTransferBatch(transfers);
+
+        Map<PinCheck, String> verifiedPins = new HashMap<>();
+        var accNums = new TreeSet<String>();
+        for (var transfer : transfers) {
+            var check = new PinCheck(transfer.getFromAccNum(), transfer.getPinCode());
+            if (!verifiedPins.containsKey(check)) {
+                verifiedPins.put(check, verifyPin(check.accNum(), check.pinCode()));
+            }
+            accNums.add(transfer.getFromAccNum());
+            accNums.add(transfer.getToAccNum());
+        }
+        Map<String, Account> accounts = findAllForUpdate(accNums).stream()
+                .collect(Collectors.toMap(Account::getAccNum, Function.identity()));
+
+        // Переводы применяются к рабочей копии балансов, сущности изменяются только
+        // после проверки всего пакета, поэтому отмененный пакет ничего не записывает.
+        Map<String, BigDecimal> balances = new TreeMap<>();
+        accounts.forEach((accNum, account) -> balances.put(accNum, account.getAmount()));
+
+        List<TransferResultDto> results = new ArrayList<>(transfers.size());
+        List<Transaction> transactions = new ArrayList<>(transfers.size());
+        boolean failed = false;
+
+        for (var transfer : transfers) {
+            var status = failed && atomic ? TransferResultDto.Status.SKIPPED : apply(transfer, accounts, balances, verifiedPins);
+            if (status == TransferResultDto.Status.SUCCESS) {
+                transactions.add(new Transaction(transfer.getFromAccNum(), transfer.getToAccNum(),
+                        LocalTime.now(), transfer.getAmount(), Operation.TRANSFER));
+            } else if (status != TransferResultDto.Status.SKIPPED) {
+                failed = true;
+            }
+            results.add(new TransferResultDto(transfer.getFromAccNum(), transfer.getToAccNum(),
+                    transfer.getAmount(), status));
+        }
+
+        if (atomic && failed) {
+            log.error("Пакет переводов отменен");
+            results.stream()
+                    .filter(result -> result.getStatus() == TransferResultDto.Status.SUCCESS)
+                    .forEach(result -> result.setStatus(TransferResultDto.Status.ROLLED_BACK));
+            return results;
+        }
+
+        List<Account> changed = new ArrayList<>();
+        balances.forEach((accNum, balance) -> {
+            var account = accounts.get(accNum);
+            if (account.getAmount().compareTo(balance) != 0) {
+                account.setAmount(balance);
+                changed.add(account);
+            }
+        });
+
+        accountRepository.saveAll(changed);
+        transactionService.saveAll(transactions);
+        replicaLagGuard.recordWritesAfterCommit(changed.stream().map(Account::getAccNum).toList());
+        accountCache.evictAfterCommit(changed.stream().map(Account::getAccNum).toList());
+        balanceEventHub.publishAfterCommit(changed, transactions);
+
+        log.info("Пакет переводов выполнен: успешно {} из {}", transactions.size(), transfers.size());
+        return results;
+    }
+
+    /**
+     * Проверяет размер пакета и поля каждого перевода. Пакет с некорректным переводом
+     * отклоняется целиком, как и в контроллере при проверке {@link TransferDto}.
+     */
+    public static void checkTransferBatch(List<TransferDto> transfers) {
+        if (transfers == null || transfers.isEmpty() || transfers.size() > MAX_TRANSFER_BATCH_SIZE) {
+            log.error("Недопустимый размер пакета переводов");
+            throw new InvalidDataException("Размер пакета переводов должен быть от 1 до " + MAX_TRANSFER_BATCH_SIZE);
+        }
+        for (var transfer : transfers) {
+            if (transfer == null || transfer.getFromAccNum() == null || transfer.getToAccNum() == null
+                    || transfer.getAmount() == null || transfer.getAmount().signum() <= 0) {
+                log.error("Некорректный перевод в пакете: {}", transfer);
+                throw new InvalidDataException("Перевод должен содержать счета и положительную сумму");
+            }
+        }
+    }
+
+    private TransferResultDto.Status apply(TransferDto transfer, Map<String, Account> accounts,
+                                           Map<String, BigDecimal> balances, Map<PinCheck, String> verifiedPins) {
+        var fromAccount = accounts.get(transfer.getFromAccNum());
+        var toAccount = accounts.get(transfer.getToAccNum());
+
+        if (fromAccount == null || toAccount == null) {
+            return TransferResultDto.Status.NOT_FOUND;
+        }
+        if (!isPinUnchanged(verifiedPins.get(new PinCheck(transfer.getFromAccNum(), transfer.getPinCode())), fromAccount)) {
+            return TransferResultDto.Status.INVALID_PIN;
+        }
+        if (balances.get(transfer.getFromAccNum()).compareTo(transfer.getAmount()) < 0) {
+            return TransferResultDto.Status.NOT_ENOUGH_FUNDS;
+        }
+
+        balances.merge(transfer.getFromAccNum(), transfer.getAmount().negate(), BigDecimal::add);
+        balances.merge(transfer.getToAccNum(), transfer.getAmount(), BigDecimal::add);
+        return TransferResultDto.Status.SUCCESS;
+    }
+
+    /**
+     * Проверяет пин-код до блокировки счета и возвращает хеш, с которым он совпал, или null.
+     * PBKDF2 считается без блокировок строк, под блокировкой остается сравнить хеш
+     * с прочитанным здесь: если пин-код успели сменить, операция отклоняется.
+     */
+    private String verifyPin(String accNum, String pinCode) {
+        return accountRepository.findPinCode(accNum)
+                .filter(stored -> pinVerifier.matches(accNum, stored, pinCode))
+                .orElse(null);
+    }
+
+    private static boolean isPinUnchanged(String verifiedPin, Account account) {
+        return verifiedPin != null && verifiedPin.equals(account.getPinCode());
+    }
+
+    /**
+     * Ключ вставляется до чтения счетов: повтор запроса завершается на первичном ключе
+     * и не изменяет балансы. Без ключа операция выполняется как обычно.
+     */
+    private IdempotencyKey reserve(String idempotencyKey, Operation operation,
+                                   String fromAccNum, String toAccNum, BigDecimal amount) {
+        return idempotencyKey == null ? null : idempotencyStore.reserve(idempotencyKey, operation,
+                IdempotencyStore.fingerprint(fromAccNum, toAccNum, amount));
+    }
+
+    private void complete(IdempotencyKey key, Transaction transaction) {
+        if (key != null) {
+            idempotencyStore.complete(key, transaction);
+        }
+    }
+
+    private List<Account> findAllForUpdate(Collection<String> accNums) {
+        if (concurrencyProperties.getMode() == LockingMode.OPTIMISTIC) {
+            return accountRepository.findAllById(accNums);
+        }
+        return accountRepository.findAllByIdForUpdate(accNums);
+    }
+
+    private Optional<Account> findForUpdate(String accNum) {
+        if (concurrencyProperties.getMode() == LockingMode.OPTIMISTIC) {
+            return accountRepository.findById(accNum);
+        }
+        return accountRepository.findByIdForUpdate(accNum);
+    }
+
+    private record PinCheck(String accNum, String pinCode) {
+    }
+
 }
@@ -0,0 +1,28 @@
+package ru.aston.bankapi.service;
+
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.retry.annotation.Backoff;
+import org.springframework.retry.annotation.Retryable;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Повтор операции со счетом при конфликте блокировок (таймаут ожидания блокировки,
+ * взаимоблокировка) или версий счета с экспоненциальной задержкой и случайным разбросом.
+ * Каждая попытка заново читает счета в новой транзакции.
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+@Retryable(
+        retryFor = ConcurrencyFailureException.class,
+        maxAttemptsExpression = "${bank.concurrency.retry.max-attempts:5}",
+        backoff = @Backoff(
+                delayExpression = "${bank.concurrency.retry.delay:20}",
+                maxDelayExpression = "${bank.concurrency.retry.max-delay:200}",
+                multiplier = 2,
+                random = true))
+public @interface ConcurrencyRetryable {
+}
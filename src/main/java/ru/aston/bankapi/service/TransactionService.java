@@ -1,11 +1,22 @@
 package ru.aston.bankapi.service;
 
+import ru.aston.bankapi.dto.TransactionFilterDto;
+import ru.aston.bankapi.dto.TransactionPageDto;
 import ru.aston.bankapi.model.Transaction;
 
 import java.util.List;
+import java.util.function.Consumer;
 
 public interface TransactionService {
 
     List<Transaction> getAllTransactions();
     List<Transaction> getAllTransactionsByAccNum(String accNum);
+
+    TransactionPageDto getTransactionsPage(TransactionFilterDto filter, Long afterId, Integer limit);
+
+    void exportTransactions(TransactionFilterDto filter, Consumer<Transaction> consumer);
+
+    Transaction save(Transaction transaction);
+
+    List<Transaction> saveAll(List<Transaction> transactions);
 }
@@ -1,14 +1,33 @@
 package ru.aston.bankapi.service;
 
+import jakarta.persistence.EntityManager;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import ru.aston.bankapi.config.HistoryProperties;
+import ru.aston.bankapi.config.ReplicaLagGuard;
+import ru.aston.bankapi.dto.TransactionFilterDto;
+import ru.aston.bankapi.dto.TransactionPageDto;
+import ru.aston.bankapi.exceptionHandler.InvalidDataException;
+import ru.aston.bankapi.model.AccountHistoryEntry;
+import ru.aston.bankapi.model.Direction;
 import ru.aston.bankapi.model.Transaction;
+import ru.aston.bankapi.repository.AccountHistoryRepository;
+import ru.aston.bankapi.repository.TransactionOutboxRepository;
 import ru.aston.bankapi.repository.TransactionRepository;
+import ru.aston.bankapi.service.journal.TransactionJournal;
 
 import java.util.List;
+import java.util.Optional;
+import java.util.function.Consumer;
 
+/**
+ * Операции записываются в transactions вместе с записью outbox, а читаются из истории
+ * счетов, которую заполняет {@link ru.aston.bankapi.service.history.HistoryRelay}.
+ * Чтение не конкурирует с записью операций, но отстает от нее на время переноса.
+ */
 @Slf4j
 @Service
 @RequiredArgsConstructor
@@ -16,16 +35,111 @@ import java.util.List;
 public class TransactionServiceImpl implements TransactionService {
 
     private final TransactionRepository transactionRepository;
+    private final TransactionOutboxRepository transactionOutboxRepository;
+    private final AccountHistoryRepository accountHistoryRepository;
+    private final Optional<TransactionJournal> transactionJournal;
+    private final HistoryProperties historyProperties;
+    private final EntityManager entityManager;
+    private final ReplicaLagGuard replicaLagGuard;
 
+    /**
+     * Полный список операций оставлен для совместимости и ограничен максимальным размером
+     * страницы: при большем числе список не собирается целиком, нужно читать
+     * {@link #getTransactionsPage} или выгрузку.
+     */
     @Override
     public List<Transaction> getAllTransactions() {
-        log.info("Вызван метод getAllTransactions");
-        return transactionRepository.findAll();
+        log.debug("Вызван метод getAllTransactions");
+        return toBoundedTransactions(accountHistoryRepository.findByDirectionOrderByTransactionId(Direction.OUTGOING,
+                PageRequest.ofSize(historyProperties.getMaxPageSize() + 1)));
     }
 
+    /**
+     * Ограничен так же, как {@link #getAllTransactions}.
+     */
     @Override
     public List<Transaction> getAllTransactionsByAccNum(String accNum) {
-        log.info("Вызван метод getAllTransactionsByAccNum с параметром accNum={}", accNum);
-        return transactionRepository.findTransactionsByAccNumFrom(accNum);
+        log.debug("Вызван метод getAllTransactionsByAccNum с параметром accNum={}", accNum);
+        replicaLagGuard.readAfterWrites(accNum);
+        return toBoundedTransactions(accountHistoryRepository.findByAccNumOrderByTransactionId(accNum,
+                PageRequest.ofSize(historyProperties.getMaxPageSize() + 1)));
+    }
+
+    @Override
+    public TransactionPageDto getTransactionsPage(TransactionFilterDto filter, Long afterId, Integer limit) {
+        if (log.isDebugEnabled()) {
+            log.debug("Вызван метод getTransactionsPage с параметрами filter={}, afterId={}, limit={}",
+                    filter, afterId, limit);
+        }
+
+        int pageSize = limit == null ? historyProperties.getDefaultPageSize() : limit;
+        if (pageSize < 1 || pageSize > historyProperties.getMaxPageSize()) {
+            log.error("Недопустимый размер страницы: {}", pageSize);
+            throw new InvalidDataException("Размер страницы должен быть от 1 до " + historyProperties.getMaxPageSize());
+        }
+
+        replicaLagGuard.readAfterWrites(filter.getAccNum());
+        // Запрашиваем на одну запись больше, чтобы узнать, есть ли следующая страница.
+        var transactions = toTransactions(accountHistoryRepository.findPage(afterId == null ? 0 : afterId,
+                filter.getAccNum(), filter.getOperation(), filter.getTimeFrom(), filter.getTimeTo(),
+                PageRequest.ofSize(pageSize + 1)));
+
+        if (transactions.size() <= pageSize) {
+            return new TransactionPageDto(transactions, null);
+        }
+        var page = transactions.subList(0, pageSize);
+        return new TransactionPageDto(page, page.get(pageSize - 1).getId());
+    }
+
+    @Override
+    public void exportTransactions(TransactionFilterDto filter, Consumer<Transaction> consumer) {
+        log.debug("Вызван метод exportTransactions с параметром filter={}", filter);
+        replicaLagGuard.readAfterWrites(filter.getAccNum());
+
+        try (var entries = accountHistoryRepository.streamAll(filter.getAccNum(), filter.getOperation(),
+                filter.getTimeFrom(), filter.getTimeTo())) {
+            entries.forEach(entry -> {
+                consumer.accept(entry.toTransaction());
+                // Не накапливаем выгруженные записи в контексте персистентности.
+                entityManager.detach(entry);
+            });
+        }
+    }
+
+    @Override
+    @Transactional
+    public Transaction save(Transaction transaction) {
+        if (transactionJournal.isPresent()) {
+            transactionJournal.get().append(transaction);
+            return transaction;
+        }
+        var saved = transactionRepository.save(transaction);
+        transactionOutboxRepository.append(List.of(saved));
+        return saved;
+    }
+
+    @Override
+    @Transactional
+    public List<Transaction> saveAll(List<Transaction> transactions) {
+        if (transactionJournal.isPresent()) {
+            transactions.forEach(transactionJournal.get()::append);
+            return transactions;
+        }
+        var saved = transactionRepository.saveAll(transactions);
+        transactionOutboxRepository.append(saved);
+        return saved;
+    }
+
+    private List<Transaction> toBoundedTransactions(List<AccountHistoryEntry> entries) {
+        if (entries.size() > historyProperties.getMaxPageSize()) {
+            log.error("Операций больше {}, полный список не отдается", historyProperties.getMaxPageSize());
+            throw new InvalidDataException("Операций больше " + historyProperties.getMaxPageSize()
+                    + ", используйте постраничный список или выгрузку");
+        }
+        return toTransactions(entries);
+    }
+
+    private static List<Transaction> toTransactions(List<AccountHistoryEntry> entries) {
+        return entries.stream().map(AccountHistoryEntry::toTransaction).toList();
     }
 }
@@ -0,0 +1,91 @@
+package ru.aston.bankapi.service.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import ru.aston.bankapi.config.AccountCacheProperties;
+import ru.aston.bankapi.model.Account;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Function;
+
+/**
+ * Ограниченный по размеру и времени жизни кэш снимков счетов.
+ * Изменяющие баланс операции сбрасывают записи только после фиксации транзакции,
+ * поэтому читатели не видят незафиксированных балансов. Загрузка ключа в Caffeine
+ * атомарна, и сброс ждет ее завершения, так что значение, прочитанное до фиксации,
+ * не переживет последующий сброс. Строки, прочитанные с реплики, в кэш не кладутся.
+ */
+@Slf4j
+@Component
+public class AccountCache {
+
+    static final String CACHE_NAME = "accounts";
+
+    private final Cache<String, Account> cache;
+
+    public AccountCache(AccountCacheProperties properties, MeterRegistry meterRegistry) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(properties.getMaximumSize())
+                .expireAfterWrite(properties.getTtl())
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, CACHE_NAME);
+    }
+
+    /**
+     * Возвращает снимок счета из кэша или загружает его. В кэш всегда кладется копия,
+     * чтобы управляемая сущность, измененная внутри транзакции, не попала к другим читателям.
+     * Снимок из кэша общий для всех читателей и не должен изменяться.
+     */
+    public Optional<Account> get(String accNum, Function<String, Optional<Account>> loader) {
+        var loaded = new Account[1];
+        var snapshot = cache.get(accNum, key -> loader.apply(key)
+                .map(account -> {
+                    loaded[0] = account;
+                    return copy(account);
+                })
+                .orElse(null));
+        return Optional.ofNullable(loaded[0] != null ? loaded[0] : snapshot);
+    }
+
+    /**
+     * Возвращает снимок счета из кэша, а при промахе читает его через loader, не сохраняя.
+     * Нужен для чтений с реплики: отстающая строка не должна задерживаться в кэше на ttl.
+     */
+    public Optional<Account> getIfPresent(String accNum, Function<String, Optional<Account>> loader) {
+        var snapshot = cache.getIfPresent(accNum);
+        return snapshot != null ? Optional.of(snapshot) : loader.apply(accNum);
+    }
+
+    public void evictAfterCommit(String... accNums) {
+        evictAfterCommit(List.of(accNums));
+    }
+
+    public void evictAfterCommit(Collection<String> accNums) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            cache.invalidateAll(accNums);
+            return;
+        }
+        var keys = List.copyOf(accNums);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                log.debug("Сброс кэша счетов после фиксации: {}", keys);
+                cache.invalidateAll(keys);
+            }
+        });
+    }
+
+    private static Account copy(Account account) {
+        return new Account(account.getAccNum(), account.getName(), account.getPinCode(),
+                account.getAmount(), account.getVersion());
+    }
+}
@@ -0,0 +1,10 @@
+package ru.aston.bankapi.service.events;
+
+import java.math.BigDecimal;
+
+/**
+ * Зафиксированный баланс счета. Версия строки счета упорядочивает события, поэтому
+ * при слиянии у подписчика остается самый новый баланс независимо от порядка доставки.
+ */
+public record BalanceEvent(String accNum, BigDecimal amount, long version) {
+}
@@ -0,0 +1,300 @@
+package ru.aston.bankapi.service.events;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import ru.aston.bankapi.config.EventsProperties;
+import ru.aston.bankapi.exceptionHandler.NotFoundException;
+import ru.aston.bankapi.exceptionHandler.SubscriptionLimitException;
+import ru.aston.bankapi.model.Account;
+import ru.aston.bankapi.model.Transaction;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Рассылка зафиксированных изменений счетов подписчикам SSE. Подписка - асинхронный
+ * запрос Servlet без собственного потока: пока событий нет, соединение ничего не занимает,
+ * кроме сокета и объекта подписчика. Публикация после фиксации только кладет событие
+ * в очередь подписчика и никогда не ждет сети. Отправкой занимается небольшой пул потоков,
+ * на подписчика в пуле не больше одной задачи. Балансы сливаются до последнего,
+ * операции копятся в ограниченной очереди; если клиент не успевает читать, старые
+ * операции отбрасываются, и клиент получает событие dropped с их числом.
+ */
+@Slf4j
+@Component
+public class BalanceEventHub {
+
+    static final String BALANCE = "balance";
+    static final String TRANSACTION = "transaction";
+    static final String DROPPED = "dropped";
+
+    private final EventsProperties eventsProperties;
+    private final Map<String, Set<Subscriber>> subscribers = new ConcurrentHashMap<>();
+    private final AtomicInteger count = new AtomicInteger();
+    private final ExecutorService dispatcher;
+    private final Counter dropped;
+
+    public BalanceEventHub(EventsProperties eventsProperties, MeterRegistry meterRegistry) {
+        this.eventsProperties = eventsProperties;
+        this.dispatcher = Executors.newFixedThreadPool(eventsProperties.getDispatchThreads(),
+                new CustomizableThreadFactory("balance-events-"));
+        this.dropped = Counter.builder("bank.events.dropped")
+                .description("Число операций, не доставленных медленным подписчикам")
+                .register(meterRegistry);
+        Gauge.builder("bank.events.subscribers", count, AtomicInteger::get)
+                .description("Число открытых подписок на изменения счетов")
+                .register(meterRegistry);
+    }
+
+    @PreDestroy
+    void stop() {
+        dispatcher.shutdownNow();
+        subscribers.values().forEach(set -> set.forEach(subscriber -> subscriber.emitter.complete()));
+    }
+
+    /**
+     * Открывает подписку на счет и отправляет в нее текущий баланс. Баланс читается
+     * после регистрации подписчика: операция, зафиксированная раньше, уже видна в нем,
+     * а более поздняя придет событием с большей версией.
+     */
+    public SseEmitter subscribe(String accNum, Function<String, Optional<Account>> loader) {
+        if (count.incrementAndGet() > eventsProperties.getMaxSubscriptions()) {
+            count.decrementAndGet();
+            log.warn("Достигнут предел подписок: {}", eventsProperties.getMaxSubscriptions());
+            throw new SubscriptionLimitException("Превышено число подписок на изменения счетов");
+        }
+        var subscriber = new Subscriber(accNum, new SseEmitter(eventsProperties.getTimeout().toMillis()));
+        subscribers.compute(accNum, (key, set) -> {
+            var result = set == null ? ConcurrentHashMap.<Subscriber>newKeySet() : set;
+            result.add(subscriber);
+            return result;
+        });
+        Optional<Account> account;
+        try {
+            account = loader.apply(accNum);
+        } catch (RuntimeException e) {
+            remove(subscriber);
+            throw e;
+        }
+        if (account.isEmpty()) {
+            remove(subscriber);
+            throw new NotFoundException("Аккаунт с данным номером не найден");
+        }
+        subscriber.emitter.onCompletion(() -> remove(subscriber));
+        subscriber.emitter.onTimeout(() -> remove(subscriber));
+        subscriber.emitter.onError(e -> remove(subscriber));
+        subscriber.offerBalance(balanceOf(account.get()));
+        return subscriber.emitter;
+    }
+
+    /**
+     * Публикует балансы счетов и операции после фиксации текущей транзакции.
+     * Если ни на один из счетов нет подписок, ничего не регистрирует.
+     */
+    public void publishAfterCommit(Collection<Account> accounts, List<Transaction> transactions) {
+        if (count.get() == 0 || accounts.stream().noneMatch(account -> subscribers.containsKey(account.getAccNum()))) {
+            return;
+        }
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            publish(accounts, transactions);
+            return;
+        }
+        var changed = List.copyOf(accounts);
+        var committed = List.copyOf(transactions);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                publish(changed, committed);
+            }
+        });
+    }
+
+    @Scheduled(fixedDelayString = "${bank.events.heartbeat-interval:PT30S}",
+            initialDelayString = "${bank.events.heartbeat-interval:PT30S}")
+    public void heartbeat() {
+        subscribers.values().forEach(set -> set.forEach(Subscriber::offerHeartbeat));
+    }
+
+    int subscriberCount() {
+        return count.get();
+    }
+
+    private void publish(Collection<Account> accounts, List<Transaction> transactions) {
+        for (var transaction : transactions) {
+            forEach(transaction.getAccNumFrom(), subscriber -> subscriber.offerTransaction(transaction));
+            if (!transaction.getAccNumFrom().equals(transaction.getAccNumTo())) {
+                forEach(transaction.getAccNumTo(), subscriber -> subscriber.offerTransaction(transaction));
+            }
+        }
+        for (var account : accounts) {
+            var event = balanceOf(account);
+            forEach(account.getAccNum(), subscriber -> subscriber.offerBalance(event));
+        }
+    }
+
+    private void forEach(String accNum, Consumer<Subscriber> action) {
+        var set = subscribers.get(accNum);
+        if (set != null) {
+            set.forEach(action);
+        }
+    }
+
+    private void remove(Subscriber subscriber) {
+        subscribers.computeIfPresent(subscriber.accNum, (key, set) -> {
+            if (set.remove(subscriber)) {
+                count.decrementAndGet();
+            }
+            return set.isEmpty() ? null : set;
+        });
+    }
+
+    private static BalanceEvent balanceOf(Account account) {
+        return new BalanceEvent(account.getAccNum(), account.getAmount(),
+                account.getVersion() == null ? 0 : account.getVersion());
+    }
+
+    /**
+     * Очередь событий одного подписчика. Поля защищены монитором подписчика,
+     * сетевые отправки выполняются вне него. Баланс с версией не новее уже отправленной
+     * отбрасывается: afterCommit разных транзакций и начальный снимок с отстающей реплики
+     * могут прийти не по порядку версий.
+     */
+    private final class Subscriber {
+
+        private final String accNum;
+        private final SseEmitter emitter;
+        private final ArrayDeque<Transaction> transactions = new ArrayDeque<>();
+        private BalanceEvent balance;
+        private long lastSentVersion = -1;
+        private int droppedTransactions;
+        private boolean heartbeat;
+        private boolean scheduled;
+
+        Subscriber(String accNum, SseEmitter emitter) {
+            this.accNum = accNum;
+            this.emitter = emitter;
+        }
+
+        void offerTransaction(Transaction transaction) {
+            synchronized (this) {
+                if (transactions.size() == eventsProperties.getQueueCapacity()) {
+                    transactions.poll();
+                    droppedTransactions++;
+                    dropped.increment();
+                }
+                transactions.add(transaction);
+            }
+            schedule();
+        }
+
+        void offerBalance(BalanceEvent event) {
+            synchronized (this) {
+                if (event.version() <= lastSentVersion) {
+                    return;
+                }
+                if (balance == null || balance.version() < event.version()) {
+                    balance = event;
+                }
+            }
+            schedule();
+        }
+
+        void offerHeartbeat() {
+            synchronized (this) {
+                heartbeat = true;
+            }
+            schedule();
+        }
+
+        private void schedule() {
+            synchronized (this) {
+                if (scheduled) {
+                    return;
+                }
+                scheduled = true;
+            }
+            try {
+                dispatcher.execute(this::drain);
+            } catch (RuntimeException e) {
+                synchronized (this) {
+                    scheduled = false;
+                }
+            }
+        }
+
+        private void drain() {
+            while (true) {
+                List<Transaction> pendingTransactions;
+                BalanceEvent pendingBalance;
+                int pendingDropped;
+                boolean pendingHeartbeat;
+                synchronized (this) {
+                    if (transactions.isEmpty() && balance == null && droppedTransactions == 0 && !heartbeat) {
+                        scheduled = false;
+                        return;
+                    }
+                    pendingTransactions = new ArrayList<>(transactions);
+                    transactions.clear();
+                    pendingBalance = balance;
+                    if (balance != null) {
+                        lastSentVersion = balance.version();
+                        balance = null;
+                    }
+                    pendingDropped = droppedTransactions;
+                    droppedTransactions = 0;
+                    pendingHeartbeat = heartbeat;
+                    heartbeat = false;
+                }
+                try {
+                    if (pendingDropped > 0) {
+                        emitter.send(SseEmitter.event().name(DROPPED).data(pendingDropped));
+                    }
+                    for (var transaction : pendingTransactions) {
+                        var event = SseEmitter.event().name(TRANSACTION);
+                        // В режиме журнала id операции назначается при загрузке в БД, позже фиксации.
+                        if (transaction.getId() != null) {
+                            event.id(String.valueOf(transaction.getId()));
+                        }
+                        emitter.send(event.data(transaction, MediaType.APPLICATION_JSON));
+                    }
+                    if (pendingBalance != null) {
+                        emitter.send(SseEmitter.event().name(BALANCE).data(pendingBalance, MediaType.APPLICATION_JSON));
+                    }
+                    if (pendingHeartbeat) {
+                        emitter.send(SseEmitter.event().comment("ping"));
+                    }
+                } catch (IOException | IllegalStateException e) {
+                    log.debug("Подписка на счет {} закрыта: {}", accNum, e.getMessage());
+                    remove(this);
+                    emitter.completeWithError(e);
+                    synchronized (this) {
+                        scheduled = false;
+                    }
+                    return;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,154 @@
+package ru.aston.bankapi.service.history;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.event.ContextClosedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.aston.bankapi.config.HistoryProperties;
+import ru.aston.bankapi.config.ReplicaLagGuard;
+import ru.aston.bankapi.model.AccountHistoryEntry;
+import ru.aston.bankapi.model.Direction;
+import ru.aston.bankapi.repository.AccountHistoryRepository;
+import ru.aston.bankapi.repository.TransactionOutboxRepository;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Перенос outbox в историю счетов. Каждый пакет вставляется в account_history и удаляется
+ * из transaction_outbox в одной транзакции, поэтому после падения процесса перенос
+ * продолжается с первой неперенесенной записи без потерь и дублей. Отставание истории
+ * публикуется как число записей outbox и возраст самой старой из них. Счета перенесенных
+ * операций отмечаются в {@link ReplicaLagGuard}: их история появляется только сейчас.
+ * <p>
+ * Строки появляются в истории не в порядке transactionId: номера операций выдаются
+ * пулами последовательности до фиксации, а перенос идет после нее, поэтому операция
+ * с меньшим номером может попасть в историю позже операции с большим. Курсор afterId
+ * постраничного списка идет по transactionId и такую операцию пропустит навсегда.
+ * Страницы полны только для операций старше {@link #lag()}; клиенту, которому нужна
+ * полная история, следует перечитывать хвост с запасом или пользоваться выгрузкой.
+ */
+@Slf4j
+@Component
+public class HistoryRelay {
+
+    private final TransactionOutboxRepository transactionOutboxRepository;
+    private final AccountHistoryRepository accountHistoryRepository;
+    private final HistoryProperties historyProperties;
+    private final ReplicaLagGuard replicaLagGuard;
+    private final TransactionTemplate transactionTemplate;
+    private final Counter relayed;
+
+    private volatile boolean stopped;
+    private volatile long pending;
+    private volatile Instant oldestPending;
+
+    public HistoryRelay(TransactionOutboxRepository transactionOutboxRepository,
+                        AccountHistoryRepository accountHistoryRepository,
+                        HistoryProperties historyProperties,
+                        ReplicaLagGuard replicaLagGuard,
+                        PlatformTransactionManager transactionManager,
+                        MeterRegistry meterRegistry) {
+        this.transactionOutboxRepository = transactionOutboxRepository;
+        this.accountHistoryRepository = accountHistoryRepository;
+        this.historyProperties = historyProperties;
+        this.replicaLagGuard = replicaLagGuard;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.relayed = Counter.builder("bank.history.relay.relayed")
+                .description("Число операций, перенесенных из outbox в историю счетов")
+                .register(meterRegistry);
+        Gauge.builder("bank.history.relay.pending", this, relay -> relay.pending)
+                .description("Число операций в outbox, еще не попавших в историю счетов")
+                .register(meterRegistry);
+        Gauge.builder("bank.history.relay.lag", this, relay -> relay.lag().toMillis() / 1000.0)
+                .description("Возраст самой старой операции в outbox, секунды")
+                .baseUnit("seconds")
+                .register(meterRegistry);
+    }
+
+    @Scheduled(fixedDelayString = "${bank.history.relay-interval:PT0.1S}",
+            initialDelayString = "${bank.history.relay-interval:PT0.1S}")
+    public void run() {
+        if (!historyProperties.isRelayEnabled() || stopped) {
+            return;
+        }
+        try {
+            drain();
+        } catch (ConcurrencyFailureException e) {
+            log.warn("Outbox переносится параллельно другим экземпляром, повтор через {}",
+                    historyProperties.getRelayInterval());
+        } catch (RuntimeException e) {
+            log.error("Ошибка переноса outbox в историю счетов, повтор через {}",
+                    historyProperties.getRelayInterval(), e);
+        }
+    }
+
+    /**
+     * Останавливает периодический перенос до закрытия пула соединений и удаления схемы.
+     * Метод синхронизирован с {@link #drain()} и дожидается уже начатого переноса.
+     */
+    @EventListener(ContextClosedEvent.class)
+    public synchronized void stop() {
+        stopped = true;
+    }
+
+    /**
+     * Переносит все записи outbox пакетами и возвращает число перенесенных операций.
+     */
+    public synchronized int drain() {
+        int total = 0;
+        int batch;
+        do {
+            batch = transactionTemplate.execute(status -> relayBatch());
+            total += batch;
+        } while (batch == historyProperties.getRelayBatchSize());
+        // Отставание меряется по основной БД, а не по реплике.
+        transactionTemplate.executeWithoutResult(status -> {
+            pending = transactionOutboxRepository.count();
+            oldestPending = transactionOutboxRepository.findOldestCreatedAt();
+        });
+        if (total > 0) {
+            relayed.increment(total);
+            log.debug("Перенесено {} операций в историю счетов", total);
+        }
+        return total;
+    }
+
+    public Duration lag() {
+        var oldest = oldestPending;
+        return oldest == null ? Duration.ZERO : Duration.between(oldest, Instant.now());
+    }
+
+    private int relayBatch() {
+        var batch = transactionOutboxRepository.findBatch(PageRequest.ofSize(historyProperties.getRelayBatchSize()));
+        if (batch.isEmpty()) {
+            return 0;
+        }
+        List<AccountHistoryEntry> entries = new ArrayList<>(batch.size() * 2);
+        Set<String> accNums = new HashSet<>();
+        for (var entry : batch) {
+            entries.add(new AccountHistoryEntry(entry, Direction.OUTGOING));
+            accNums.add(entry.getAccNumFrom());
+            accNums.add(entry.getAccNumTo());
+            if (!entry.getAccNumFrom().equals(entry.getAccNumTo())) {
+                entries.add(new AccountHistoryEntry(entry, Direction.INCOMING));
+            }
+        }
+        accountHistoryRepository.saveAll(entries);
+        transactionOutboxRepository.deleteAllInBatch(batch);
+        replicaLagGuard.recordWritesAfterCommit(accNums);
+        return batch.size();
+    }
+}
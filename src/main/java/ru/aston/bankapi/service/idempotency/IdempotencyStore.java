@@ -0,0 +1,160 @@
+package ru.aston.bankapi.service.idempotency;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import ru.aston.bankapi.config.IdempotencyProperties;
+import ru.aston.bankapi.exceptionHandler.DuplicateRequestException;
+import ru.aston.bankapi.exceptionHandler.InvalidDataException;
+import ru.aston.bankapi.model.IdempotencyKey;
+import ru.aston.bankapi.model.Operation;
+import ru.aston.bankapi.model.Transaction;
+import ru.aston.bankapi.repository.IdempotencyKeyRepository;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.util.HexFormat;
+import java.util.Optional;
+
+/**
+ * Хранилище ключей идемпотентности: таблица idempotency_keys и кэш выполненных
+ * операций перед ней. В кэш попадают только зафиксированные ключи, поэтому ответ
+ * на повтор, найденный в кэше, всегда соответствует проведенной операции.
+ * Вместе с ключом хранится отпечаток запроса, по которому повтор с тем же ключом,
+ * но другими счетами или суммой отличается от настоящего повтора.
+ */
+@Slf4j
+@Component
+public class IdempotencyStore {
+
+    private final IdempotencyKeyRepository idempotencyKeyRepository;
+    private final IdempotencyProperties idempotencyProperties;
+    private final Cache<String, IdempotencyKey> completed;
+
+    public IdempotencyStore(IdempotencyKeyRepository idempotencyKeyRepository,
+                            IdempotencyProperties idempotencyProperties) {
+        this.idempotencyKeyRepository = idempotencyKeyRepository;
+        this.idempotencyProperties = idempotencyProperties;
+        this.completed = Caffeine.newBuilder()
+                .maximumSize(idempotencyProperties.getCacheMaximumSize())
+                .expireAfterWrite(idempotencyProperties.getTtl())
+                .build();
+    }
+
+    /**
+     * Операция, уже выполненная с данным ключом, если срок хранения ключа не истек.
+     * Транзакция не readOnly, чтобы ключ читался из основной БД, а не с отстающей реплики.
+     */
+    @Transactional(propagation = Propagation.SUPPORTS)
+    public Optional<IdempotencyKey> find(String key) {
+        validate(key);
+        var record = completed.getIfPresent(key);
+        if (record != null) {
+            return Optional.of(record);
+        }
+        var expiredBefore = Instant.now().minus(idempotencyProperties.getTtl());
+        var stored = idempotencyKeyRepository.findById(key)
+                .filter(found -> found.getCreatedAt().isAfter(expiredBefore));
+        stored.ifPresent(found -> completed.put(key, found));
+        return stored;
+    }
+
+    /**
+     * Вставляет ключ в текущей транзакции до изменения балансов. Параллельный запрос
+     * с тем же ключом ждет фиксации первого на первичном ключе и получает
+     * {@link DuplicateRequestException}, не затронув счета.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public IdempotencyKey reserve(String key, Operation operation, String fingerprint) {
+        validate(key);
+        try {
+            return idempotencyKeyRepository.saveAndFlush(newKey(key, operation, fingerprint));
+        } catch (DataIntegrityViolationException e) {
+            log.warn("Повторный запрос с ключом идемпотентности {}", key);
+            throw new DuplicateRequestException("Запрос с этим ключом идемпотентности уже выполнен");
+        }
+    }
+
+    /**
+     * Связывает ключ с записью истории и после фиксации транзакции кладет его в кэш.
+     * В режиме журнала у записи еще нет id, а номер записи журнала назначается перед
+     * фиксацией, поэтому ключ связывается с ним там же; синхронизация журнала
+     * зарегистрирована раньше и к этому моменту уже выполнена.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void complete(IdempotencyKey record, Transaction transaction) {
+        record.setTransactionId(transaction.getId());
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void beforeCommit(boolean readOnly) {
+                if (record.getTransactionId() == null) {
+                    record.setJournalSeq(transaction.getJournalSeq());
+                }
+            }
+
+            @Override
+            public void afterCommit() {
+                remember(record);
+            }
+        });
+    }
+
+    public IdempotencyKey newKey(String key, Operation operation, String fingerprint) {
+        validate(key);
+        return new IdempotencyKey(key, operation, fingerprint, Instant.now());
+    }
+
+    public void remember(IdempotencyKey record) {
+        completed.put(record.getIdempotencyKey(), record);
+    }
+
+    /**
+     * Отпечаток параметров запроса: счета и сумма. Для пополнения и снятия оба счета
+     * совпадают, как и в записи истории. Сумма сравнивается без учета незначащих нулей.
+     */
+    public static String fingerprint(String fromAccNum, String toAccNum, BigDecimal amount) {
+        var request = fromAccNum + "\n" + toAccNum + "\n"
+                + (amount == null ? "" : amount.stripTrailingZeros().toPlainString());
+        try {
+            var digest = MessageDigest.getInstance("SHA-256").digest(request.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("Алгоритм SHA-256 недоступен", e);
+        }
+    }
+
+    /**
+     * Совпадает ли повтор с запросом, выполненным с этим ключом. Ключи, записанные
+     * до появления отпечатков, сравниваются только по операции.
+     */
+    public static boolean isSameRequest(IdempotencyKey record, String fingerprint) {
+        return record.getRequestFingerprint() == null || record.getRequestFingerprint().equals(fingerprint);
+    }
+
+    @Transactional
+    @Scheduled(fixedDelayString = "${bank.idempotency.cleanup-interval:PT10M}")
+    public void purgeExpired() {
+        int deleted = idempotencyKeyRepository.deleteCreatedBefore(Instant.now().minus(idempotencyProperties.getTtl()));
+        if (deleted > 0) {
+            log.info("Удалено {} устаревших ключей идемпотентности", deleted);
+        }
+    }
+
+    private void validate(String key) {
+        if (key.isBlank() || key.length() > idempotencyProperties.getMaxKeyLength()) {
+            log.error("Недопустимый ключ идемпотентности");
+            throw new InvalidDataException("Ключ идемпотентности должен содержать от 1 до "
+                    + idempotencyProperties.getMaxKeyLength() + " символов");
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package ru.aston.bankapi.service.journal;
+
+import ru.aston.bankapi.model.Operation;
+import ru.aston.bankapi.model.Transaction;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalTime;
+import java.time.temporal.ChronoUnit;
+import java.util.zip.CRC32C;
+
+/**
+ * Двоичный формат записи журнала:
+ * <pre>
+ * int  длина тела (0 - конец записанной части сегмента)
+ * int  CRC32C тела
+ * тело: long seq, byte тип, далее для DATA:
+ *       str accNumFrom, str accNumTo, long time (наносекунды дня, -1 - нет),
+ *       int scale, short длина + байты unscaled amount, byte operation (-1 - нет),
+ *       long createdAt (микросекунды от эпохи, -1 - нет; в старых записях отсутствует)
+ * str: short длина (-1 - null) + байты UTF-8
+ * </pre>
+ */
+final class JournalCodec {
+
+    static final int HEADER_SIZE = Integer.BYTES * 2;
+
+    private static final Operation[] OPERATIONS = Operation.values();
+
+    private JournalCodec() {
+    }
+
+    /**
+     * Кодирует запись в buffer начиная с текущей позиции.
+     */
+    static void encode(JournalRecord record, ByteBuffer buffer) {
+        int start = buffer.position();
+        buffer.position(start + HEADER_SIZE);
+        buffer.putLong(record.seq());
+        buffer.put((byte) record.type().ordinal());
+
+        if (record.type() == JournalRecord.Type.DATA) {
+            var transaction = record.transaction();
+            putString(buffer, transaction.getAccNumFrom());
+            putString(buffer, transaction.getAccNumTo());
+            buffer.putLong(transaction.getTime() == null ? -1 : transaction.getTime().toNanoOfDay());
+            var amount = transaction.getAmount();
+            buffer.putInt(amount.scale());
+            var unscaled = amount.unscaledValue().toByteArray();
+            buffer.putShort((short) unscaled.length);
+            buffer.put(unscaled);
+            buffer.put(transaction.getOperation() == null ? -1 : (byte) transaction.getOperation().ordinal());
+            buffer.putLong(transaction.getCreatedAt() == null ? -1
+                    : ChronoUnit.MICROS.between(Instant.EPOCH, transaction.getCreatedAt()));
+        }
+
+        int end = buffer.position();
+        int length = end - start - HEADER_SIZE;
+        buffer.putInt(start, length);
+        buffer.putInt(start + Integer.BYTES, checksum(buffer, start + HEADER_SIZE, length));
+    }
+
+    /**
+     * Читает запись с текущей позиции. Возвращает null, если записанная часть закончилась
+     * или запись повреждена (незавершенная запись при сбое).
+     */
+    static JournalRecord decode(ByteBuffer buffer) {
+        if (buffer.remaining() < HEADER_SIZE) {
+            return null;
+        }
+        int start = buffer.position();
+        int length = buffer.getInt(start);
+        int crc = buffer.getInt(start + Integer.BYTES);
+        if (length <= 0 || length > buffer.remaining() - HEADER_SIZE
+                || checksum(buffer, start + HEADER_SIZE, length) != crc) {
+            return null;
+        }
+
+        buffer.position(start + HEADER_SIZE);
+        long seq = buffer.getLong();
+        var type = JournalRecord.Type.values()[buffer.get()];
+        if (type == JournalRecord.Type.ABORT) {
+            return JournalRecord.abort(seq);
+        }
+
+        var accNumFrom = getString(buffer);
+        var accNumTo = getString(buffer);
+        long nanoOfDay = buffer.getLong();
+        int scale = buffer.getInt();
+        var unscaled = new byte[buffer.getShort()];
+        buffer.get(unscaled);
+        byte operation = buffer.get();
+        long createdAt = buffer.position() < start + HEADER_SIZE + length ? buffer.getLong() : -1;
+
+        var transaction = new Transaction(accNumFrom, accNumTo,
+                nanoOfDay < 0 ? null : LocalTime.ofNanoOfDay(nanoOfDay),
+                new BigDecimal(new BigInteger(unscaled), scale),
+                operation < 0 ? null : OPERATIONS[operation]);
+        transaction.setCreatedAt(createdAt < 0 ? null : Instant.EPOCH.plus(createdAt, ChronoUnit.MICROS));
+        transaction.setJournalSeq(seq);
+        return JournalRecord.data(seq, transaction);
+    }
+
+    private static void putString(ByteBuffer buffer, String value) {
+        if (value == null) {
+            buffer.putShort((short) -1);
+            return;
+        }
+        var bytes = value.getBytes(StandardCharsets.UTF_8);
+        buffer.putShort((short) bytes.length);
+        buffer.put(bytes);
+    }
+
+    private static String getString(ByteBuffer buffer) {
+        short length = buffer.getShort();
+        if (length < 0) {
+            return null;
+        }
+        var bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static int checksum(ByteBuffer buffer, int offset, int length) {
+        var crc = new CRC32C();
+        crc.update(buffer.slice(offset, length));
+        return (int) crc.getValue();
+    }
+}
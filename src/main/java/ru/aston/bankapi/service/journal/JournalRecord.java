@@ -0,0 +1,23 @@
+package ru.aston.bankapi.service.journal;
+
+import ru.aston.bankapi.model.Transaction;
+
+/**
+ * Запись журнала: операция (DATA) либо отметка об откате транзакции БД, в которой
+ * операция была записана (ABORT, transaction == null).
+ */
+record JournalRecord(long seq, Type type, Transaction transaction) {
+
+    enum Type {
+        DATA,
+        ABORT
+    }
+
+    static JournalRecord data(long seq, Transaction transaction) {
+        return new JournalRecord(seq, Type.DATA, transaction);
+    }
+
+    static JournalRecord abort(long seq) {
+        return new JournalRecord(seq, Type.ABORT, null);
+    }
+}
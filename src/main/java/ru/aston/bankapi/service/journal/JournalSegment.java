@@ -0,0 +1,104 @@
+package ru.aston.bankapi.service.journal;
+
+import lombok.Getter;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Файл журнала фиксированного размера, отображаемый в память. Имя файла содержит
+ * номер первой записи, поэтому сегменты упорядочиваются по имени.
+ */
+final class JournalSegment implements AutoCloseable {
+
+    private static final String PREFIX = "journal-";
+    private static final String SUFFIX = ".log";
+
+    @Getter
+    private final Path path;
+    @Getter
+    private final long firstSeq;
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    @Getter
+    private long lastSeq;
+
+    private JournalSegment(Path path, long firstSeq, long size) throws IOException {
+        this.path = path;
+        this.firstSeq = firstSeq;
+        this.lastSeq = firstSeq - 1;
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, Math.max(size, channel.size()));
+    }
+
+    static JournalSegment create(Path directory, long firstSeq, long size) throws IOException {
+        return new JournalSegment(directory.resolve(String.format("%s%020d%s", PREFIX, firstSeq, SUFFIX)), firstSeq, size);
+    }
+
+    static JournalSegment open(Path path) throws IOException {
+        var name = path.getFileName().toString();
+        long firstSeq = Long.parseLong(name.substring(PREFIX.length(), name.length() - SUFFIX.length()));
+        return new JournalSegment(path, firstSeq, 0);
+    }
+
+    static List<Path> list(Path directory) throws IOException {
+        try (var files = Files.list(directory)) {
+            return files.filter(file -> {
+                        var name = file.getFileName().toString();
+                        return name.startsWith(PREFIX) && name.endsWith(SUFFIX);
+                    })
+                    .sorted()
+                    .toList();
+        }
+    }
+
+    /**
+     * Читает записи от начала сегмента до первой пустой или поврежденной и оставляет
+     * позицию записи сразу за последней целой записью.
+     */
+    List<JournalRecord> readAll() {
+        List<JournalRecord> records = new ArrayList<>();
+        buffer.position(0);
+        JournalRecord record;
+        while ((record = JournalCodec.decode(buffer)) != null) {
+            records.add(record);
+            lastSeq = Math.max(lastSeq, record.seq());
+        }
+        return records;
+    }
+
+    boolean hasRoom(int bytes) {
+        // Оставляем место под нулевой заголовок, отмечающий конец записанной части.
+        return buffer.remaining() >= bytes + JournalCodec.HEADER_SIZE;
+    }
+
+    int position() {
+        return buffer.position();
+    }
+
+    void append(ByteBuffer record, long seq) {
+        buffer.put(record);
+        lastSeq = seq;
+    }
+
+    void force(int from) {
+        buffer.force(from, buffer.position() - from);
+    }
+
+    void delete() throws IOException {
+        close();
+        Files.deleteIfExists(path);
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
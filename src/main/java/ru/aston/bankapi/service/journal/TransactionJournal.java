@@ -0,0 +1,347 @@
+package ru.aston.bankapi.service.journal;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.aston.bankapi.config.JournalProperties;
+import ru.aston.bankapi.model.Transaction;
+import ru.aston.bankapi.repository.TransactionOutboxRepository;
+import ru.aston.bankapi.repository.TransactionRepository;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Журнал предварительной записи истории операций.
+ * <p>
+ * Запись операции выполняется перед фиксацией транзакции БД, в которой изменен баланс:
+ * записи от параллельных запросов собираются в группу и сбрасываются на диск одним fsync.
+ * При откате транзакции в журнал добавляется отметка ABORT. Фоновый загрузчик переносит
+ * зафиксированные записи в таблицу transactions пакетами. При запуске журнал
+ * перечитывается и все записи, которых нет в таблице, загружаются повторно.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "bank.journal.enabled", havingValue = "true")
+public class TransactionJournal {
+
+    private static final int MAX_RECORD_SIZE = 64 * 1024;
+
+    private final TransactionRepository transactionRepository;
+    private final TransactionOutboxRepository transactionOutboxRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final JournalProperties journalProperties;
+
+    private final BlockingQueue<PendingWrite> pendingWrites = new LinkedBlockingQueue<>();
+    private final BlockingQueue<Transaction> committed = new LinkedBlockingQueue<>();
+    private final ConcurrentSkipListSet<Long> outstanding = new ConcurrentSkipListSet<>();
+    private final List<JournalSegment> segments = new ArrayList<>();
+    private final ByteBuffer scratch = ByteBuffer.allocate(MAX_RECORD_SIZE);
+
+    private final Thread writer = new Thread(this::writeLoop, "journal-writer");
+    private final Thread loader = new Thread(this::loadLoop, "journal-loader");
+    private volatile boolean running = true;
+    private long nextSeq = 1;
+
+    public TransactionJournal(TransactionRepository transactionRepository,
+                              TransactionOutboxRepository transactionOutboxRepository,
+                              PlatformTransactionManager transactionManager,
+                              JournalProperties journalProperties) {
+        this.transactionRepository = transactionRepository;
+        this.transactionOutboxRepository = transactionOutboxRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.journalProperties = journalProperties;
+    }
+
+    @PostConstruct
+    public void start() throws IOException {
+        Files.createDirectories(journalProperties.getDirectory());
+        recover();
+        segments.add(JournalSegment.create(journalProperties.getDirectory(), nextSeq, segmentSize()));
+        writer.start();
+        loader.start();
+    }
+
+    @PreDestroy
+    public void stop() throws IOException, InterruptedException {
+        running = false;
+        writer.join();
+        loader.join();
+        synchronized (segments) {
+            for (var segment : segments) {
+                segment.close();
+            }
+        }
+    }
+
+    /**
+     * Добавляет операцию в журнал. В активной транзакции запись откладывается до момента
+     * перед фиксацией, и фиксация продолжается только после сброса записи на диск.
+     */
+    public void append(Transaction transaction) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            write(JournalRecord.Type.DATA, transaction, 0).join();
+            committed.add(transaction);
+            return;
+        }
+
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void beforeCommit(boolean readOnly) {
+                write(JournalRecord.Type.DATA, transaction, 0).join();
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                var seq = transaction.getJournalSeq();
+                if (seq == null) {
+                    return;
+                }
+                if (status == STATUS_COMMITTED) {
+                    committed.add(transaction);
+                } else {
+                    write(JournalRecord.Type.ABORT, null, seq);
+                    outstanding.remove(seq);
+                }
+            }
+        });
+    }
+
+    /**
+     * Ожидает загрузки в БД всех операций, записанных в журнал до вызова. Операции,
+     * записанные позже, не ждутся, поэтому при непрерывной нагрузке ожидание конечно.
+     */
+    public boolean awaitLoaded(Duration timeout) throws InterruptedException {
+        long deadline = System.nanoTime() + timeout.toNanos();
+        long lastWritten;
+        synchronized (segments) {
+            lastWritten = nextSeq - 1;
+        }
+        while (!outstanding.headSet(lastWritten, true).isEmpty()) {
+            if (System.nanoTime() > deadline) {
+                return false;
+            }
+            Thread.sleep(10);
+        }
+        return true;
+    }
+
+    private CompletableFuture<Long> write(JournalRecord.Type type, Transaction transaction, long abortedSeq) {
+        if (!running) {
+            throw new IllegalStateException("Журнал операций остановлен");
+        }
+        var pending = new PendingWrite(type, transaction, abortedSeq, new CompletableFuture<>());
+        pendingWrites.add(pending);
+        return pending.result();
+    }
+
+    private void writeLoop() {
+        int batchSize = journalProperties.getGroupCommitBatchSize();
+        long window = journalProperties.getGroupCommitWindow().toNanos();
+        List<PendingWrite> group = new ArrayList<>(batchSize);
+
+        while (running || !pendingWrites.isEmpty()) {
+            try {
+                var first = pendingWrites.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                group.add(first);
+                long deadline = System.nanoTime() + window;
+                while (group.size() < batchSize) {
+                    pendingWrites.drainTo(group, batchSize - group.size());
+                    long remaining = deadline - System.nanoTime();
+                    if (group.size() >= batchSize || remaining <= 0) {
+                        break;
+                    }
+                    var next = pendingWrites.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    group.add(next);
+                }
+                commitGroup(group);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException | IOException e) {
+                log.error("Ошибка записи группы из {} записей в журнал", group.size(), e);
+                group.forEach(pending -> pending.result().completeExceptionally(e));
+            } finally {
+                group.clear();
+            }
+        }
+    }
+
+    private void commitGroup(List<PendingWrite> group) throws IOException {
+        List<Long> seqs = new ArrayList<>(group.size());
+        synchronized (segments) {
+            var segment = segments.get(segments.size() - 1);
+            int flushFrom = segment.position();
+
+            for (var pending : group) {
+                long seq = pending.type() == JournalRecord.Type.DATA ? nextSeq++ : pending.abortedSeq();
+                var record = pending.type() == JournalRecord.Type.DATA
+                        ? JournalRecord.data(seq, pending.transaction())
+                        : JournalRecord.abort(seq);
+
+                scratch.clear();
+                JournalCodec.encode(record, scratch);
+                scratch.flip();
+
+                if (!segment.hasRoom(scratch.remaining())) {
+                    segment.force(flushFrom);
+                    segment = JournalSegment.create(journalProperties.getDirectory(), seq, segmentSize());
+                    segments.add(segment);
+                    flushFrom = 0;
+                }
+                segment.append(scratch, Math.max(seq, segment.getLastSeq()));
+                if (pending.type() == JournalRecord.Type.DATA) {
+                    pending.transaction().setJournalSeq(seq);
+                    outstanding.add(seq);
+                }
+                seqs.add(seq);
+            }
+            segment.force(flushFrom);
+        }
+
+        for (int i = 0; i < group.size(); i++) {
+            group.get(i).result().complete(seqs.get(i));
+        }
+    }
+
+    private void loadLoop() {
+        List<Transaction> batch = new ArrayList<>(journalProperties.getLoadBatchSize());
+        while (running || !committed.isEmpty() || !batch.isEmpty()) {
+            try {
+                if (batch.isEmpty()) {
+                    var first = committed.poll(journalProperties.getLoadInterval().toMillis(), TimeUnit.MILLISECONDS);
+                    if (first == null) {
+                        continue;
+                    }
+                    batch.add(first);
+                    committed.drainTo(batch, journalProperties.getLoadBatchSize() - 1);
+                }
+                load(batch);
+                batch.forEach(transaction -> outstanding.remove(transaction.getJournalSeq()));
+                batch.clear();
+                deleteLoadedSegments();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException | IOException e) {
+                if (!running) {
+                    log.error("Загрузка журнала прервана при остановке, записи будут загружены при следующем запуске", e);
+                    return;
+                }
+                log.error("Ошибка загрузки {} записей журнала в БД, повтор", batch.size(), e);
+                pause();
+            }
+        }
+    }
+
+    private void load(List<Transaction> batch) {
+        transactionTemplate.executeWithoutResult(status -> {
+            transactionRepository.saveAll(batch);
+            transactionOutboxRepository.append(batch);
+        });
+    }
+
+    /**
+     * Удаляет сегменты, все записи которых загружены в БД или отменены.
+     */
+    private void deleteLoadedSegments() throws IOException {
+        synchronized (segments) {
+            while (segments.size() > 1) {
+                var oldest = segments.get(0);
+                var lowestOutstanding = outstanding.isEmpty() ? Long.MAX_VALUE : outstanding.first();
+                if (lowestOutstanding <= oldest.getLastSeq()) {
+                    return;
+                }
+                oldest.delete();
+                segments.remove(0);
+            }
+        }
+    }
+
+    /**
+     * Номера записей продолжаются с максимального из загруженных в БД и записанных в журнал:
+     * загруженные сегменты удалены, и по одним файлам журнала номера начались бы заново.
+     */
+    private void recover() throws IOException {
+        nextSeq = Math.max(nextSeq, transactionRepository.findMaxJournalSeq().orElse(0L) + 1);
+        var paths = JournalSegment.list(journalProperties.getDirectory());
+        if (paths.isEmpty()) {
+            return;
+        }
+
+        List<Transaction> candidates = new ArrayList<>();
+        Set<Long> aborted = new HashSet<>();
+        for (var path : paths) {
+            try (var segment = JournalSegment.open(path)) {
+                nextSeq = Math.max(nextSeq, segment.getFirstSeq());
+                for (var record : segment.readAll()) {
+                    if (record.type() == JournalRecord.Type.ABORT) {
+                        aborted.add(record.seq());
+                    } else {
+                        candidates.add(record.transaction());
+                    }
+                    nextSeq = Math.max(nextSeq, record.seq() + 1);
+                }
+            }
+        }
+        candidates.removeIf(transaction -> aborted.contains(transaction.getJournalSeq()));
+
+        if (!candidates.isEmpty()) {
+            candidates.sort(Comparator.comparing(Transaction::getJournalSeq));
+            long from = candidates.get(0).getJournalSeq();
+            long to = candidates.get(candidates.size() - 1).getJournalSeq();
+            var loaded = transactionRepository.findJournalSeqsBetween(from, to);
+            candidates.removeIf(transaction -> loaded.contains(transaction.getJournalSeq()));
+
+            int batchSize = journalProperties.getLoadBatchSize();
+            for (int i = 0; i < candidates.size(); i += batchSize) {
+                load(candidates.subList(i, Math.min(i + batchSize, candidates.size())));
+            }
+            log.info("Восстановлено из журнала {} операций", candidates.size());
+        }
+
+        for (var path : paths) {
+            Files.delete(path);
+        }
+    }
+
+    private long segmentSize() {
+        return journalProperties.getSegmentSize().toBytes();
+    }
+
+    private void pause() {
+        try {
+            Thread.sleep(journalProperties.getLoadInterval().toMillis() * 5);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private record PendingWrite(JournalRecord.Type type, Transaction transaction, long abortedSeq,
+                                CompletableFuture<Long> result) {
+    }
+}
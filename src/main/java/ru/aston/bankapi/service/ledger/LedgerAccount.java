@@ -0,0 +1,37 @@
+package ru.aston.bankapi.service.ledger;
+
+import lombok.Getter;
+import ru.aston.bankapi.model.Account;
+import ru.aston.bankapi.model.Money;
+
+/**
+ * Состояние счета внутри шарда. Изменяется только потоком своего шарда.
+ * Баланс хранится в копейках, изменение баланса не создает BigDecimal.
+ */
+@Getter
+class LedgerAccount {
+
+    private final String accNum;
+    private final String name;
+    private String pinCode;
+    private Money amount;
+
+    LedgerAccount(Account account) {
+        this.accNum = account.getAccNum();
+        this.name = account.getName();
+        this.pinCode = account.getPinCode();
+        this.amount = Money.of(account.getAmount());
+    }
+
+    void changePin(String pinCode) {
+        this.pinCode = pinCode;
+    }
+
+    void add(Money delta) {
+        amount = amount.plus(delta);
+    }
+
+    Account snapshot() {
+        return new Account(accNum, name, pinCode, amount.toBigDecimal());
+    }
+}
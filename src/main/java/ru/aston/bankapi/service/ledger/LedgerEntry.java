@@ -0,0 +1,28 @@
+package ru.aston.bankapi.service.ledger;
+
+import ru.aston.bankapi.model.IdempotencyKey;
+import ru.aston.bankapi.model.Transaction;
+
+import java.math.BigDecimal;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Результат одной операции для асинхронной записи в БД: изменения балансов и запись истории.
+ * Изменения хранятся как приращения, поэтому записи разных шардов можно применять в любом порядке.
+ * Ключ идемпотентности, если он передан, записывается в той же транзакции, что и история.
+ */
+record LedgerEntry(Map<String, BigDecimal> deltas, Transaction transaction, IdempotencyKey idempotencyKey) {
+
+    static LedgerEntry of(Transaction transaction, String accNum, BigDecimal delta, IdempotencyKey idempotencyKey) {
+        return new LedgerEntry(Map.of(accNum, delta), transaction, idempotencyKey);
+    }
+
+    static LedgerEntry of(Transaction transaction, String fromAccNum, String toAccNum, BigDecimal amount,
+                          IdempotencyKey idempotencyKey) {
+        Map<String, BigDecimal> deltas = new HashMap<>();
+        deltas.merge(fromAccNum, amount.negate(), BigDecimal::add);
+        deltas.merge(toAccNum, amount, BigDecimal::add);
+        return new LedgerEntry(deltas, transaction, idempotencyKey);
+    }
+}
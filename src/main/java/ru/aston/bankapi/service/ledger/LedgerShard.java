@@ -0,0 +1,78 @@
+package ru.aston.bankapi.service.ledger;
+
+import ru.aston.bankapi.model.Account;
+import ru.aston.bankapi.repository.AccountRepository;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Шард движка балансов: все счета шарда читаются и изменяются одним потоком,
+ * поэтому операции внутри шарда выполняются без блокировок.
+ */
+class LedgerShard {
+
+    private final ExecutorService executor;
+    private final Map<String, LedgerAccount> accounts = new HashMap<>();
+    private final AccountRepository accountRepository;
+    private final Map<String, Account> snapshots;
+
+    LedgerShard(int index, AccountRepository accountRepository, Map<String, Account> snapshots) {
+        this.accountRepository = accountRepository;
+        this.snapshots = snapshots;
+        this.executor = Executors.newSingleThreadExecutor(runnable -> {
+            var thread = new Thread(runnable, "ledger-shard-" + index);
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    <T> T call(Function<LedgerShard, T> command) {
+        try {
+            return CompletableFuture.supplyAsync(() -> command.apply(this), executor).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    void run(Consumer<LedgerShard> command) {
+        call(shard -> {
+            command.accept(shard);
+            return null;
+        });
+    }
+
+    Optional<LedgerAccount> find(String accNum) {
+        var account = accounts.get(accNum);
+        if (account == null) {
+            var stored = accountRepository.findById(accNum);
+            if (stored.isEmpty()) {
+                return Optional.empty();
+            }
+            account = new LedgerAccount(stored.get());
+            accounts.put(accNum, account);
+            publish(account);
+        }
+        return Optional.of(account);
+    }
+
+    void publish(LedgerAccount account) {
+        snapshots.put(account.getAccNum(), account.snapshot());
+    }
+
+    void shutdown() throws InterruptedException {
+        executor.shutdown();
+        executor.awaitTermination(30, TimeUnit.SECONDS);
+    }
+}
@@ -0,0 +1,269 @@
+package ru.aston.bankapi.service.ledger;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.aston.bankapi.config.LedgerProperties;
+import ru.aston.bankapi.model.IdempotencyKey;
+import ru.aston.bankapi.model.Transaction;
+import ru.aston.bankapi.repository.AccountRepository;
+import ru.aston.bankapi.repository.IdempotencyKeyRepository;
+import ru.aston.bankapi.repository.TransactionOutboxRepository;
+import ru.aston.bankapi.repository.TransactionRepository;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Асинхронная запись результатов движка балансов в БД пакетами: одна транзакция
+ * на пакет, приращения балансов одного счета в пакете суммируются.
+ * <p>
+ * Пакет, который не удалось записать за maxFlushAttempts попыток, откладывается в файл
+ * в deadLetterDirectory. Балансы в памяти после этого расходятся с БД, поэтому движок
+ * помечается неисправным: новые изменения балансов отклоняются, а health сообщает DOWN.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "bank.ledger.enabled", havingValue = "true")
+public class LedgerWriter implements HealthIndicator {
+
+    private final AccountRepository accountRepository;
+    private final TransactionRepository transactionRepository;
+    private final TransactionOutboxRepository transactionOutboxRepository;
+    private final IdempotencyKeyRepository idempotencyKeyRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final LedgerProperties ledgerProperties;
+    private final ObjectMapper objectMapper;
+    private final BlockingQueue<LedgerEntry> queue;
+    private final Thread thread;
+
+    private volatile boolean running = true;
+    private volatile Path deadLetter;
+    private long submitted;
+    private long persisted;
+    private long deadLettered;
+
+    public LedgerWriter(AccountRepository accountRepository,
+                        TransactionRepository transactionRepository,
+                        TransactionOutboxRepository transactionOutboxRepository,
+                        IdempotencyKeyRepository idempotencyKeyRepository,
+                        PlatformTransactionManager transactionManager,
+                        LedgerProperties ledgerProperties,
+                        ObjectMapper objectMapper) {
+        this.accountRepository = accountRepository;
+        this.transactionRepository = transactionRepository;
+        this.transactionOutboxRepository = transactionOutboxRepository;
+        this.idempotencyKeyRepository = idempotencyKeyRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.ledgerProperties = ledgerProperties;
+        this.objectMapper = objectMapper;
+        this.queue = new LinkedBlockingQueue<>(ledgerProperties.getWriteQueueCapacity());
+        this.thread = new Thread(this::run, "ledger-writer");
+    }
+
+    @PostConstruct
+    void start() {
+        thread.start();
+    }
+
+    @PreDestroy
+    void stop() throws InterruptedException {
+        running = false;
+        thread.join();
+    }
+
+    void submit(LedgerEntry entry) {
+        try {
+            queue.put(entry);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Запись операции в очередь прервана", e);
+        }
+        synchronized (this) {
+            submitted++;
+        }
+    }
+
+    /**
+     * Ожидает записи в БД всех операций, поставленных в очередь до вызова.
+     * Возвращает false по таймауту или если какой-либо пакет был отложен.
+     */
+    public synchronized boolean flush(Duration timeout) throws InterruptedException {
+        long target = submitted;
+        long deadline = System.nanoTime() + timeout.toNanos();
+        while (persisted + deadLettered < target) {
+            long remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+            if (remaining <= 0) {
+                return false;
+            }
+            wait(remaining);
+        }
+        return deadLettered == 0;
+    }
+
+    /**
+     * Отклоняет изменение балансов, если записи движка уже разошлись с БД.
+     */
+    void checkHealthy() {
+        if (deadLetter != null) {
+            throw new IllegalStateException("Движок балансов остановлен: пакет операций не записан в БД");
+        }
+    }
+
+    @Override
+    public Health health() {
+        var file = deadLetter;
+        return file == null ? Health.up().build()
+                : Health.down().withDetail("deadLetter", file.toString()).build();
+    }
+
+    private void run() {
+        List<LedgerEntry> batch = new ArrayList<>(ledgerProperties.getFlushBatchSize());
+        int attempts = 0;
+        while (running || !queue.isEmpty() || !batch.isEmpty()) {
+            try {
+                collect(batch);
+                if (batch.isEmpty()) {
+                    continue;
+                }
+                persist(batch);
+                synchronized (this) {
+                    persisted += batch.size();
+                    notifyAll();
+                }
+                batch.clear();
+                attempts = 0;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException e) {
+                if (!running) {
+                    log.error("Ошибка записи пакета при остановке, {} операций не записано в БД",
+                            batch.size() + queue.size(), e);
+                    queue.drainTo(batch);
+                    deadLetter(batch);
+                    return;
+                }
+                if (++attempts >= ledgerProperties.getMaxFlushAttempts()) {
+                    log.error("Пакет из {} операций не записан за {} попыток", batch.size(), attempts, e);
+                    deadLetter(batch);
+                    attempts = 0;
+                    continue;
+                }
+                log.error("Ошибка записи пакета из {} операций, попытка {}", batch.size(), attempts, e);
+                pause();
+            }
+        }
+    }
+
+    /**
+     * Сохраняет незаписанный пакет в файл по строке JSON на операцию, помечает движок
+     * неисправным и убирает пакет из очереди записи.
+     */
+    private void deadLetter(List<LedgerEntry> batch) {
+        var directory = ledgerProperties.getDeadLetterDirectory();
+        var file = directory.resolve("batch-" + System.currentTimeMillis() + "-" + batch.size() + ".jsonl");
+        try {
+            Files.createDirectories(directory);
+            List<String> lines = new ArrayList<>(batch.size());
+            for (var entry : batch) {
+                lines.add(objectMapper.writeValueAsString(new DeadLetterEntry(entry.deltas(), entry.transaction(),
+                        entry.idempotencyKey() == null ? null : entry.idempotencyKey().getIdempotencyKey())));
+            }
+            Files.write(file, lines, StandardOpenOption.CREATE_NEW);
+            log.error("Пакет из {} операций отложен в {}", batch.size(), file);
+        } catch (IOException e) {
+            log.error("Не удалось отложить пакет в {}, операции не записаны: {}", file, batch, e);
+        }
+        deadLetter = file;
+        synchronized (this) {
+            deadLettered += batch.size();
+            notifyAll();
+        }
+        batch.clear();
+    }
+
+    private void collect(List<LedgerEntry> batch) throws InterruptedException {
+        if (!batch.isEmpty()) {
+            return;
+        }
+        int batchSize = ledgerProperties.getFlushBatchSize();
+        long interval = ledgerProperties.getFlushInterval().toNanos();
+        var first = queue.poll(interval, TimeUnit.NANOSECONDS);
+        if (first == null) {
+            return;
+        }
+        batch.add(first);
+        long deadline = System.nanoTime() + interval;
+        while (batch.size() < batchSize) {
+            queue.drainTo(batch, batchSize - batch.size());
+            long remaining = deadline - System.nanoTime();
+            if (batch.size() >= batchSize || remaining <= 0) {
+                break;
+            }
+            var next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+            if (next == null) {
+                break;
+            }
+            batch.add(next);
+        }
+    }
+
+    private void persist(List<LedgerEntry> batch) {
+        // Счета обновляются в порядке номеров, как и при пессимистичной блокировке.
+        Map<String, BigDecimal> deltas = new TreeMap<>();
+        List<Transaction> transactions = new ArrayList<>(batch.size());
+        for (var entry : batch) {
+            entry.deltas().forEach((accNum, delta) -> deltas.merge(accNum, delta, BigDecimal::add));
+            transactions.add(entry.transaction());
+        }
+
+        transactionTemplate.executeWithoutResult(status -> {
+            deltas.forEach((accNum, delta) -> {
+                if (delta.signum() != 0) {
+                    accountRepository.addToAmount(accNum, delta);
+                }
+            });
+            transactionRepository.saveAll(transactions);
+            transactionOutboxRepository.append(transactions);
+
+            List<IdempotencyKey> keys = new ArrayList<>();
+            for (var entry : batch) {
+                if (entry.idempotencyKey() != null) {
+                    entry.idempotencyKey().setTransactionId(entry.transaction().getId());
+                    keys.add(entry.idempotencyKey());
+                }
+            }
+            idempotencyKeyRepository.saveAll(keys);
+        });
+    }
+
+    private void pause() {
+        try {
+            Thread.sleep(ledgerProperties.getFlushInterval().toMillis() * 10);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private record DeadLetterEntry(Map<String, BigDecimal> deltas, Transaction transaction, String idempotencyKey) {
+    }
+}
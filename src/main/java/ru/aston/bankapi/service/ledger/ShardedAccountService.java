@@ -0,0 +1,353 @@
+package ru.aston.bankapi.service.ledger;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Primary;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Service;
+import ru.aston.bankapi.config.LedgerProperties;
+import ru.aston.bankapi.dto.AccountPageDto;
+import ru.aston.bankapi.dto.AccountSummaryDto;
+import ru.aston.bankapi.dto.TransferDto;
+import ru.aston.bankapi.dto.TransferResultDto;
+import ru.aston.bankapi.exceptionHandler.DuplicateRequestException;
+import ru.aston.bankapi.exceptionHandler.InvalidDataException;
+import ru.aston.bankapi.exceptionHandler.NotEnoughFundsException;
+import ru.aston.bankapi.exceptionHandler.NotFoundException;
+import ru.aston.bankapi.model.Account;
+import ru.aston.bankapi.model.IdempotencyKey;
+import ru.aston.bankapi.model.Money;
+import ru.aston.bankapi.model.Operation;
+import ru.aston.bankapi.model.Transaction;
+import ru.aston.bankapi.repository.AccountRepository;
+import ru.aston.bankapi.service.AccountService;
+import ru.aston.bankapi.service.AccountServiceImpl;
+import ru.aston.bankapi.service.idempotency.IdempotencyStore;
+import ru.aston.bankapi.service.pin.PinVerifier;
+
+import java.math.BigDecimal;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Движок балансов в памяти: счета распределены по шардам по хешу номера счета,
+ * каждый шард изменяет свои счета в одном потоке. Переводы между шардами выполняются
+ * в две фазы: списание в шарде отправителя, затем зачисление в шарде получателя.
+ * Результаты записываются в БД асинхронно через {@link LedgerWriter}; если он отложил пакет,
+ * балансы в памяти уже не совпадают с БД, и изменения отклоняются. Пин-код проверяется
+ * до входа в шард, чтобы хеширование при промахе кэша проверок не задерживало другие счета шарда.
+ */
+@Slf4j
+@Primary
+@Service
+@ConditionalOnProperty(name = "bank.ledger.enabled", havingValue = "true")
+public class ShardedAccountService implements AccountService {
+
+    private final AccountServiceImpl accountServiceImpl;
+    private final LedgerWriter ledgerWriter;
+    private final IdempotencyStore idempotencyStore;
+    private final PinVerifier pinVerifier;
+    private final LedgerShard[] shards;
+    private final Map<String, Account> snapshots = new ConcurrentHashMap<>();
+    private final Set<String> inFlightKeys = ConcurrentHashMap.newKeySet();
+
+    public ShardedAccountService(AccountServiceImpl accountServiceImpl,
+                                 AccountRepository accountRepository,
+                                 LedgerWriter ledgerWriter,
+                                 IdempotencyStore idempotencyStore,
+                                 PinVerifier pinVerifier,
+                                 LedgerProperties ledgerProperties) {
+        this.accountServiceImpl = accountServiceImpl;
+        this.ledgerWriter = ledgerWriter;
+        this.idempotencyStore = idempotencyStore;
+        this.pinVerifier = pinVerifier;
+        this.shards = new LedgerShard[ledgerProperties.getShards()];
+        for (int i = 0; i < shards.length; i++) {
+            shards[i] = new LedgerShard(i, accountRepository, snapshots);
+        }
+    }
+
+    @PreDestroy
+    void shutdown() throws InterruptedException {
+        for (var shard : shards) {
+            shard.shutdown();
+        }
+    }
+
+    @Override
+    public Optional<Account> createAccount(String name, String pinCode) {
+        return accountServiceImpl.createAccount(name, pinCode);
+    }
+
+    @Override
+    public List<Account> getAllAccounts() {
+        return accountServiceImpl.getAllAccounts().stream()
+                .map(account -> snapshots.getOrDefault(account.getAccNum(), account))
+                .toList();
+    }
+
+    @Override
+    public AccountPageDto getAccountsPage(Pageable pageable, boolean slice) {
+        var page = accountServiceImpl.getAccountsPage(pageable, slice);
+        page.setAccounts(page.getAccounts().stream()
+                .map(account -> {
+                    var snapshot = snapshots.get(account.getAccNum());
+                    return snapshot == null ? account
+                            : new AccountSummaryDto(account.getAccNum(), account.getName(), snapshot.getAmount());
+                })
+                .toList());
+        return page;
+    }
+
+    @Override
+    public Optional<Account> getAccountByAccNum(String accNum) {
+        var snapshot = snapshots.get(accNum);
+        if (snapshot != null) {
+            return Optional.of(snapshot);
+        }
+        return shardFor(accNum).call(shard -> shard.find(accNum).map(LedgerAccount::snapshot));
+    }
+
+    @Override
+    public void deposit(String accNum, BigDecimal amount) {
+        deposit(accNum, amount, (IdempotencyKey) null);
+    }
+
+    @Override
+    public void deposit(String accNum, BigDecimal amount, String idempotencyKey) {
+        var key = reserve(idempotencyKey, Operation.DEPOSIT, accNum, accNum, amount);
+        try {
+            deposit(accNum, amount, key);
+        } finally {
+            release(key);
+        }
+    }
+
+    private void deposit(String accNum, BigDecimal amount, IdempotencyKey key) {
+        ledgerWriter.checkHealthy();
+        var money = Money.of(amount);
+        shardFor(accNum).run(shard -> {
+            var account = shard.find(accNum).orElseThrow(() -> {
+                log.error("Аккаунт с номером {} не найден", accNum);
+                return new NotFoundException("Аккаунт с данным номером не найден");
+            });
+
+            account.add(money);
+            shard.publish(account);
+
+            var transaction = new Transaction(accNum, accNum, LocalTime.now(), amount, Operation.DEPOSIT);
+            ledgerWriter.submit(LedgerEntry.of(transaction, accNum, amount, key));
+            remember(key);
+        });
+    }
+
+    @Override
+    public void transfer(String fromAccNum, String toAccNum, BigDecimal amount, String pinCode) {
+        transfer(fromAccNum, toAccNum, amount, pinCode, (IdempotencyKey) null);
+    }
+
+    @Override
+    public void transfer(String fromAccNum, String toAccNum, BigDecimal amount, String pinCode,
+                         String idempotencyKey) {
+        var key = reserve(idempotencyKey, Operation.TRANSFER, fromAccNum, toAccNum, amount);
+        try {
+            transfer(fromAccNum, toAccNum, amount, pinCode, key);
+        } finally {
+            release(key);
+        }
+    }
+
+    private void transfer(String fromAccNum, String toAccNum, BigDecimal amount, String pinCode,
+                          IdempotencyKey key) {
+        ledgerWriter.checkHealthy();
+        var money = Money.of(amount);
+        var verifiedPin = verifyPin(fromAccNum, pinCode);
+        var fromShard = shardFor(fromAccNum);
+        var toShard = shardFor(toAccNum);
+
+        if (fromShard == toShard) {
+            fromShard.run(shard -> {
+                boolean toExists = shard.find(toAccNum).isPresent();
+                debit(shard, fromAccNum, toExists, money, verifiedPin);
+                credit(shard, toAccNum, money);
+            });
+        } else {
+            boolean toExists = toShard.call(shard -> shard.find(toAccNum).isPresent());
+            fromShard.run(shard -> debit(shard, fromAccNum, toExists, money, verifiedPin));
+            toShard.run(shard -> credit(shard, toAccNum, money));
+        }
+
+        var transaction = new Transaction(fromAccNum, toAccNum, LocalTime.now(), amount, Operation.TRANSFER);
+        ledgerWriter.submit(LedgerEntry.of(transaction, fromAccNum, toAccNum, amount, key));
+        remember(key);
+    }
+
+    @Override
+    public void withdraw(String accNum, BigDecimal amount, String pinCode) {
+        withdraw(accNum, amount, pinCode, (IdempotencyKey) null);
+    }
+
+    @Override
+    public void withdraw(String accNum, BigDecimal amount, String pinCode, String idempotencyKey) {
+        var key = reserve(idempotencyKey, Operation.WITHDRAW, accNum, accNum, amount);
+        try {
+            withdraw(accNum, amount, pinCode, key);
+        } finally {
+            release(key);
+        }
+    }
+
+    private void withdraw(String accNum, BigDecimal amount, String pinCode, IdempotencyKey key) {
+        ledgerWriter.checkHealthy();
+        var money = Money.of(amount);
+        var verifiedPin = verifyPin(accNum, pinCode);
+        shardFor(accNum).run(shard -> {
+            var account = shard.find(accNum).orElseThrow(() -> {
+                log.error("Аккаунта с таким номером - {} не найдено", accNum);
+                return new NotFoundException("Аккаунта с таким номером не существует");
+            });
+            if (account.getAmount().isLessThan(money)) {
+                log.error("Недостаточно средств для данной операции");
+                throw new NotEnoughFundsException();
+            }
+            if (!account.getPinCode().equals(verifiedPin)) {
+                log.error("Пин-код введен неверно!");
+                throw new InvalidDataException("Пин код вееден неверно!");
+            }
+
+            account.add(money.negate());
+            shard.publish(account);
+
+            var transaction = new Transaction(accNum, accNum, LocalTime.now(), amount, Operation.WITHDRAW);
+            ledgerWriter.submit(LedgerEntry.of(transaction, accNum, amount.negate(), key));
+            remember(key);
+        });
+    }
+
+    /**
+     * Пин-код меняется в БД, затем в шарде. Между этими шагами шард еще принимает старый пин-код.
+     */
+    @Override
+    public void changePin(String accNum, String pinCode, String newPinCode) {
+        accountServiceImpl.changePin(accNum, pinCode, newPinCode);
+        accountServiceImpl.getAccountByAccNum(accNum).ifPresent(changed -> shardFor(accNum).run(shard ->
+                shard.find(accNum).ifPresent(account -> {
+                    account.changePin(changed.getPinCode());
+                    shard.publish(account);
+                })));
+    }
+
+    /**
+     * Переводы пакета выполняются по очереди, каждый в своих шардах. Атомарный пакет
+     * потребовал бы блокировки шардов на время всего пакета и не поддерживается.
+     */
+    @Override
+    public List<TransferResultDto> transferBatch(List<TransferDto> transfers, boolean atomic) {
+        AccountServiceImpl.checkTransferBatch(transfers);
+        if (atomic) {
+            log.error("Атомарный пакет переводов не поддерживается движком балансов в памяти");
+            throw new InvalidDataException("Атомарный пакет переводов не поддерживается");
+        }
+
+        List<TransferResultDto> results = new ArrayList<>(transfers.size());
+        for (var transfer : transfers) {
+            TransferResultDto.Status status;
+            try {
+                transfer(transfer.getFromAccNum(), transfer.getToAccNum(), transfer.getAmount(), transfer.getPinCode());
+                status = TransferResultDto.Status.SUCCESS;
+            } catch (NotFoundException e) {
+                status = TransferResultDto.Status.NOT_FOUND;
+            } catch (InvalidDataException e) {
+                status = TransferResultDto.Status.INVALID_PIN;
+            } catch (NotEnoughFundsException e) {
+                status = TransferResultDto.Status.NOT_ENOUGH_FUNDS;
+            }
+            results.add(new TransferResultDto(transfer.getFromAccNum(), transfer.getToAccNum(),
+                    transfer.getAmount(), status));
+        }
+        return results;
+    }
+
+    /**
+     * Балансы в памяти изменяются раньше записи в БД, поэтому повтор с тем же ключом
+     * отсекается по кэшу выполненных ключей и по набору выполняемых сейчас запросов.
+     * В БД ключ попадает вместе с записью истории в пакете {@link LedgerWriter}.
+     */
+    private IdempotencyKey reserve(String idempotencyKey, Operation operation,
+                                   String fromAccNum, String toAccNum, BigDecimal amount) {
+        if (idempotencyKey == null) {
+            return null;
+        }
+        if (idempotencyStore.find(idempotencyKey).isPresent() || !inFlightKeys.add(idempotencyKey)) {
+            log.warn("Повторный запрос с ключом идемпотентности {}", idempotencyKey);
+            throw new DuplicateRequestException("Запрос с этим ключом идемпотентности уже выполнен");
+        }
+        return idempotencyStore.newKey(idempotencyKey, operation,
+                IdempotencyStore.fingerprint(fromAccNum, toAccNum, amount));
+    }
+
+    private void remember(IdempotencyKey key) {
+        if (key != null) {
+            idempotencyStore.remember(key);
+        }
+    }
+
+    private void release(IdempotencyKey key) {
+        if (key != null) {
+            inFlightKeys.remove(key.getIdempotencyKey());
+        }
+    }
+
+    /**
+     * Первая фаза перевода: проверка и списание в шарде отправителя. Счет получателя
+     * уже проверен, а счета не удаляются, поэтому вторая фаза не может завершиться ошибкой.
+     */
+    private void debit(LedgerShard shard, String fromAccNum, boolean toExists, Money amount, String verifiedPin) {
+        var fromAccount = shard.find(fromAccNum);
+
+        if (fromAccount.isEmpty() || !toExists) {
+            log.error("Ошибка! Перевод не выполнен!");
+            throw new NotFoundException("Ошибка! Перевод не выполнен!");
+        }
+        if (!fromAccount.get().getPinCode().equals(verifiedPin)) {
+            log.error("Пин код введен неверно!");
+            throw new InvalidDataException("Пин код введен неверно!");
+        }
+        if (fromAccount.get().getAmount().isLessThan(amount)) {
+            log.error("Недостаточно средств на счете!");
+            throw new NotEnoughFundsException();
+        }
+
+        fromAccount.get().add(amount.negate());
+        shard.publish(fromAccount.get());
+    }
+
+    /**
+     * Проверяет пин-код вне потока шарда. Возвращает хеш, с которым совпал пин-код,
+     * или null; в шарде хеш сравнивается с текущим, чтобы не пропустить смену пин-кода.
+     */
+    private String verifyPin(String accNum, String pinCode) {
+        var snapshot = snapshots.get(accNum);
+        var stored = snapshot != null ? Optional.ofNullable(snapshot.getPinCode())
+                : shardFor(accNum).call(shard -> shard.find(accNum).map(LedgerAccount::getPinCode));
+        return stored.filter(hash -> pinVerifier.matches(accNum, hash, pinCode)).orElse(null);
+    }
+
+    private void credit(LedgerShard shard, String toAccNum, Money amount) {
+        var toAccount = shard.find(toAccNum)
+                .orElseThrow(() -> new IllegalStateException("Счет получателя " + toAccNum + " не найден"));
+
+        toAccount.add(amount);
+        shard.publish(toAccount);
+    }
+
+    private LedgerShard shardFor(String accNum) {
+        return shards[Math.floorMod(accNum.hashCode(), shards.length)];
+    }
+}
@@ -0,0 +1,95 @@
+package ru.aston.bankapi.service.pin;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.aston.bankapi.config.PinProperties;
+import ru.aston.bankapi.model.Account;
+import ru.aston.bankapi.repository.AccountRepository;
+import ru.aston.bankapi.service.cache.AccountCache;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Перевод пин-кодов, хранящихся в открытом виде, в хеши после запуска приложения.
+ * Хеши считаются вне транзакции, а строка обновляется, только если пин-код
+ * не изменился за это время, поэтому миграция не блокирует операции по счетам
+ * и может идти одновременно с ними. Обновление увеличивает версию счета, чтобы
+ * в оптимистичном режиме операция, прочитавшая строку до миграции, не записала
+ * поверх хеша старый пин-код.
+ */
+@Slf4j
+@Component
+public class PinMigration {
+
+    private final AccountRepository accountRepository;
+    private final PinVerifier pinVerifier;
+    private final AccountCache accountCache;
+    private final PinProperties pinProperties;
+    private final TransactionTemplate transactionTemplate;
+
+    public PinMigration(AccountRepository accountRepository,
+                        PinVerifier pinVerifier,
+                        AccountCache accountCache,
+                        PinProperties pinProperties,
+                        PlatformTransactionManager transactionManager) {
+        this.accountRepository = accountRepository;
+        this.pinVerifier = pinVerifier;
+        this.accountCache = accountCache;
+        this.pinProperties = pinProperties;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onReady() {
+        var migrated = migrate();
+        if (migrated > 0) {
+            log.info("Пин-коды {} счетов переведены в хеши", migrated);
+        }
+    }
+
+    /**
+     * Хеширует все открытые пин-коды и возвращает число обновленных счетов.
+     */
+    public int migrate() {
+        int total = 0;
+        while (true) {
+            // Пакет читается с основной БД: отстающая реплика вернула бы уже обновленные строки.
+            List<Account> batch = transactionTemplate.execute(status -> accountRepository
+                    .findWithPinCodeNotStartingWith(PinVerifier.PREFIX,
+                            PageRequest.ofSize(pinProperties.getMigrationBatchSize())));
+            if (batch.isEmpty()) {
+                return total;
+            }
+            List<HashedPin> updates = new ArrayList<>(batch.size());
+            for (var account : batch) {
+                updates.add(new HashedPin(account.getAccNum(), account.getPinCode(),
+                        pinVerifier.hash(account.getPinCode())));
+            }
+            List<String> changed = transactionTemplate.execute(status -> {
+                List<String> accNums = new ArrayList<>(updates.size());
+                for (var update : updates) {
+                    if (accountRepository.replacePinCode(update.accNum(), update.pinCode(), update.hash()) > 0) {
+                        accNums.add(update.accNum());
+                    }
+                }
+                return accNums;
+            });
+            accountCache.evictAfterCommit(changed);
+            // Пакет, в котором ни одна строка не обновилась, повторился бы бесконечно.
+            if (changed.isEmpty()) {
+                log.warn("Пин-коды {} счетов не переведены: строки изменились во время миграции", batch.size());
+                return total;
+            }
+            total += changed.size();
+        }
+    }
+
+    private record HashedPin(String accNum, String pinCode, String hash) {
+    }
+}
@@ -0,0 +1,177 @@
+package ru.aston.bankapi.service.pin;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import ru.aston.bankapi.config.PinProperties;
+
+import javax.crypto.Mac;
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Base64;
+
+/**
+ * Хеширование и проверка пин-кодов. Пин-код хранится как PBKDF2-HMAC-SHA256 с солью
+ * в виде "pbkdf2-sha256$итерации$соль$хеш". Успешная проверка запоминается на cacheTtl:
+ * в кэше лежит хеш из БД и HMAC пин-кода на случайном ключе процесса, так что повторная
+ * проверка того же пин-кода стоит одного HMAC, а сам пин-код в памяти не хранится.
+ * Смена пин-кода меняет хеш в БД, и старая запись кэша перестает совпадать даже
+ * до явного сброса. Строки, еще не переведенные {@link PinMigration}, сравниваются
+ * с открытым пин-кодом за постоянное время.
+ */
+@Slf4j
+@Component
+public class PinVerifier {
+
+    static final String CACHE_NAME = "pins";
+    static final String PREFIX = "pbkdf2-sha256$";
+
+    private static final String ALGORITHM = "PBKDF2WithHmacSHA256";
+    private static final String MAC_ALGORITHM = "HmacSHA256";
+    private static final int SALT_BYTES = 16;
+    private static final int HASH_BITS = 256;
+
+    private final PinProperties pinProperties;
+    private final SecureRandom random = new SecureRandom();
+    private final SecretKeySpec macKey;
+    private final ThreadLocal<Mac> macs;
+    private final Cache<String, Verified> verified;
+    private final Counter derivations;
+
+    public PinVerifier(PinProperties pinProperties, MeterRegistry meterRegistry) {
+        this.pinProperties = pinProperties;
+        var key = new byte[32];
+        random.nextBytes(key);
+        this.macKey = new SecretKeySpec(key, MAC_ALGORITHM);
+        this.macs = ThreadLocal.withInitial(this::newMac);
+        this.verified = Caffeine.newBuilder()
+                .maximumSize(pinProperties.getCacheMaximumSize())
+                .expireAfterWrite(pinProperties.getCacheTtl())
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, verified, CACHE_NAME);
+        this.derivations = Counter.builder("bank.pin.derivations")
+                .description("Число вычислений PBKDF2 при хешировании и проверке пин-кодов")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Хеш пин-кода со случайной солью для записи в БД.
+     */
+    public String hash(String pinCode) {
+        var salt = new byte[SALT_BYTES];
+        random.nextBytes(salt);
+        var iterations = pinProperties.getIterations();
+        var encoder = Base64.getEncoder().withoutPadding();
+        return PREFIX + iterations + "$" + encoder.encodeToString(salt) + "$"
+                + encoder.encodeToString(derive(pinCode, salt, iterations));
+    }
+
+    /**
+     * Проверяет пин-код счета accNum по значению stored из БД.
+     */
+    public boolean matches(String accNum, String stored, String pinCode) {
+        if (stored == null || pinCode == null) {
+            return false;
+        }
+        if (!isHashed(stored)) {
+            return MessageDigest.isEqual(stored.getBytes(StandardCharsets.UTF_8),
+                    pinCode.getBytes(StandardCharsets.UTF_8));
+        }
+        var tag = macs.get().doFinal(pinCode.getBytes(StandardCharsets.UTF_8));
+        var entry = verified.getIfPresent(accNum);
+        if (entry != null && entry.stored().equals(stored) && MessageDigest.isEqual(entry.tag(), tag)) {
+            return true;
+        }
+        if (!verify(stored, pinCode)) {
+            return false;
+        }
+        verified.put(accNum, new Verified(stored, tag));
+        return true;
+    }
+
+    /**
+     * Сбрасывает запомненную проверку пин-кода счета.
+     */
+    public void invalidate(String accNum) {
+        verified.invalidate(accNum);
+    }
+
+    public static boolean isHashed(String stored) {
+        return stored != null && stored.startsWith(PREFIX);
+    }
+
+    /**
+     * Проверяет, что готовый хеш, полученный извне, записан в формате {@link #hash}
+     * и посчитан ровно с заданным в настройках числом итераций: меньшее ослабило бы
+     * хранение, а большее сделало бы каждую проверку пин-кода счета сколь угодно дорогой.
+     */
+    public boolean isAcceptableHash(String stored) {
+        if (!isHashed(stored)) {
+            return false;
+        }
+        var parts = stored.substring(PREFIX.length()).split("\\$");
+        if (parts.length != 3) {
+            return false;
+        }
+        try {
+            var decoder = Base64.getDecoder();
+            return Integer.parseInt(parts[0]) == pinProperties.getIterations()
+                    && decoder.decode(parts[1]).length == SALT_BYTES
+                    && decoder.decode(parts[2]).length == HASH_BITS / 8;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    private boolean verify(String stored, String pinCode) {
+        var parts = stored.substring(PREFIX.length()).split("\\$");
+        if (parts.length != 3) {
+            log.error("Некорректный формат хеша пин-кода");
+            return false;
+        }
+        try {
+            var decoder = Base64.getDecoder();
+            var expected = decoder.decode(parts[2]);
+            return MessageDigest.isEqual(expected,
+                    derive(pinCode, decoder.decode(parts[1]), Integer.parseInt(parts[0])));
+        } catch (IllegalArgumentException e) {
+            log.error("Некорректный формат хеша пин-кода", e);
+            return false;
+        }
+    }
+
+    private byte[] derive(String pinCode, byte[] salt, int iterations) {
+        var spec = new PBEKeySpec(pinCode.toCharArray(), salt, iterations, HASH_BITS);
+        try {
+            derivations.increment();
+            return SecretKeyFactory.getInstance(ALGORITHM).generateSecret(spec).getEncoded();
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Алгоритм " + ALGORITHM + " недоступен", e);
+        } finally {
+            spec.clearPassword();
+        }
+    }
+
+    private Mac newMac() {
+        try {
+            var mac = Mac.getInstance(MAC_ALGORITHM);
+            mac.init(macKey);
+            return mac;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Алгоритм " + MAC_ALGORITHM + " недоступен", e);
+        }
+    }
+
+    private record Verified(String stored, byte[] tag) {
+    }
+}
@@ -0,0 +1,159 @@
+package ru.aston.bankapi.service.provisioning;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.aston.bankapi.config.ProvisioningProperties;
+import ru.aston.bankapi.dto.AccountDto;
+import ru.aston.bankapi.dto.ProvisioningResultDto;
+import ru.aston.bankapi.model.TimeOrderedUuid;
+import ru.aston.bankapi.service.pin.PinVerifier;
+
+import javax.sql.DataSource;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
+
+/**
+ * Пакетное создание счетов для миграций. Строки читаются из итератора по одной и сразу
+ * проверяются; корректные накапливаются до batchSize и вставляются одним пакетом JDBC
+ * в отдельной транзакции. Результат каждой строки (номер счета или ошибка) передается
+ * потребителю по порядку строк после фиксации ее пакета, поэтому объем памяти не зависит
+ * от размера входа, а выданные номера уже сохранены в БД.
+ * <p>
+ * Пин-код строки - либо 4 символа, которые хешируются здесь параллельно в собственном
+ * пуле, либо готовый хеш в формате {@link PinVerifier} с заданным в настройках числом
+ * итераций. Хеширование стоит bank.pin.iterations итераций PBKDF2 на счет и ограничивает
+ * скорость, поэтому при переносе большого числа счетов хеши лучше передавать готовыми.
+ */
+@Slf4j
+@Component
+public class AccountProvisioner {
+
+    static final String INSERT_ACCOUNT = """
+            insert into accounts (acc_num, name, pin_code, amount, version)
+            values (?, ?, ?, ?, 0)""";
+
+    private static final int MAX_NAME_LENGTH = 255;
+
+    private final PinVerifier pinVerifier;
+    private final ProvisioningProperties provisioningProperties;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ForkJoinPool pool;
+    private final Counter provisioned;
+
+    public AccountProvisioner(PinVerifier pinVerifier,
+                              ProvisioningProperties provisioningProperties,
+                              DataSource dataSource,
+                              PlatformTransactionManager transactionManager,
+                              MeterRegistry meterRegistry) {
+        this.pinVerifier = pinVerifier;
+        this.provisioningProperties = provisioningProperties;
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.pool = new ForkJoinPool(provisioningProperties.getHashParallelism());
+        this.provisioned = Counter.builder("bank.accounts.provisioned")
+                .description("Число счетов, созданных пакетной загрузкой")
+                .register(meterRegistry);
+    }
+
+    @PreDestroy
+    void stop() {
+        pool.shutdownNow();
+    }
+
+    /**
+     * Создает счета по строкам rows и передает результат каждой строки в results.
+     * Если итератор бросает исключение, уже проверенные строки сохраняются и
+     * сообщаются, после чего исключение пробрасывается дальше.
+     */
+    public void provision(Iterator<AccountDto> rows, Consumer<ProvisioningResultDto> results) {
+        log.debug("Вызван метод provision");
+        long started = System.nanoTime();
+        long row = 0;
+        List<Row> batch = new ArrayList<>(provisioningProperties.getBatchSize());
+        long created = 0;
+        try {
+            while (rows.hasNext()) {
+                var account = rows.next();
+                batch.add(new Row(++row, account, validate(account)));
+                if (batch.size() >= provisioningProperties.getBatchSize()) {
+                    created += flush(batch, results);
+                }
+            }
+        } catch (RuntimeException e) {
+            created += flush(batch, results);
+            throw e;
+        }
+        created += flush(batch, results);
+        log.info("Пакетная загрузка: создано {} счетов из {} строк за {} мс", created, row,
+                (System.nanoTime() - started) / 1_000_000);
+    }
+
+    private String validate(AccountDto account) {
+        if (account == null) {
+            return "Пустая строка";
+        }
+        if (account.getName() == null || account.getName().isBlank()) {
+            return "Не указано имя";
+        }
+        if (account.getName().length() > MAX_NAME_LENGTH) {
+            return "Имя длиннее " + MAX_NAME_LENGTH + " символов";
+        }
+        var pinCode = account.getPinCode();
+        if (pinCode == null || (pinCode.length() != 4 && !pinVerifier.isAcceptableHash(pinCode))) {
+            return "Пин-код должен состоять из 4 символов или быть хешем в поддерживаемом формате";
+        }
+        return null;
+    }
+
+    /**
+     * Хеширует пин-коды, вставляет корректные строки пакета и сообщает результаты всех строк.
+     * Возвращает число созданных счетов.
+     */
+    private int flush(List<Row> batch, Consumer<ProvisioningResultDto> results) {
+        if (batch.isEmpty()) {
+            return 0;
+        }
+        var pending = List.copyOf(batch);
+        batch.clear();
+
+        var valid = pending.stream().filter(row -> row.error() == null).toList();
+        var pinHashes = pool.submit(() -> valid.parallelStream()
+                .map(row -> PinVerifier.isHashed(row.account().getPinCode())
+                        ? row.account().getPinCode()
+                        : pinVerifier.hash(row.account().getPinCode()))
+                .toList()).join();
+        var accNums = new String[valid.size()];
+        List<Object[]> inserts = new ArrayList<>(valid.size());
+        for (int i = 0; i < accNums.length; i++) {
+            accNums[i] = TimeOrderedUuid.next().toString();
+            inserts.add(new Object[]{accNums[i], valid.get(i).account().getName(), pinHashes.get(i), BigDecimal.ZERO});
+        }
+
+        if (!inserts.isEmpty()) {
+            transactionTemplate.executeWithoutResult(status -> jdbcTemplate.batchUpdate(INSERT_ACCOUNT, inserts));
+            provisioned.increment(inserts.size());
+        }
+
+        int next = 0;
+        for (var row : pending) {
+            results.accept(row.error() == null
+                    ? new ProvisioningResultDto(row.number(), accNums[next++], null)
+                    : new ProvisioningResultDto(row.number(), null, row.error()));
+        }
+        return valid.size();
+    }
+
+    private record Row(long number, AccountDto account, String error) {
+    }
+}
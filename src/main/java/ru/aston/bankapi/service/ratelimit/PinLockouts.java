@@ -0,0 +1,82 @@
+package ru.aston.bankapi.service.ratelimit;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongSupplier;
+
+/**
+ * Попытки ввода пин-кода по счету: корзина на maxFailures неверных пин-кодов, которая
+ * полностью восстанавливается за lockout. В отличие от {@link TokenBuckets} запись
+ * не вытесняется по размеру таблицы: иначе неверные пин-коды по другим счетам
+ * вернули бы заблокированному счету полную корзину. Запись удаляется только тогда,
+ * когда корзина восстановилась сама, поэтому память ограничена числом счетов
+ * с неверными пин-кодами за последний lockout.
+ */
+public class PinLockouts {
+
+    private final double capacity;
+    private final double tokensPerNano;
+    private final LongSupplier clock;
+    private final Map<String, Attempts> attempts = new ConcurrentHashMap<>();
+
+    public PinLockouts(int maxFailures, Duration lockout) {
+        this(maxFailures, lockout, System::nanoTime);
+    }
+
+    PinLockouts(int maxFailures, Duration lockout, LongSupplier clock) {
+        this.capacity = maxFailures;
+        this.tokensPerNano = maxFailures / (double) lockout.toNanos();
+        this.clock = clock;
+    }
+
+    /**
+     * Время в наносекундах до снятия блокировки, 0 - счет не заблокирован.
+     */
+    public long waitTime(String accNum) {
+        var current = attempts.get(accNum);
+        if (current == null) {
+            return 0;
+        }
+        var tokens = tokensAt(current, clock.getAsLong());
+        return tokens >= 1 ? 0 : (long) Math.ceil((1 - tokens) / tokensPerNano);
+    }
+
+    /**
+     * Учитывает неверный пин-код; ниже нуля корзина не опускается.
+     */
+    public void recordFailure(String accNum) {
+        long now = clock.getAsLong();
+        attempts.compute(accNum, (key, current) -> {
+            var tokens = current == null ? capacity : tokensAt(current, now);
+            return new Attempts(Math.max(0, tokens - 1), now);
+        });
+    }
+
+    /**
+     * Возвращает счету все попытки.
+     */
+    public void reset(String accNum) {
+        attempts.remove(accNum);
+    }
+
+    /**
+     * Удаляет записи, корзины которых уже восстановились полностью.
+     */
+    public void purgeExpired() {
+        long now = clock.getAsLong();
+        attempts.entrySet().removeIf(entry -> tokensAt(entry.getValue(), now) >= capacity);
+    }
+
+    int size() {
+        return attempts.size();
+    }
+
+    private double tokensAt(Attempts current, long now) {
+        var elapsed = Math.max(0, now - current.refilledAt());
+        return Math.min(capacity, current.tokens() + elapsed * tokensPerNano);
+    }
+
+    private record Attempts(double tokens, long refilledAt) {
+    }
+}
@@ -0,0 +1,112 @@
+package ru.aston.bankapi.service.ratelimit;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import ru.aston.bankapi.config.RateLimitProperties;
+import ru.aston.bankapi.exceptionHandler.TooManyRequestsException;
+
+import java.time.Duration;
+import java.util.Collection;
+
+/**
+ * Ограничение частоты операций до обращения к БД: корзины токенов по счету и по клиенту
+ * и корзина неверных пин-кодов по счету. Каждый неверный пин-код забирает из нее токен,
+ * пустая корзина блокирует операции по счету, пока токен не восстановится; верный
+ * пин-код возвращает полную корзину. Корзины пин-кодов хранятся в {@link PinLockouts}
+ * и не вытесняются по размеру таблицы.
+ */
+@Slf4j
+@Component
+public class RequestLimiter {
+
+    private final RateLimitProperties rateLimitProperties;
+    private final TokenBuckets accounts;
+    private final TokenBuckets clients;
+    private final PinLockouts pinAttempts;
+    private final Counter rateLimited;
+    private final Counter lockedOut;
+
+    public RequestLimiter(RateLimitProperties rateLimitProperties, MeterRegistry meterRegistry) {
+        this.rateLimitProperties = rateLimitProperties;
+        this.accounts = new TokenBuckets(rateLimitProperties.getAccountCapacity(),
+                rateLimitProperties.getAccountRefillPerSecond(),
+                rateLimitProperties.getMaximumSize(), rateLimitProperties.getStripes());
+        this.clients = new TokenBuckets(rateLimitProperties.getClientCapacity(),
+                rateLimitProperties.getClientRefillPerSecond(),
+                rateLimitProperties.getMaximumSize(), rateLimitProperties.getStripes());
+        this.pinAttempts = new PinLockouts(rateLimitProperties.getMaxPinFailures(), rateLimitProperties.getPinLockout());
+        this.rateLimited = Counter.builder("bank.rate-limit.rejected")
+                .tag("reason", "rate")
+                .description("Число операций, отклоненных ограничителем частоты")
+                .register(meterRegistry);
+        this.lockedOut = Counter.builder("bank.rate-limit.rejected")
+                .tag("reason", "pin")
+                .description("Число операций, отклоненных ограничителем частоты")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Пропускает операцию по счету accNum от клиента client или бросает
+     * {@link TooManyRequestsException} со временем, через которое можно повторить.
+     */
+    public void acquire(String accNum, String client) {
+        if (!rateLimitProperties.isEnabled()) {
+            return;
+        }
+        checkLockout(accNum);
+        var wait = clients.tryConsume(client);
+        if (wait == 0) {
+            wait = accounts.tryConsume(accNum);
+        }
+        reject(wait, client);
+    }
+
+    /**
+     * Пропускает пакет операций со счетов accNums: пакет - один запрос клиента,
+     * ни один из счетов не должен быть заблокирован.
+     */
+    public void acquireBatch(Collection<String> accNums, String client) {
+        if (!rateLimitProperties.isEnabled()) {
+            return;
+        }
+        accNums.forEach(this::checkLockout);
+        reject(clients.tryConsume(client), client);
+    }
+
+    public void recordPinFailure(String accNum) {
+        if (rateLimitProperties.isEnabled()) {
+            pinAttempts.recordFailure(accNum);
+        }
+    }
+
+    public void recordPinSuccess(String accNum) {
+        if (rateLimitProperties.isEnabled()) {
+            pinAttempts.reset(accNum);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${bank.rate-limit.pin-cleanup-interval:PT1M}")
+    public void purgeExpiredLockouts() {
+        pinAttempts.purgeExpired();
+    }
+
+    private void checkLockout(String accNum) {
+        var locked = pinAttempts.waitTime(accNum);
+        if (locked > 0) {
+            lockedOut.increment();
+            log.warn("Операции по счету {} заблокированы после неверных пин-кодов", accNum);
+            throw new TooManyRequestsException("Счет временно заблокирован: неверный пин-код", Duration.ofNanos(locked));
+        }
+    }
+
+    private void reject(long wait, String client) {
+        if (wait > 0) {
+            rateLimited.increment();
+            log.warn("Превышена частота операций клиентом {}", client);
+            throw new TooManyRequestsException("Слишком много запросов", Duration.ofNanos(wait));
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package ru.aston.bankapi.service.ratelimit;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.LongSupplier;
+
+/**
+ * Набор корзин токенов по строковому ключу. Таблица разбита на сегменты со своей
+ * блокировкой, каждый сегмент - LinkedHashMap в порядке доступа с ограниченным размером,
+ * поэтому память ограничена, а вытесняются давно не использованные ключи. Вытесненный
+ * ключ при следующем обращении получает полную корзину.
+ */
+public class TokenBuckets {
+
+    private final double capacity;
+    private final double tokensPerNano;
+    private final LongSupplier clock;
+    private final Stripe[] stripes;
+
+    public TokenBuckets(int capacity, double refillPerSecond, int maximumSize, int stripes) {
+        this(capacity, refillPerSecond, maximumSize, stripes, System::nanoTime);
+    }
+
+    TokenBuckets(int capacity, double refillPerSecond, int maximumSize, int stripes, LongSupplier clock) {
+        this.capacity = capacity;
+        this.tokensPerNano = refillPerSecond / 1_000_000_000d;
+        this.clock = clock;
+        this.stripes = new Stripe[stripes];
+        int stripeSize = Math.max(1, maximumSize / stripes);
+        for (int i = 0; i < stripes; i++) {
+            this.stripes[i] = new Stripe(stripeSize);
+        }
+    }
+
+    /**
+     * Забирает токен. Возвращает 0 при успехе, иначе время в наносекундах до появления токена.
+     */
+    public long tryConsume(String key) {
+        var stripe = stripeOf(key);
+        synchronized (stripe) {
+            var bucket = stripe.bucket(key, clock.getAsLong());
+            if (bucket.tokens >= 1) {
+                bucket.tokens -= 1;
+                return 0;
+            }
+            return nanosUntilToken(bucket);
+        }
+    }
+
+    /**
+     * Время в наносекундах до появления токена, 0 - токен есть. Токен не забирается.
+     */
+    public long waitTime(String key) {
+        var stripe = stripeOf(key);
+        synchronized (stripe) {
+            var bucket = stripe.find(key, clock.getAsLong());
+            return bucket == null || bucket.tokens >= 1 ? 0 : nanosUntilToken(bucket);
+        }
+    }
+
+    /**
+     * Забирает токен, даже если корзина пуста; ниже нуля корзина не опускается.
+     */
+    public void drain(String key) {
+        var stripe = stripeOf(key);
+        synchronized (stripe) {
+            var bucket = stripe.bucket(key, clock.getAsLong());
+            bucket.tokens = Math.max(0, bucket.tokens - 1);
+        }
+    }
+
+    /**
+     * Возвращает ключу полную корзину.
+     */
+    public void reset(String key) {
+        var stripe = stripeOf(key);
+        synchronized (stripe) {
+            stripe.remove(key);
+        }
+    }
+
+    int size() {
+        int size = 0;
+        for (var stripe : stripes) {
+            synchronized (stripe) {
+                size += stripe.size();
+            }
+        }
+        return size;
+    }
+
+    private long nanosUntilToken(Bucket bucket) {
+        return (long) Math.ceil((1 - bucket.tokens) / tokensPerNano);
+    }
+
+    private Stripe stripeOf(String key) {
+        int hash = key.hashCode();
+        hash ^= hash >>> 16;
+        return stripes[Math.floorMod(hash, stripes.length)];
+    }
+
+    private static final class Bucket {
+
+        double tokens;
+        long refilledAt;
+
+        Bucket(double tokens, long refilledAt) {
+            this.tokens = tokens;
+            this.refilledAt = refilledAt;
+        }
+    }
+
+    private final class Stripe extends LinkedHashMap<String, Bucket> {
+
+        private final int maximumSize;
+
+        Stripe(int maximumSize) {
+            super(16, 0.75f, true);
+            this.maximumSize = maximumSize;
+        }
+
+        Bucket bucket(String key, long now) {
+            var bucket = find(key, now);
+            if (bucket == null) {
+                bucket = new Bucket(capacity, now);
+                put(key, bucket);
+            }
+            return bucket;
+        }
+
+        Bucket find(String key, long now) {
+            var bucket = get(key);
+            if (bucket != null && now > bucket.refilledAt) {
+                bucket.tokens = Math.min(capacity, bucket.tokens + (now - bucket.refilledAt) * tokensPerNano);
+                bucket.refilledAt = now;
+            }
+            return bucket;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Bucket> eldest) {
+            return size() > maximumSize;
+        }
+    }
+}
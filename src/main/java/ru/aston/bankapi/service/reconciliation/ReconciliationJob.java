@@ -0,0 +1,300 @@
+package ru.aston.bankapi.service.reconciliation;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.aston.bankapi.config.ReconciliationProperties;
+import ru.aston.bankapi.repository.AccountRepository;
+import ru.aston.bankapi.repository.TransactionRepository;
+import ru.aston.bankapi.service.journal.TransactionJournal;
+
+import javax.sql.DataSource;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Сверка Account.amount с суммой операций по счету. Счета читаются пакетами по возрастанию
+ * номера, для каждого пакета операции выбираются диапазонным сканированием индексов
+ * (acc_num_from, id) и (acc_num_to, id) и суммируются в копейках в массиве long.
+ * Пакеты обрабатываются несколькими потоками, в работе одновременно не больше двух
+ * пакетов на поток, поэтому объем памяти не зависит от размера истории. Расхождения,
+ * найденные без блокировок, перепроверяются точным расчетом под блокировкой счета,
+ * чтобы не сообщать об операциях, проведенных во время сверки.
+ * <p>
+ * С журналом операций баланс фиксируется раньше, чем загрузчик журнала вставляет
+ * операцию в transactions, поэтому перед сверкой и перед перепроверкой счета
+ * ожидается загрузка уже записанных в журнал операций. Если журнал не успевает
+ * загрузиться, сверка откладывается, а счет не считается расхождением.
+ */
+@Slf4j
+@Component
+public class ReconciliationJob {
+
+    static final String ACCOUNTS_QUERY = """
+            select acc_num, cast(amount * 100 as bigint) from accounts
+            where acc_num > ?
+            order by acc_num
+            fetch first ? rows only""";
+
+    static final String OUTGOING_QUERY = """
+            select acc_num_from, acc_num_to, operation, cast(amount * 100 as bigint) from transactions
+            where acc_num_from between ? and ?""";
+
+    static final String INCOMING_QUERY = """
+            select acc_num_to, cast(amount * 100 as bigint) from transactions
+            where acc_num_to between ? and ? and acc_num_from <> acc_num_to""";
+
+    private final AccountRepository accountRepository;
+    private final TransactionRepository transactionRepository;
+    private final ReconciliationProperties reconciliationProperties;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final Optional<TransactionJournal> transactionJournal;
+
+    private volatile ReconciliationReport lastReport;
+
+    public ReconciliationJob(AccountRepository accountRepository,
+                             TransactionRepository transactionRepository,
+                             ReconciliationProperties reconciliationProperties,
+                             DataSource dataSource,
+                             PlatformTransactionManager transactionManager,
+                             Optional<TransactionJournal> transactionJournal,
+                             MeterRegistry meterRegistry) {
+        this.accountRepository = accountRepository;
+        this.transactionRepository = transactionRepository;
+        this.reconciliationProperties = reconciliationProperties;
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.jdbcTemplate.setFetchSize(reconciliationProperties.getFetchSize());
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionJournal = transactionJournal;
+        Gauge.builder("bank.reconciliation.mismatches", this,
+                        job -> job.lastReport == null ? 0 : job.lastReport.mismatchCount())
+                .description("Число расхождений, найденных последней сверкой")
+                .register(meterRegistry);
+    }
+
+    @Scheduled(cron = "${bank.reconciliation.cron:0 0 0 * * *}")
+    public void run() {
+        if (!reconciliationProperties.isEnabled()) {
+            return;
+        }
+        try {
+            reconcile();
+        } catch (JournalBehindException e) {
+            log.warn(e.getMessage());
+        }
+    }
+
+    public ReconciliationReport getLastReport() {
+        return lastReport;
+    }
+
+    /**
+     * Сверяет все счета. Бросает {@link JournalBehindException}, если журнал операций
+     * не загрузился в БД за bank.reconciliation.journal-load-timeout.
+     */
+    public ReconciliationReport reconcile() {
+        if (!awaitJournalLoaded()) {
+            throw new JournalBehindException("Журнал операций не загружен в БД, сверка отложена");
+        }
+        var startedAt = Instant.now();
+        var accounts = new LongAdder();
+        var transactions = new LongAdder();
+        Queue<String> suspects = new ConcurrentLinkedQueue<>();
+
+        var workers = reconciliationProperties.getWorkers();
+        var executor = Executors.newFixedThreadPool(workers, new CustomizableThreadFactory("reconciliation-"));
+        var inFlight = new Semaphore(workers * 2);
+        List<Future<?>> futures = new ArrayList<>();
+        try {
+            var after = "";
+            for (var chunk = readChunk(after); chunk.size() > 0; chunk = readChunk(after)) {
+                inFlight.acquire();
+                var current = chunk;
+                futures.add(executor.submit(() -> {
+                    try {
+                        transactions.add(check(current, suspects));
+                        accounts.add(current.size());
+                    } finally {
+                        inFlight.release();
+                    }
+                }));
+                after = chunk.last();
+            }
+            for (var future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Сверка прервана", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Ошибка сверки пакета счетов", e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+
+        long mismatchCount = 0;
+        List<ReconciliationReport.Mismatch> mismatches = new ArrayList<>();
+        for (var accNum : suspects.stream().sorted().toList()) {
+            var mismatch = confirm(accNum);
+            if (mismatch.isEmpty()) {
+                continue;
+            }
+            mismatchCount++;
+            log.error("Баланс счета {} равен {}, по операциям {}", accNum, mismatch.get().amount(),
+                    mismatch.get().expected());
+            if (mismatches.size() < reconciliationProperties.getMaxReportedMismatches()) {
+                mismatches.add(mismatch.get());
+            }
+        }
+        mismatches.sort(Comparator.comparing(ReconciliationReport.Mismatch::accNum));
+
+        var report = new ReconciliationReport(startedAt, Instant.now(), accounts.sum(), transactions.sum(),
+                mismatchCount, List.copyOf(mismatches));
+        lastReport = report;
+        log.info("Сверка завершена: проверено {} счетов и {} операций, расхождений {}",
+                report.accountsChecked(), report.transactionsScanned(), report.mismatchCount());
+        return report;
+    }
+
+    private AccountChunk readChunk(String after) {
+        var chunkSize = reconciliationProperties.getChunkSize();
+        var accNums = new String[chunkSize];
+        var amounts = new long[chunkSize];
+        var size = new int[1];
+        jdbcTemplate.query(ACCOUNTS_QUERY, rs -> {
+            accNums[size[0]] = rs.getString(1);
+            amounts[size[0]] = rs.getLong(2);
+            size[0]++;
+        }, after, chunkSize);
+        return new AccountChunk(accNums, amounts, size[0]);
+    }
+
+    /**
+     * Суммирует операции пакета счетов и добавляет в suspects счета с расхождением.
+     * Возвращает число прочитанных операций.
+     */
+    private long check(AccountChunk chunk, Queue<String> suspects) {
+        Map<String, Integer> positions = new HashMap<>(chunk.size() * 2);
+        for (int i = 0; i < chunk.size(); i++) {
+            positions.put(chunk.accNums()[i], i);
+        }
+        var expected = new long[chunk.size()];
+        var overflow = new boolean[chunk.size()];
+        var scanned = new long[1];
+
+        jdbcTemplate.query(OUTGOING_QUERY, rs -> {
+            scanned[0]++;
+            var position = positions.get(rs.getString(1));
+            if (position == null) {
+                return;
+            }
+            var cents = rs.getLong(4);
+            var operation = rs.getString(3);
+            long delta;
+            if ("DEPOSIT".equals(operation)) {
+                delta = cents;
+            } else if ("TRANSFER".equals(operation) && chunk.accNums()[position].equals(rs.getString(2))) {
+                delta = 0;
+            } else {
+                delta = -cents;
+            }
+            try {
+                expected[position] = Math.addExact(expected[position], delta);
+            } catch (ArithmeticException e) {
+                overflow[position] = true;
+            }
+        }, chunk.first(), chunk.last());
+
+        jdbcTemplate.query(INCOMING_QUERY, rs -> {
+            scanned[0]++;
+            var position = positions.get(rs.getString(1));
+            if (position == null) {
+                return;
+            }
+            try {
+                expected[position] = Math.addExact(expected[position], rs.getLong(2));
+            } catch (ArithmeticException e) {
+                overflow[position] = true;
+            }
+        }, chunk.first(), chunk.last());
+
+        for (int i = 0; i < chunk.size(); i++) {
+            if (overflow[i] || expected[i] != chunk.amounts()[i]) {
+                suspects.add(chunk.accNums()[i]);
+            }
+        }
+        return scanned[0];
+    }
+
+    /**
+     * Точная проверка счета под блокировкой: операции по нему в это время не проводятся.
+     */
+    private Optional<ReconciliationReport.Mismatch> confirm(String accNum) {
+        // Ожидание до блокировки сокращает время, на которое счет блокируется ниже.
+        awaitJournalLoaded();
+        return transactionTemplate.execute(status -> accountRepository.findByIdForUpdate(accNum)
+                .filter(account -> {
+                    // Операции, зафиксированные до блокировки, могут быть еще не загружены из журнала.
+                    if (awaitJournalLoaded()) {
+                        return true;
+                    }
+                    log.warn("Счет {} не перепроверен: журнал операций не загружен в БД", accNum);
+                    return false;
+                })
+                .map(account -> new ReconciliationReport.Mismatch(accNum, account.getAmount(),
+                        transactionRepository.sumBalanceDelta(accNum, 0, Long.MAX_VALUE, Instant.now())))
+                .filter(mismatch -> mismatch.amount().compareTo(mismatch.expected()) != 0));
+    }
+
+    private boolean awaitJournalLoaded() {
+        if (transactionJournal.isEmpty()) {
+            return true;
+        }
+        try {
+            return transactionJournal.get().awaitLoaded(reconciliationProperties.getJournalLoadTimeout());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Сверка прервана", e);
+        }
+    }
+
+    /**
+     * Журнал операций отстает от балансов, и сверка сообщила бы о ложных расхождениях.
+     */
+    public static class JournalBehindException extends IllegalStateException {
+
+        public JournalBehindException(String message) {
+            super(message);
+        }
+    }
+
+    private record AccountChunk(String[] accNums, long[] amounts, int size) {
+
+        String first() {
+            return accNums[0];
+        }
+
+        String last() {
+            return accNums[size - 1];
+        }
+    }
+}
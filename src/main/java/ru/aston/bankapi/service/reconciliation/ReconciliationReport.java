@@ -0,0 +1,23 @@
+package ru.aston.bankapi.service.reconciliation;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Итог сверки: число проверенных счетов и операций, подтвержденные расхождения
+ * (не больше maxReportedMismatches) и их общее число.
+ */
+public record ReconciliationReport(Instant startedAt,
+                                   Instant finishedAt,
+                                   long accountsChecked,
+                                   long transactionsScanned,
+                                   long mismatchCount,
+                                   List<Mismatch> mismatches) {
+
+    /**
+     * Счет, баланс которого не равен сумме операций по нему.
+     */
+    public record Mismatch(String accNum, BigDecimal amount, BigDecimal expected) {
+    }
+}
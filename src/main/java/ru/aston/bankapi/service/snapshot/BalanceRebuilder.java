@@ -0,0 +1,178 @@
+package ru.aston.bankapi.service.snapshot;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.aston.bankapi.config.SnapshotProperties;
+import ru.aston.bankapi.exceptionHandler.NotFoundException;
+import ru.aston.bankapi.model.BalanceSnapshot;
+import ru.aston.bankapi.model.Money;
+import ru.aston.bankapi.repository.AccountRepository;
+import ru.aston.bankapi.repository.BalanceSnapshotRepository;
+import ru.aston.bankapi.repository.TransactionRepository;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.Function;
+
+/**
+ * Восстановление балансов по таблице transactions: последний снимок счета на момент
+ * asOf плюс изменения после него. Полный пересчет и снятие снимков идут параллельно
+ * по счетам в собственном ForkJoinPool, каждая задача обрабатывает пакет счетов
+ * в одной транзакции.
+ */
+@Slf4j
+@Component
+public class BalanceRebuilder {
+
+    private final AccountRepository accountRepository;
+    private final TransactionRepository transactionRepository;
+    private final BalanceSnapshotRepository balanceSnapshotRepository;
+    private final SnapshotProperties snapshotProperties;
+    private final TransactionTemplate readOnlyTemplate;
+    private final TransactionTemplate writeTemplate;
+    private final ForkJoinPool pool;
+
+    public BalanceRebuilder(AccountRepository accountRepository,
+                            TransactionRepository transactionRepository,
+                            BalanceSnapshotRepository balanceSnapshotRepository,
+                            PlatformTransactionManager transactionManager,
+                            SnapshotProperties snapshotProperties) {
+        this.accountRepository = accountRepository;
+        this.transactionRepository = transactionRepository;
+        this.balanceSnapshotRepository = balanceSnapshotRepository;
+        this.snapshotProperties = snapshotProperties;
+        this.readOnlyTemplate = new TransactionTemplate(transactionManager);
+        this.readOnlyTemplate.setReadOnly(true);
+        this.writeTemplate = new TransactionTemplate(transactionManager);
+        this.writeTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.pool = new ForkJoinPool(snapshotProperties.getParallelism());
+    }
+
+    @PreDestroy
+    void stop() {
+        pool.shutdownNow();
+    }
+
+    /**
+     * Баланс счета на момент asOf.
+     */
+    public BigDecimal balanceAsOf(String accNum, Instant asOf) {
+        return readOnlyTemplate.execute(status -> {
+            if (!accountRepository.existsById(accNum)) {
+                log.error("Аккаунт с номером {} не найден", accNum);
+                throw new NotFoundException("Аккаунт с данным номером не найден");
+            }
+            return rebuild(accNum, asOf);
+        });
+    }
+
+    /**
+     * Балансы всех счетов на момент asOf.
+     */
+    public Map<String, BigDecimal> balancesAsOf(Instant asOf) {
+        var accNums = accountRepository.findAllAccNums();
+        long started = System.nanoTime();
+        var balances = pool.invoke(new BatchTask<>(accNums,
+                batch -> readOnlyTemplate.execute(status -> rebuildAll(batch, asOf))));
+        log.info("Пересчитаны балансы {} счетов на {} за {} мс", balances.size(), asOf,
+                (System.nanoTime() - started) / 1_000_000);
+        return balances;
+    }
+
+    /**
+     * Снимает снимки балансов всех счетов, по которым были операции после предыдущего снимка.
+     */
+    @Scheduled(fixedDelayString = "${bank.snapshots.interval:PT1H}", initialDelayString = "${bank.snapshots.interval:PT1H}")
+    public void takeSnapshots() {
+        if (!snapshotProperties.isEnabled()) {
+            return;
+        }
+        var accNums = accountRepository.findAllAccNums();
+        var taken = pool.invoke(new BatchTask<>(accNums, batch -> {
+            Map<String, BigDecimal> snapshots = new HashMap<>();
+            for (var accNum : batch) {
+                var snapshot = writeTemplate.execute(status -> snapshot(accNum));
+                if (snapshot != null) {
+                    snapshots.put(accNum, snapshot.getBalance().toBigDecimal());
+                }
+            }
+            return snapshots;
+        }));
+        log.info("Снято {} снимков балансов", taken.size());
+    }
+
+    /**
+     * Снимает снимок баланса счета, если после предыдущего снимка были операции.
+     * Строка счета блокируется, поэтому все операции по счету с id до найденного
+     * максимального зафиксированы, а новые получат id больше него.
+     */
+    BalanceSnapshot snapshot(String accNum) {
+        if (accountRepository.findByIdForUpdate(accNum).isEmpty()) {
+            return null;
+        }
+        var takenAt = Instant.now();
+        var lastId = transactionRepository.findLastIdByAccNum(accNum);
+        var previous = balanceSnapshotRepository
+                .findFirstByAccNumAndTakenAtLessThanEqualOrderByTakenAtDesc(accNum, takenAt);
+        long afterId = previous.map(BalanceSnapshot::getLastTransactionId).orElse(0L);
+        if (lastId <= afterId) {
+            return null;
+        }
+        var balance = previous.map(BalanceSnapshot::getBalance).orElse(Money.ZERO)
+                .plus(Money.of(transactionRepository.sumBalanceDelta(accNum, afterId, lastId, takenAt)));
+        return balanceSnapshotRepository.save(new BalanceSnapshot(accNum, lastId, balance, takenAt));
+    }
+
+    private Map<String, BigDecimal> rebuildAll(List<String> accNums, Instant asOf) {
+        Map<String, BigDecimal> balances = new HashMap<>(accNums.size() * 2);
+        for (var accNum : accNums) {
+            balances.put(accNum, rebuild(accNum, asOf));
+        }
+        return balances;
+    }
+
+    private BigDecimal rebuild(String accNum, Instant asOf) {
+        var snapshot = balanceSnapshotRepository.findFirstByAccNumAndTakenAtLessThanEqualOrderByTakenAtDesc(accNum, asOf);
+        long afterId = snapshot.map(BalanceSnapshot::getLastTransactionId).orElse(0L);
+        return snapshot.map(balance -> balance.getBalance().toBigDecimal()).orElse(BigDecimal.ZERO)
+                .add(transactionRepository.sumBalanceDelta(accNum, afterId, Long.MAX_VALUE, asOf));
+    }
+
+    /**
+     * Делит список счетов пополам, пока пакет больше batchSize, и объединяет результаты.
+     */
+    private final class BatchTask<V> extends RecursiveTask<Map<String, V>> {
+
+        private final List<String> accNums;
+        private final Function<List<String>, Map<String, V>> action;
+
+        BatchTask(List<String> accNums, Function<List<String>, Map<String, V>> action) {
+            this.accNums = accNums;
+            this.action = action;
+        }
+
+        @Override
+        protected Map<String, V> compute() {
+            if (accNums.size() <= snapshotProperties.getBatchSize()) {
+                return action.apply(accNums);
+            }
+            int middle = accNums.size() / 2;
+            var left = new BatchTask<>(accNums.subList(0, middle), action);
+            var right = new BatchTask<>(accNums.subList(middle, accNums.size()), action);
+            left.fork();
+            var result = new HashMap<>(right.compute());
+            result.putAll(left.join());
+            return result;
+        }
+    }
+}
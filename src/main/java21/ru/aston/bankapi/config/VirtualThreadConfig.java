@@ -0,0 +1,59 @@
+package ru.aston.bankapi.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.task.TaskExecutionAutoConfiguration;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.core.task.support.TaskExecutorAdapter;
+
+import java.util.concurrent.Executors;
+
+/**
+ * Обработка запросов Tomcat и асинхронные задачи (@Async, StreamingResponseBody)
+ * на виртуальных потоках. Собирается только в профиле jdk21.
+ *
+ * <p>Закрепление (pinning) на пути к БД: собственный код запроса не держит мониторы
+ * при блокирующих вызовах (synchronized в журнале и LedgerWriter выполняются в их
+ * платформенных потоках). Hikari ожидает соединение без мониторов. H2 2.1 выполняет
+ * каждую команду внутри synchronized(session) и ждет блокировку строки в synchronized
+ * методе через Object.wait, поэтому в пессимистичном режиме ожидание блокировки
+ * удерживает поток-носитель до LOCK_TIMEOUT. Одновременно к H2 обращается не больше
+ * потоков, чем соединений в пуле, поэтому пул не должен превышать число носителей.
+ */
+@Slf4j
+@Configuration
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "bank.virtual-threads.enabled", havingValue = "true")
+public class VirtualThreadConfig {
+
+    private final ObjectProvider<HikariDataSource> dataSources;
+
+    @Bean
+    public TomcatProtocolHandlerCustomizer<?> virtualThreadProtocolHandlerCustomizer() {
+        return protocolHandler -> protocolHandler.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+    }
+
+    @Bean(name = TaskExecutionAutoConfiguration.APPLICATION_TASK_EXECUTOR_BEAN_NAME)
+    public AsyncTaskExecutor applicationTaskExecutor() {
+        return new TaskExecutorAdapter(Executors.newVirtualThreadPerTaskExecutor());
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void checkPoolSize() {
+        int carriers = Runtime.getRuntime().availableProcessors();
+        dataSources.stream().forEach(pool -> {
+            if (pool.getMaximumPoolSize() > carriers) {
+                log.warn("Пул соединений ({}) больше числа потоков-носителей ({}): ожидание блокировок H2 "
+                        + "может занять все носители", pool.getMaximumPoolSize(), carriers);
+            }
+        });
+    }
+}
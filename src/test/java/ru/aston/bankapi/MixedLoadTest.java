@@ -0,0 +1,216 @@
+package ru.aston.bankapi;
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.ActiveProfiles;
+import ru.aston.bankapi.service.AccountService;
+
+import java.math.BigDecimal;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Нагрузочный прогон смешанного трафика через контроллеры: чтение счета, пополнение,
+ * перевод, снятие, история операций счета и страница счетов. WORKERS клиентов в замкнутом
+ * цикле шлют запросы DURATION; для каждой конфигурации в лог пишутся пропускная способность
+ * и p99 по типам запросов. Ограничитель частоты выключен, чтобы измерялись пул и JPA.
+ * Запуск: mvn test -Pbenchmark -Dtest=MixedLoadTest; для сравнения конфигураций без влияния
+ * прогрева JIT первой из них - по одной, например -Dtest='MixedLoadTest$Production'.
+ */
+@Slf4j
+@Tag("benchmark")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "spring.jpa.show-sql=false",
+        "logging.level.org.hibernate.SQL=WARN",
+        "logging.level.ru.aston.bankapi=WARN",
+        "logging.level.ru.aston.bankapi.MixedLoadTest=INFO",
+        "bank.rate-limit.enabled=false",
+        "bank.history.relay-enabled=true",
+        "bank.pin.iterations=1000"
+})
+class MixedLoadTest {
+
+    private static final int ACCOUNTS = 200;
+    private static final int WORKERS = 32;
+    private static final Duration WARMUP = Duration.ofSeconds(10);
+    private static final Duration DURATION = Duration.ofSeconds(30);
+    private static final String PIN_CODE = "1234";
+
+    enum Request {
+        ACCOUNT(30), DEPOSIT(20), TRANSFER(20), WITHDRAW(10), HISTORY(15), PAGE(5);
+
+        final int weight;
+
+        Request(int weight) {
+            this.weight = weight;
+        }
+    }
+
+    @Nested
+    @DirtiesContext
+    class Defaults extends LoadScenario {
+
+        @Test
+        void mixedTraffic_CompletesWithoutErrors() throws Exception {
+            run("настройки по умолчанию");
+        }
+    }
+
+    @Nested
+    @DirtiesContext
+    @ActiveProfiles({"prod", "prod-db"})
+    class Production extends LoadScenario {
+
+        @Test
+        void mixedTraffic_CompletesWithoutErrors() throws Exception {
+            run("профили prod, prod-db");
+        }
+    }
+
+    abstract static class LoadScenario {
+
+        @LocalServerPort
+        private int port;
+
+        @Autowired
+        private AccountService accountService;
+
+        private final HttpClient client = HttpClient.newHttpClient();
+        private final AtomicInteger errors = new AtomicInteger();
+        private String[] accNums;
+
+        void run(String configuration) throws Exception {
+            accNums = new String[ACCOUNTS];
+            for (int i = 0; i < ACCOUNTS; i++) {
+                accNums[i] = accountService.createAccount("load-" + i, PIN_CODE).orElseThrow().getAccNum();
+                accountService.deposit(accNums[i], new BigDecimal("1000000"));
+            }
+
+            // Прогрев JIT и кэшей, результаты не учитываются.
+            drive(WARMUP);
+            errors.set(0);
+
+            var latencies = drive(DURATION);
+            int total = 0;
+            for (var request : Request.values()) {
+                var values = latencies.get(request);
+                values.sort(null);
+                total += values.size();
+                log.info("{}: {} {} запросов, {} запросов/с, p99 {} мс", configuration, request, values.size(),
+                        String.format("%.1f", values.size() / (double) DURATION.toSeconds()),
+                        String.format("%.1f", p99(values)));
+            }
+            log.info("{}: всего {} запросов/с, ошибок {}", configuration,
+                    String.format("%.1f", total / (double) DURATION.toSeconds()), errors.get());
+
+            assertEquals(0, errors.get());
+        }
+
+        private Map<Request, List<Long>> drive(Duration duration) throws Exception {
+            long deadline = System.nanoTime() + duration.toNanos();
+            ExecutorService executor = Executors.newFixedThreadPool(WORKERS);
+            try {
+                List<Future<Map<Request, List<Long>>>> workers = new ArrayList<>(WORKERS);
+                for (int i = 0; i < WORKERS; i++) {
+                    workers.add(executor.submit(() -> work(deadline)));
+                }
+                Map<Request, List<Long>> latencies = newLatencies();
+                for (var worker : workers) {
+                    worker.get().forEach((request, values) -> latencies.get(request).addAll(values));
+                }
+                return latencies;
+            } finally {
+                executor.shutdownNow();
+            }
+        }
+
+        private Map<Request, List<Long>> work(long deadline) throws Exception {
+            Map<Request, List<Long>> latencies = newLatencies();
+            var random = ThreadLocalRandom.current();
+            while (System.nanoTime() < deadline) {
+                var request = pick(random.nextInt(100));
+                long start = System.nanoTime();
+                var response = client.send(build(request, random), HttpResponse.BodyHandlers.discarding());
+                latencies.get(request).add(System.nanoTime() - start);
+                if (response.statusCode() != 200) {
+                    errors.incrementAndGet();
+                }
+            }
+            return latencies;
+        }
+
+        private HttpRequest build(Request request, ThreadLocalRandom random) {
+            var accNum = accNums[random.nextInt(ACCOUNTS)];
+            var payment = "{\"amountOfOperation\": 1, \"pinCode\": \"" + PIN_CODE + "\"}";
+            return switch (request) {
+                case ACCOUNT -> get("/api/v1/accounts/" + accNum);
+                case DEPOSIT -> patch("/api/v1/accounts/" + accNum + "/deposit", payment);
+                case TRANSFER -> patch("/api/v1/accounts/" + accNum + "/transfer/"
+                        + accNums[random.nextInt(ACCOUNTS)], payment);
+                case WITHDRAW -> patch("/api/v1/accounts/" + accNum + "/withdraw", payment);
+                case HISTORY -> get("/api/version1/transactions/page?accNum=" + accNum + "&limit=50");
+                case PAGE -> get("/api/v1/accounts/page?page=" + random.nextInt(ACCOUNTS / 20) + "&size=20");
+            };
+        }
+
+        private HttpRequest get(String path) {
+            return HttpRequest.newBuilder(uri(path)).GET().build();
+        }
+
+        private HttpRequest patch(String path, String body) {
+            return HttpRequest.newBuilder(uri(path))
+                    .header("Content-Type", "application/json")
+                    .method("PATCH", HttpRequest.BodyPublishers.ofString(body))
+                    .build();
+        }
+
+        private URI uri(String path) {
+            return URI.create("http://localhost:" + port + path);
+        }
+
+        private static Request pick(int roll) {
+            for (var request : Request.values()) {
+                roll -= request.weight;
+                if (roll < 0) {
+                    return request;
+                }
+            }
+            throw new IllegalStateException("Сумма весов запросов меньше 100");
+        }
+
+        private static Map<Request, List<Long>> newLatencies() {
+            Map<Request, List<Long>> latencies = new EnumMap<>(Request.class);
+            for (var request : Request.values()) {
+                latencies.put(request, new ArrayList<>());
+            }
+            return latencies;
+        }
+
+        private static double p99(List<Long> sorted) {
+            if (sorted.isEmpty()) {
+                return 0;
+            }
+            return sorted.get((int) Math.ceil(sorted.size() * 0.99) - 1) / 1_000_000.0;
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package ru.aston.bankapi.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
+import ru.aston.bankapi.service.AccountService;
+import ru.aston.bankapi.service.TransactionService;
+
+import java.math.BigDecimal;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:routingdb;LOCK_TIMEOUT=3000",
+        "spring.jpa.show-sql=false",
+        "logging.level.org.hibernate.SQL=WARN",
+        "logging.level.ru.aston.bankapi=WARN",
+        "bank.datasource.read-only.enabled=true",
+        "bank.pin.iterations=1000",
+        "bank.history.relay-interval=PT1H"
+})
+class DataSourceConfigTest {
+
+    @Autowired
+    private AccountService accountService;
+    @Autowired
+    private TransactionService transactionService;
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Test
+    void readOnlyTransactions_UseReadOnlyPool() {
+        var accNum = accountService.createAccount("Ivan", "1234").orElseThrow().getAccNum();
+        var other = accountService.createAccount("Petr", "1234").orElseThrow().getAccNum();
+        long primary = acquired("bank-primary");
+        long readOnly = acquired("bank-read-only");
+
+        accountService.deposit(accNum, BigDecimal.TEN);
+
+        assertTrue(acquired("bank-primary") > primary);
+        assertEquals(readOnly, acquired("bank-read-only"));
+
+        primary = acquired("bank-primary");
+        transactionService.getAllTransactionsByAccNum(other);
+        accountService.getAccountsPage(PageRequest.of(0, 10), true);
+
+        assertEquals(readOnly + 2, acquired("bank-read-only"));
+        assertEquals(primary, acquired("bank-primary"));
+
+        // История только что измененного счета читается с основной БД.
+        transactionService.getAllTransactionsByAccNum(accNum);
+
+        assertEquals(readOnly + 2, acquired("bank-read-only"));
+        assertTrue(acquired("bank-primary") > primary);
+    }
+
+    private long acquired(String pool) {
+        return meterRegistry.get("hikaricp.connections.acquire").tag("pool", pool).timer().count();
+    }
+}
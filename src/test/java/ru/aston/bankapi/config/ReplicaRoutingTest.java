@@ -0,0 +1,90 @@
+package ru.aston.bankapi.config;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.aston.bankapi.service.AccountService;
+import ru.aston.bankapi.service.TransactionService;
+import ru.aston.bankapi.service.history.HistoryRelay;
+
+import javax.sql.DataSource;
+import java.math.BigDecimal;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Основная БД и реплика - два независимых экземпляра H2. Реплика заполняется копией
+ * основной БД и дальше не обновляется, то есть отстает бесконечно.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:primarydb;LOCK_TIMEOUT=3000",
+        "bank.datasource.read-only.enabled=true",
+        "bank.datasource.read-only.hikari.jdbc-url=jdbc:h2:mem:replicadb;LOCK_TIMEOUT=3000",
+        "bank.datasource.read-only.read-your-writes-window=PT1S",
+        "bank.history.relay-interval=PT1H",
+        "bank.pin.iterations=1000",
+        "spring.jpa.show-sql=false",
+        "logging.level.org.hibernate.SQL=WARN",
+        "logging.level.ru.aston.bankapi=WARN"
+})
+class ReplicaRoutingTest {
+
+    private static final String PIN_CODE = "1234";
+
+    @Autowired
+    private AccountService accountService;
+    @Autowired
+    private TransactionService transactionService;
+    @Autowired
+    private HistoryRelay historyRelay;
+    @Autowired
+    @Qualifier("primaryDataSource")
+    private DataSource primaryDataSource;
+    @Autowired
+    @Qualifier("readOnlyDataSource")
+    private DataSource readOnlyDataSource;
+
+    @Test
+    void reads_GoToReplicaExceptRecentlyChangedAccounts() throws InterruptedException {
+        var from = accountService.createAccount("Ivan", PIN_CODE).orElseThrow().getAccNum();
+        var to = accountService.createAccount("Petr", PIN_CODE).orElseThrow().getAccNum();
+        var other = accountService.createAccount("Anna", PIN_CODE).orElseThrow().getAccNum();
+        accountService.deposit(from, new BigDecimal("100"));
+        historyRelay.drain();
+        replicate();
+        new JdbcTemplate(readOnlyDataSource).update("update accounts set amount = 777 where acc_num = ?", other);
+
+        assertAmount("777", other);
+
+        accountService.transfer(from, to, new BigDecimal("30"), PIN_CODE);
+        historyRelay.drain();
+
+        assertAmount("70", from);
+        assertEquals(2, transactionService.getAllTransactionsByAccNum(from).size());
+
+        Thread.sleep(1_500);
+
+        assertEquals(1, transactionService.getAllTransactionsByAccNum(from).size());
+
+        new JdbcTemplate(readOnlyDataSource).update("update accounts set amount = 888 where acc_num = ?", other);
+
+        assertAmount("888", other);
+    }
+
+    /**
+     * Переносит схему и данные основной БД в реплику.
+     */
+    private void replicate() {
+        var script = new JdbcTemplate(primaryDataSource).queryForList("SCRIPT", String.class);
+        var replica = new JdbcTemplate(readOnlyDataSource);
+        replica.execute("DROP ALL OBJECTS");
+        script.forEach(replica::execute);
+    }
+
+    private void assertAmount(String expected, String accNum) {
+        assertEquals(0, new BigDecimal(expected)
+                .compareTo(accountService.getAccountByAccNum(accNum).orElseThrow().getAmount()));
+    }
+}
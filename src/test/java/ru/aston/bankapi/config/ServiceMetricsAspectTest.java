@@ -0,0 +1,65 @@
+package ru.aston.bankapi.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.prometheus.PrometheusMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.actuate.observability.AutoConfigureObservability;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import ru.aston.bankapi.exceptionHandler.NotFoundException;
+import ru.aston.bankapi.service.AccountService;
+
+import java.math.BigDecimal;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@AutoConfigureObservability(tracing = false)
+@SpringBootTest(properties = {
+        "spring.jpa.show-sql=false",
+        "logging.level.org.hibernate.SQL=WARN",
+        "logging.level.ru.aston.bankapi=WARN"
+})
+@ActiveProfiles("metrics")
+class ServiceMetricsAspectTest {
+
+    @Autowired
+    private AccountService accountService;
+    @Autowired
+    private MeterRegistry meterRegistry;
+    @Autowired
+    private PrometheusMeterRegistry prometheusMeterRegistry;
+
+    @Test
+    void serviceCalls_AreTimedByOperationAndOutcome() {
+        var account = accountService.createAccount("Ivan", "1234").orElseThrow();
+        accountService.deposit(account.getAccNum(), BigDecimal.TEN);
+        assertThrows(NotFoundException.class, () -> accountService.deposit("missing", BigDecimal.TEN));
+
+        assertEquals(1, timer("deposit", "success").count());
+        assertEquals(1, timer("deposit", "NotFoundException").count());
+        assertTrue(timer("deposit", "success").takeSnapshot().percentileValues().length > 0);
+    }
+
+    @Test
+    void infrastructureMeters_AreExportedToPrometheus() {
+        accountService.getAllAccounts();
+
+        var scrape = prometheusMeterRegistry.scrape();
+
+        assertTrue(scrape.contains("bank_service_operation_seconds_bucket{"));
+        assertTrue(scrape.contains("hikaricp_connections_active"));
+        assertTrue(scrape.contains("hibernate_sessions_open_total"));
+    }
+
+    private Timer timer(String operation, String outcome) {
+        return meterRegistry.get(ServiceMetricsAspect.METRIC_NAME)
+                .tag("service", "AccountServiceImpl")
+                .tag("operation", operation)
+                .tag("outcome", outcome)
+                .timer();
+    }
+}
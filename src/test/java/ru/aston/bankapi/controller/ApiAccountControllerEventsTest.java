@@ -0,0 +1,90 @@
+package ru.aston.bankapi.controller;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import ru.aston.bankapi.model.Account;
+import ru.aston.bankapi.repository.AccountRepository;
+import ru.aston.bankapi.service.AccountService;
+
+import java.math.BigDecimal;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "spring.datasource.url=jdbc:h2:mem:eventsdb;LOCK_TIMEOUT=3000",
+        "spring.jpa.show-sql=false",
+        "logging.level.org.hibernate.SQL=WARN",
+        "logging.level.ru.aston.bankapi=WARN",
+        "bank.events.max-subscriptions=1"
+})
+class ApiAccountControllerEventsTest {
+
+    private static final String PIN_CODE = "1234";
+
+    @LocalServerPort
+    private int port;
+    @Autowired
+    private AccountService accountService;
+    @Autowired
+    private AccountRepository accountRepository;
+
+    private final HttpClient client = HttpClient.newHttpClient();
+
+    @Test
+    void subscribe_StreamsInitialBalanceThenCommittedOperationsWithinSubscriptionLimit() throws Exception {
+        var from = accountRepository.save(new Account(UUID.randomUUID().toString(), "Ivan", PIN_CODE, BigDecimal.TEN))
+                .getAccNum();
+        var to = accountRepository.save(new Account(UUID.randomUUID().toString(), "Petr", PIN_CODE, BigDecimal.ZERO))
+                .getAccNum();
+
+        assertEquals(404, client.send(events("missing"), HttpResponse.BodyHandlers.discarding()).statusCode());
+
+        var response = client.send(events(to), HttpResponse.BodyHandlers.ofLines());
+        assertEquals(200, response.statusCode());
+        var lines = response.body().iterator();
+
+        assertTimeoutPreemptively(Duration.ofSeconds(10), () -> {
+            assertTrue(nextData(lines, "balance").contains("\"amount\":0"));
+
+            assertEquals(503, client.send(events(from), HttpResponse.BodyHandlers.discarding()).statusCode());
+
+            accountService.transfer(from, to, new BigDecimal("3"), PIN_CODE);
+
+            var transaction = nextData(lines, "transaction");
+            assertTrue(transaction.contains("\"accNumFrom\":\"" + from + "\""));
+            assertTrue(transaction.contains("\"operation\":\"TRANSFER\""));
+            assertTrue(nextData(lines, "balance").contains("\"amount\":3"));
+        });
+        response.body().close();
+    }
+
+    private HttpRequest events(String accNum) {
+        return HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/api/v1/accounts/" + accNum + "/events"))
+                .timeout(Duration.ofSeconds(10))
+                .build();
+    }
+
+    private static String nextData(Iterator<String> lines, String event) {
+        var current = "";
+        while (lines.hasNext()) {
+            var line = lines.next();
+            if (line.startsWith("event:")) {
+                current = line.substring("event:".length());
+            } else if (line.startsWith("data:") && current.equals(event)) {
+                return line.substring("data:".length());
+            }
+        }
+        throw new AssertionError("Событие " + event + " не получено");
+    }
+}
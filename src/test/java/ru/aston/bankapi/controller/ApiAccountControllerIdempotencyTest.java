@@ -0,0 +1,138 @@
+package ru.aston.bankapi.controller;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.ResultActions;
+import ru.aston.bankapi.model.Account;
+import ru.aston.bankapi.repository.AccountRepository;
+import ru.aston.bankapi.repository.IdempotencyKeyRepository;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.clearInvocations;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.patch;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@AutoConfigureMockMvc
+@SpringBootTest(properties = {
+        "spring.jpa.show-sql=false",
+        "logging.level.org.hibernate.SQL=WARN",
+        "logging.level.ru.aston.bankapi=WARN"
+})
+class ApiAccountControllerIdempotencyTest {
+
+    private static final String PIN_CODE = "1234";
+
+    @Autowired
+    private MockMvc mockMvc;
+    @SpyBean
+    private AccountRepository accountRepository;
+    @Autowired
+    private IdempotencyKeyRepository idempotencyKeyRepository;
+
+    private Account from;
+    private Account to;
+
+    @BeforeEach
+    void setUp() {
+        from = accountRepository.save(new Account(UUID.randomUUID().toString(), "Ivan", PIN_CODE, new BigDecimal("100")));
+        to = accountRepository.save(new Account(UUID.randomUUID().toString(), "Petr", PIN_CODE, BigDecimal.ZERO));
+    }
+
+    @Test
+    void replayedTransfer_ReturnsOriginalResultWithoutTouchingAccounts() throws Exception {
+        var key = UUID.randomUUID().toString();
+        transfer(key).andExpect(status().isOk());
+        clearInvocations(accountRepository);
+
+        transfer(key)
+                .andExpect(status().isOk())
+                .andExpect(header().string(ApiAccountController.IDEMPOTENT_REPLAYED, "true"))
+                .andExpect(content().string("Перевод выполнен успешно"));
+
+        verifyNoInteractions(accountRepository);
+        assertAmount("70", from);
+        assertNotNull(idempotencyKeyRepository.findById(key).orElseThrow().getTransactionId());
+    }
+
+    @Test
+    void concurrentRetries_MoveMoneyOnce() throws Exception {
+        var key = UUID.randomUUID().toString();
+        var executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<MvcResult>> results = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                results.add(executor.submit((Callable<MvcResult>) () -> transfer(key).andReturn()));
+            }
+            for (var result : results) {
+                var statusCode = result.get().getResponse().getStatus();
+                assertTrue(statusCode == 200 || statusCode == 409, "статус " + statusCode);
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        assertAmount("70", from);
+        assertAmount("30", to);
+    }
+
+    @Test
+    void keyReusedForAnotherOperation_IsRejected() throws Exception {
+        var key = UUID.randomUUID().toString();
+        transfer(key).andExpect(status().isOk());
+
+        mockMvc.perform(patch("/api/v1/accounts/{accNum}/withdraw", from.getAccNum())
+                        .header(ApiAccountController.IDEMPOTENCY_KEY, key)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"amountOfOperation\": 30, \"pinCode\": \"" + PIN_CODE + "\"}"))
+                .andExpect(status().isUnprocessableEntity());
+
+        assertAmount("70", from);
+    }
+
+    @Test
+    void keyReusedWithAnotherAmount_IsRejected() throws Exception {
+        var key = UUID.randomUUID().toString();
+        transfer(key).andExpect(status().isOk());
+
+        transfer(key, "31").andExpect(status().isUnprocessableEntity());
+        transfer(key, "30.00").andExpect(status().isOk());
+
+        assertAmount("70", from);
+    }
+
+    private ResultActions transfer(String key) throws Exception {
+        return transfer(key, "30");
+    }
+
+    private ResultActions transfer(String key, String amount) throws Exception {
+        return mockMvc.perform(patch("/api/v1/accounts/{from}/transfer/{to}", from.getAccNum(), to.getAccNum())
+                .header(ApiAccountController.IDEMPOTENCY_KEY, key)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"amountOfOperation\": " + amount + ", \"pinCode\": \"" + PIN_CODE + "\"}"));
+    }
+
+    private void assertAmount(String expected, Account account) {
+        var amount = accountRepository.findById(account.getAccNum()).orElseThrow().getAmount();
+        assertEquals(0, new BigDecimal(expected).compareTo(amount), "баланс " + amount);
+    }
+}
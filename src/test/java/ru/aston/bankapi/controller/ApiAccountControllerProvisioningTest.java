@@ -0,0 +1,116 @@
+package ru.aston.bankapi.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.servlet.MockMvc;
+import ru.aston.bankapi.dto.ProvisioningResultDto;
+import ru.aston.bankapi.repository.AccountRepository;
+import ru.aston.bankapi.service.AccountService;
+import ru.aston.bankapi.service.pin.PinVerifier;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@AutoConfigureMockMvc
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:provisioningdb;LOCK_TIMEOUT=3000",
+        "spring.jpa.show-sql=false",
+        "logging.level.org.hibernate.SQL=WARN",
+        "logging.level.ru.aston.bankapi=ERROR",
+        "bank.pin.iterations=1000",
+        "bank.provisioning.batch-size=2"
+})
+class ApiAccountControllerProvisioningTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+    @Autowired
+    private ObjectMapper objectMapper;
+    @Autowired
+    private AccountRepository accountRepository;
+    @Autowired
+    private AccountService accountService;
+    @Autowired
+    private PinVerifier pinVerifier;
+
+    @Test
+    void provision_CreatesValidRowsAndReportsErrorsPerRow() throws Exception {
+        var hash = pinVerifier.hash("5678");
+        var body = """
+                {"name":"Ivan","pinCode":"1234"}
+                {"name":"","pinCode":"1234"}
+                {"name":"Petr","pinCode":"%s"}
+                {"name":"Anna","pinCode":"12"}
+                {"name":"Oleg","pinCode":"pbkdf2-sha256$1$AAAA$AAAA"}
+                {"name":"Olga","pinCode":"%s"}
+                """.formatted(hash, hash.replace("$1000$", "$2147483647$"));
+
+        var results = provision(body, "application/x-ndjson");
+
+        assertEquals(List.of(1L, 2L, 3L, 4L, 5L, 6L), results.stream().map(ProvisioningResultDto::getRow).toList());
+        assertNotNull(results.get(0).getAccNum());
+        assertNotNull(results.get(1).getError());
+        assertNotNull(results.get(2).getAccNum());
+        assertNotNull(results.get(3).getError());
+        assertNotNull(results.get(4).getError());
+        assertNotNull(results.get(5).getError());
+        assertTrue(results.get(0).getAccNum().compareTo(results.get(2).getAccNum()) < 0);
+
+        var ivan = results.get(0).getAccNum();
+        var petr = results.get(2).getAccNum();
+        assertEquals(0, BigDecimal.ZERO.compareTo(accountRepository.findById(ivan).orElseThrow().getAmount()));
+        accountService.deposit(ivan, BigDecimal.TEN);
+        accountService.transfer(ivan, petr, BigDecimal.ONE, "1234");
+        accountService.withdraw(petr, BigDecimal.ONE, "5678");
+    }
+
+    @Test
+    void provision_StopsAtMalformedJsonAndKeepsEarlierRows() throws Exception {
+        var body = """
+                [{"name":"Ivan","pinCode":"1234"},
+                 {"name":"Petr","pinCode":"1234"},
+                 {"name":"Anna","pinCode":"1234"},
+                 {"name":"Oleg","pinCode":}]
+                """;
+
+        var results = provision(body, "application/json");
+
+        assertEquals(4, results.size());
+        for (var result : results.subList(0, 3)) {
+            assertNull(result.getError());
+            assertTrue(accountRepository.existsById(result.getAccNum()));
+        }
+        assertEquals(4, results.get(3).getRow());
+        assertNotNull(results.get(3).getError());
+    }
+
+    private List<ProvisioningResultDto> provision(String body, String contentType) throws Exception {
+        var started = mockMvc.perform(post("/api/v1/accounts/bulk").contentType(contentType).content(body))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        var response = mockMvc.perform(asyncDispatch(started))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        return response.lines()
+                .map(line -> {
+                    try {
+                        return objectMapper.readValue(line, ProvisioningResultDto.class);
+                    } catch (Exception e) {
+                        throw new IllegalStateException(e);
+                    }
+                })
+                .toList();
+    }
+}
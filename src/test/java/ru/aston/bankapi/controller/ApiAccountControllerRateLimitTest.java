@@ -0,0 +1,130 @@
+package ru.aston.bankapi.controller;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.ResultActions;
+import ru.aston.bankapi.exceptionHandler.InvalidPinFormatException;
+import ru.aston.bankapi.model.Account;
+import ru.aston.bankapi.repository.AccountRepository;
+import ru.aston.bankapi.service.AccountService;
+
+import java.math.BigDecimal;
+import java.util.UUID;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.clearInvocations;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.patch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@AutoConfigureMockMvc
+@SpringBootTest(properties = {
+        "spring.jpa.show-sql=false",
+        "logging.level.org.hibernate.SQL=WARN",
+        "logging.level.ru.aston.bankapi=ERROR",
+        "bank.rate-limit.account-capacity=3",
+        "bank.rate-limit.account-refill-per-second=0.01",
+        "bank.rate-limit.max-pin-failures=2"
+})
+class ApiAccountControllerRateLimitTest {
+
+    private static final String PIN_CODE = "1234";
+
+    @Autowired
+    private MockMvc mockMvc;
+    @Autowired
+    private AccountRepository accountRepository;
+    @SpyBean
+    private AccountService accountService;
+
+    @Test
+    void deposit_OverAccountLimit_IsRejectedBeforeService() throws Exception {
+        var accNum = newAccount();
+        for (int i = 0; i < 3; i++) {
+            deposit(accNum).andExpect(status().isOk());
+        }
+        clearInvocations(accountService);
+
+        deposit(accNum)
+                .andExpect(status().isTooManyRequests())
+                .andExpect(header().string(HttpHeaders.RETRY_AFTER, "100"));
+
+        verify(accountService, never()).deposit(eq(accNum), any(), any());
+    }
+
+    @Test
+    void withdraw_AfterRepeatedWrongPin_LocksAccountOut() throws Exception {
+        var accNum = newAccount();
+        withdraw(accNum, "0000").andExpect(status().isBadRequest());
+        withdraw(accNum, "0000").andExpect(status().isBadRequest());
+        clearInvocations(accountService);
+
+        withdraw(accNum, PIN_CODE).andExpect(status().isTooManyRequests());
+
+        verify(accountService, never()).withdraw(eq(accNum), any(), anyString(), any());
+    }
+
+    @Test
+    void transferBatch_WithDifferentPinsOfOneAccount_IsRejected() throws Exception {
+        var from = newAccount();
+        var to = newAccount();
+        clearInvocations(accountService);
+
+        mockMvc.perform(post("/api/v1/accounts/transfers")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("""
+                                {"atomic": false, "transfers": [
+                                  {"fromAccNum": "%1$s", "toAccNum": "%2$s", "amount": 1, "pinCode": "0000"},
+                                  {"fromAccNum": "%1$s", "toAccNum": "%2$s", "amount": 1, "pinCode": "%3$s"}]}
+                                """.formatted(from, to, PIN_CODE)))
+                .andExpect(status().isBadRequest());
+
+        verify(accountService, never()).transferBatch(any(), anyBoolean());
+    }
+
+    @Test
+    void changePin_WithMalformedNewPin_IsNotCountedAsPinFailure() throws Exception {
+        var accNum = newAccount();
+        doThrow(new InvalidPinFormatException("Новый пин-код должен состоять из 4 символов"))
+                .when(accountService).changePin(eq(accNum), any(), any());
+
+        for (int i = 0; i < 2; i++) {
+            mockMvc.perform(patch("/api/v1/accounts/{accNum}/pin", accNum)
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content("{\"pinCode\": \"" + PIN_CODE + "\", \"newPinCode\": \"4321\"}"))
+                    .andExpect(status().isBadRequest());
+        }
+
+        withdraw(accNum, PIN_CODE).andExpect(status().isOk());
+    }
+
+    private String newAccount() {
+        return accountRepository.save(new Account(UUID.randomUUID().toString(), "Ivan", PIN_CODE, new BigDecimal("100")))
+                .getAccNum();
+    }
+
+    private ResultActions deposit(String accNum) throws Exception {
+        return mockMvc.perform(patch("/api/v1/accounts/{accNum}/deposit", accNum)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"amountOfOperation\": 1}"));
+    }
+
+    private ResultActions withdraw(String accNum, String pinCode) throws Exception {
+        return mockMvc.perform(patch("/api/v1/accounts/{accNum}/withdraw", accNum)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"amountOfOperation\": 1, \"pinCode\": \"" + pinCode + "\"}"));
+    }
+}
@@ -0,0 +1,40 @@
+package ru.aston.bankapi.model;
+
+import org.junit.jupiter.api.Test;
+import ru.aston.bankapi.exceptionHandler.InvalidDataException;
+
+import java.math.BigDecimal;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MoneyTest {
+
+    @Test
+    void of_ConvertsToMinorUnitsAndBack() {
+        var money = Money.of(new BigDecimal("12.3"));
+
+        assertEquals(1230, money.minorUnits());
+        assertEquals(new BigDecimal("12.30"), money.toBigDecimal());
+        assertEquals(Money.of(new BigDecimal("12.30")), money);
+        assertEquals(new Money(-5), Money.of(new BigDecimal("-0.05")));
+    }
+
+    @Test
+    void of_RejectsFractionOfMinorUnitAndOutOfRangeAmount() {
+        assertThrows(InvalidDataException.class, () -> Money.of(new BigDecimal("0.001")));
+        assertThrows(InvalidDataException.class, () -> Money.of(new BigDecimal("1e17")));
+        assertThrows(InvalidDataException.class, () -> Money.of(null));
+    }
+
+    @Test
+    void arithmetic_ChecksOverflow() {
+        var max = new Money(Long.MAX_VALUE);
+
+        assertEquals(new Money(Long.MAX_VALUE - 1), max.minus(new Money(1)));
+        assertThrows(InvalidDataException.class, () -> max.plus(new Money(1)));
+        assertThrows(InvalidDataException.class, () -> new Money(Long.MIN_VALUE).negate());
+        assertTrue(new Money(1).isLessThan(new Money(2)));
+    }
+}
@@ -0,0 +1,30 @@
+package ru.aston.bankapi.model;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TimeOrderedUuidTest {
+
+    @Test
+    void next_IsVersion7AndIncreasesAsString() {
+        var previous = TimeOrderedUuid.next();
+        for (int i = 0; i < 100_000; i++) {
+            var uuid = TimeOrderedUuid.next();
+
+            assertEquals(7, uuid.version());
+            assertEquals(2, uuid.variant());
+            assertTrue(uuid.toString().compareTo(previous.toString()) > 0);
+            previous = uuid;
+        }
+    }
+
+    @Test
+    void next_StartsWithCurrentTime() {
+        long before = System.currentTimeMillis();
+        var uuid = TimeOrderedUuid.next();
+
+        assertTrue((uuid.getMostSignificantBits() >>> 16) >= before);
+    }
+}
@@ -0,0 +1,111 @@
+package ru.aston.bankapi.repository;
+
+import jakarta.persistence.EntityManager;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.aston.bankapi.model.AccountHistoryEntry;
+import ru.aston.bankapi.model.Direction;
+import ru.aston.bankapi.model.Operation;
+import ru.aston.bankapi.model.Transaction;
+import ru.aston.bankapi.model.TransactionOutboxEntry;
+
+import javax.sql.DataSource;
+import java.math.BigDecimal;
+import java.time.LocalTime;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Планы запросов истории: SQL, который формирует Hibernate, перехватывается
+ * и выполняется через EXPLAIN с теми же параметрами.
+ */
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.session_factory.statement_inspector="
+        + "ru.aston.bankapi.repository.AccountHistoryRepositoryTest$SqlCapture")
+class AccountHistoryRepositoryTest {
+
+    private static final int LIMIT = 10;
+
+    @Autowired
+    private AccountHistoryRepository accountHistoryRepository;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private DataSource dataSource;
+
+    @BeforeEach
+    void setUp() {
+        long id = 1;
+        for (int account = 0; account < 20; account++) {
+            for (int i = 0; i < 10; i++) {
+                var transaction = new Transaction(id++, "A" + account, "A" + ((account + 1) % 20),
+                        LocalTime.of(9, i), BigDecimal.ONE, Operation.TRANSFER);
+                var entry = new TransactionOutboxEntry(transaction);
+                entityManager.persist(new AccountHistoryEntry(entry, Direction.OUTGOING));
+                entityManager.persist(new AccountHistoryEntry(entry, Direction.INCOMING));
+            }
+        }
+        entityManager.flush();
+        entityManager.clear();
+    }
+
+    @Test
+    void findByAccNumOrderByTransactionId_UsesAccountIndex() {
+        var history = accountHistoryRepository.findByAccNumOrderByTransactionId("A3", PageRequest.ofSize(LIMIT));
+        var plan = explainLastQuery("A3", LIMIT);
+
+        assertEquals(LIMIT, history.size());
+        assertTrue(plan.contains("UK_ACCOUNT_HISTORY_ACC_NUM_TRANSACTION_ID"), plan);
+        assertFalse(plan.contains("TABLESCAN"), plan);
+    }
+
+    @Test
+    void findByDirectionOrderByTransactionId_UsesDirectionIndex() {
+        var history = accountHistoryRepository.findByDirectionOrderByTransactionId(Direction.OUTGOING,
+                PageRequest.ofSize(LIMIT));
+        var plan = explainLastQuery(Direction.OUTGOING.name(), LIMIT);
+
+        assertEquals(LIMIT, history.size());
+        assertTrue(plan.contains("IDX_ACCOUNT_HISTORY_DIRECTION_TRANSACTION_ID"), plan);
+        assertFalse(plan.contains("TABLESCAN"), plan);
+    }
+
+    @Test
+    void findPage_UsesDirectionIndex() {
+        var page = accountHistoryRepository.findPage(5, null, null, null, null, PageRequest.ofSize(LIMIT));
+        var plan = explainLastQuery(5L, null, null, null, null, null, null, null, null, LIMIT);
+
+        assertEquals(LIMIT, page.size());
+        assertTrue(plan.contains("IDX_ACCOUNT_HISTORY_DIRECTION_TRANSACTION_ID"), plan);
+        assertFalse(plan.contains("TABLESCAN"), plan);
+    }
+
+    private String explainLastQuery(Object... parameters) {
+        var sql = SqlCapture.STATEMENTS.get(SqlCapture.STATEMENTS.size() - 1);
+        SqlCapture.STATEMENTS.clear();
+        return new JdbcTemplate(dataSource).queryForObject("explain " + sql, String.class, parameters).toUpperCase();
+    }
+
+    public static class SqlCapture implements StatementInspector {
+
+        static final List<String> STATEMENTS = new CopyOnWriteArrayList<>();
+
+        @Override
+        public String inspect(String sql) {
+            if (sql.startsWith("select")) {
+                STATEMENTS.add(sql);
+            }
+            return sql;
+        }
+    }
+}
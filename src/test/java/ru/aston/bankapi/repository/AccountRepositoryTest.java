@@ -0,0 +1,51 @@
+package ru.aston.bankapi.repository;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import ru.aston.bankapi.dto.AccountSummaryDto;
+import ru.aston.bankapi.model.Account;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@DataJpaTest
+class AccountRepositoryTest {
+
+    @Autowired
+    private AccountRepository accountRepository;
+
+    @BeforeEach
+    void setUp() {
+        accountRepository.saveAll(List.of(
+                new Account("1", "Ivan", "1111", BigDecimal.TEN),
+                new Account("2", "Petr", "2222", BigDecimal.ONE),
+                new Account("3", "Anna", "3333", BigDecimal.ZERO)));
+    }
+
+    @Test
+    void findSummaries_ReturnsSortedProjectionWithTotal() {
+        var page = accountRepository.findSummaries(PageRequest.of(0, 2, Sort.by("amount")));
+
+        assertEquals(List.of(new AccountSummaryDto("3", "Anna", new BigDecimal("0.00")),
+                new AccountSummaryDto("2", "Petr", new BigDecimal("1.00"))), page.getContent());
+        assertEquals(3, page.getTotalElements());
+    }
+
+    @Test
+    void findSummarySlice_DetectsNextPageWithoutCount() {
+        var first = accountRepository.findSummarySlice(PageRequest.of(0, 2, Sort.by("accNum")));
+        var last = accountRepository.findSummarySlice(PageRequest.of(1, 2, Sort.by("accNum")));
+
+        assertTrue(first.hasNext());
+        assertFalse(last.hasNext());
+        assertEquals(List.of(new AccountSummaryDto("3", "Anna", new BigDecimal("0.00"))), last.getContent());
+    }
+}
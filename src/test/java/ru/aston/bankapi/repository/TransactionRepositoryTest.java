@@ -0,0 +1,56 @@
+package ru.aston.bankapi.repository;
+
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import ru.aston.bankapi.model.Operation;
+import ru.aston.bankapi.model.Transaction;
+
+import java.math.BigDecimal;
+import java.time.LocalTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@DataJpaTest
+class TransactionRepositoryTest {
+
+    @Autowired
+    private TransactionRepository transactionRepository;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    private List<Transaction> saved;
+
+    @BeforeEach
+    void setUp() {
+        saved = transactionRepository.saveAll(List.of(
+                new Transaction("A", "A", LocalTime.of(9, 0), BigDecimal.TEN, Operation.DEPOSIT),
+                new Transaction("A", "B", LocalTime.of(10, 0), BigDecimal.ONE, Operation.TRANSFER),
+                new Transaction("B", "B", LocalTime.of(11, 0), BigDecimal.ONE, Operation.WITHDRAW),
+                new Transaction("A", "A", LocalTime.of(12, 0), BigDecimal.ONE, Operation.WITHDRAW)));
+    }
+
+    @Test
+    void findLastIdByAccNum_ReturnsLastOutgoingOrIncomingId() {
+        assertEquals(saved.get(2).getId(), transactionRepository.findLastIdByAccNum("B"));
+        assertEquals(saved.get(3).getId(), transactionRepository.findLastIdByAccNum("A"));
+        assertEquals(0, transactionRepository.findLastIdByAccNum("C"));
+    }
+
+    @Test
+    void findLastIdByAccNum_UsesAccountIndexesInsteadOfTableScan() {
+        var plan = ((String) entityManager.createNativeQuery("explain " + TransactionRepository.LAST_ID_QUERY)
+                .setParameter("accNum", "A")
+                .getSingleResult()).toUpperCase();
+
+        assertTrue(plan.contains("IDX_TRANSACTIONS_ACC_NUM_FROM_ID"), plan);
+        assertTrue(plan.contains("IDX_TRANSACTIONS_ACC_NUM_TO_ID"), plan);
+        assertFalse(plan.contains("TABLESCAN"), plan);
+    }
+}
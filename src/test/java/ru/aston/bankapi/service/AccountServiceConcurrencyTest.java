@@ -0,0 +1,138 @@
+package ru.aston.bankapi.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.test.context.TestPropertySource;
+import ru.aston.bankapi.exceptionHandler.NotEnoughFundsException;
+import ru.aston.bankapi.repository.AccountRepository;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest(properties = {
+        "spring.jpa.show-sql=false",
+        "logging.level.org.hibernate.SQL=WARN",
+        "logging.level.ru.aston.bankapi=WARN"
+})
+class AccountServiceConcurrencyTest {
+
+    private static final int TRANSFERS = 10_000;
+    private static final int THREADS = 16;
+    private static final String PIN_CODE = "1234";
+    private static final BigDecimal INITIAL_AMOUNT = new BigDecimal("1000");
+
+    @Nested
+    @TestPropertySource(properties = "bank.concurrency.mode=pessimistic")
+    class Pessimistic extends TransferScenario {
+
+        @Test
+        void concurrentTransfers_ConserveBalances() throws InterruptedException {
+            var exhausted = runTransfers(20);
+
+            assertEquals(0, exhausted);
+        }
+    }
+
+    @Nested
+    @TestPropertySource(properties = {
+            "bank.concurrency.mode=optimistic",
+            "bank.concurrency.retry.max-attempts=10",
+            "bank.concurrency.retry.delay=1",
+            "bank.concurrency.retry.max-delay=20"
+    })
+    class Optimistic extends TransferScenario {
+
+        @Test
+        void concurrentTransfers_ConserveBalances() throws InterruptedException {
+            var exhausted = runTransfers(100);
+
+            assertTrue(exhausted < TRANSFERS / 100, "Исчерпано повторов: " + exhausted);
+            assertTrue(meterRegistry.get("bank.concurrency.conflicts").tag("mode", "optimistic").counter().count() > 0);
+        }
+    }
+
+    abstract static class TransferScenario {
+
+        @Autowired
+        AccountService accountService;
+
+        @Autowired
+        AccountRepository accountRepository;
+
+        @Autowired
+        MeterRegistry meterRegistry;
+
+        int runTransfers(int accounts) throws InterruptedException {
+            List<String> accNums = new ArrayList<>();
+            for (int i = 0; i < accounts; i++) {
+                var account = accountService.createAccount("Stress " + i, PIN_CODE).orElseThrow();
+                accountService.deposit(account.getAccNum(), INITIAL_AMOUNT);
+                accNums.add(account.getAccNum());
+            }
+
+            var expected = new ConcurrentHashMap<String, BigDecimal>();
+            accNums.forEach(accNum -> expected.put(accNum, INITIAL_AMOUNT));
+
+            var completed = new AtomicInteger();
+            var rejected = new AtomicInteger();
+            var exhausted = new AtomicInteger();
+            var failures = new ConcurrentHashMap<String, Throwable>();
+            var done = new CountDownLatch(TRANSFERS);
+            ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+
+            for (int i = 0; i < TRANSFERS; i++) {
+                executor.execute(() -> {
+                    var random = ThreadLocalRandom.current();
+                    var from = accNums.get(random.nextInt(accounts));
+                    var to = accNums.get(random.nextInt(accounts));
+                    var amount = BigDecimal.valueOf(random.nextInt(1, 50));
+                    try {
+                        accountService.transfer(from, to, amount, PIN_CODE);
+                        expected.merge(from, amount.negate(), BigDecimal::add);
+                        expected.merge(to, amount, BigDecimal::add);
+                        completed.incrementAndGet();
+                    } catch (NotEnoughFundsException e) {
+                        rejected.incrementAndGet();
+                    } catch (ConcurrencyFailureException e) {
+                        exhausted.incrementAndGet();
+                    } catch (Throwable e) {
+                        failures.put(e.getClass().getName(), e);
+                    } finally {
+                        done.countDown();
+                    }
+                });
+            }
+
+            assertTrue(done.await(5, TimeUnit.MINUTES));
+            executor.shutdown();
+
+            assertTrue(failures.isEmpty(), () -> "Неожиданные ошибки: " + failures);
+            assertEquals(TRANSFERS, completed.get() + rejected.get() + exhausted.get());
+
+            var total = BigDecimal.ZERO;
+            for (var accNum : accNums) {
+                var amount = accountRepository.findById(accNum).orElseThrow().getAmount();
+                assertEquals(0, expected.get(accNum).compareTo(amount), accNum);
+                total = total.add(amount);
+            }
+            assertEquals(0, INITIAL_AMOUNT.multiply(BigDecimal.valueOf(accounts)).compareTo(total));
+
+            return exhausted.get();
+        }
+    }
+}
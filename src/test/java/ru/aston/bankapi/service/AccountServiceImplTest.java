@@ -1,29 +1,54 @@
 package ru.aston.bankapi.service;
 
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.Mockito;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.data.domain.Sort;
+import ru.aston.bankapi.config.AccountCacheProperties;
+import ru.aston.bankapi.config.ConcurrencyProperties;
+import ru.aston.bankapi.config.LockingMode;
+import ru.aston.bankapi.config.PinProperties;
+import ru.aston.bankapi.config.ReplicaLagGuard;
+import ru.aston.bankapi.dto.AccountSummaryDto;
+import ru.aston.bankapi.dto.TransferDto;
+import ru.aston.bankapi.dto.TransferResultDto;
+import ru.aston.bankapi.exceptionHandler.DuplicateRequestException;
 import ru.aston.bankapi.exceptionHandler.InvalidDataException;
 import ru.aston.bankapi.exceptionHandler.NotEnoughFundsException;
 import ru.aston.bankapi.exceptionHandler.NotFoundException;
 import ru.aston.bankapi.model.Account;
+import ru.aston.bankapi.model.IdempotencyKey;
 import ru.aston.bankapi.model.Operation;
 import ru.aston.bankapi.model.Transaction;
 import ru.aston.bankapi.repository.AccountRepository;
-import ru.aston.bankapi.repository.TransactionRepository;
+import ru.aston.bankapi.service.cache.AccountCache;
+import ru.aston.bankapi.service.events.BalanceEventHub;
+import ru.aston.bankapi.service.idempotency.IdempotencyStore;
+import ru.aston.bankapi.service.pin.PinVerifier;
 
 import java.math.BigDecimal;
 import java.time.LocalTime;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
 
@@ -31,9 +56,21 @@ import static org.mockito.Mockito.*;
 class AccountServiceImplTest {
 
     @Mock
-    private TransactionRepository transactionRepository;
+    private TransactionService transactionService;
     @Mock
     private AccountRepository accountRepository;
+    @Spy
+    private ConcurrencyProperties concurrencyProperties = new ConcurrencyProperties();
+    @Mock
+    private IdempotencyStore idempotencyStore;
+    @Mock
+    private BalanceEventHub balanceEventHub;
+    @Mock
+    private ReplicaLagGuard replicaLagGuard;
+    @Spy
+    private AccountCache accountCache = new AccountCache(new AccountCacheProperties(), new SimpleMeterRegistry());
+    @Spy
+    private PinVerifier pinVerifier = new PinVerifier(fastPinProperties(), new SimpleMeterRegistry());
 
     @InjectMocks
     private AccountServiceImpl accountService;
@@ -50,10 +87,41 @@ class AccountServiceImplTest {
 
         assertTrue(createdAccount.isPresent());
         assertEquals(createdAccount.get().getName(), name);
-        assertEquals(createdAccount.get().getPinCode(), pinCode);
+        assertNotEquals(pinCode, createdAccount.get().getPinCode());
+        assertTrue(pinVerifier.matches(createdAccount.get().getAccNum(), createdAccount.get().getPinCode(), pinCode));
 
     }
 
+    @Test
+    public void changePin_WithValidPin_StoresNewHash() {
+        var accNum = "4587fcc0-f406-4f45-9c67-30c7fa02e30f";
+        var account = new Account(accNum, "Ivan Ivanovich", pinVerifier.hash("3210"), BigDecimal.TEN);
+        when(accountRepository.findByIdForUpdate(accNum)).thenReturn(Optional.of(account));
+        stubPinCodes(account);
+        assertTrue(pinVerifier.matches(accNum, account.getPinCode(), "3210"));
+
+        accountService.changePin(accNum, "3210", "7777");
+
+        verify(accountRepository).save(account);
+        verify(pinVerifier).invalidate(accNum);
+        assertTrue(pinVerifier.matches(accNum, account.getPinCode(), "7777"));
+        assertFalse(pinVerifier.matches(accNum, account.getPinCode(), "3210"));
+    }
+
+    @Test
+    public void changePin_WithWrongPin_ThrowsInvalidDataException() {
+        var accNum = "4587fcc0-f406-4f45-9c67-30c7fa02e30f";
+        var stored = pinVerifier.hash("3210");
+        var account = new Account(accNum, "Ivan Ivanovich", stored, BigDecimal.TEN);
+        when(accountRepository.findByIdForUpdate(accNum)).thenReturn(Optional.of(account));
+        stubPinCodes(account);
+
+        assertThrows(InvalidDataException.class, () -> accountService.changePin(accNum, "0000", "7777"));
+        assertThrows(InvalidDataException.class, () -> accountService.changePin(accNum, "3210", "77"));
+        assertEquals(stored, account.getPinCode());
+        verify(accountRepository, never()).save(any(Account.class));
+    }
+
     @Test
     public void createAccount_WithInvalidValues_throwsInvalidPinCodeException() {
         assertThrows(InvalidDataException.class, () -> accountService.createAccount(null, "555"));
@@ -67,13 +135,22 @@ class AccountServiceImplTest {
 
         var list = Arrays.asList(account, account1);
 
-        when(accountRepository.findAll()).thenReturn(list);
+        when(accountRepository.findAllBy(any())).thenReturn(list);
 
         var result = accountService.getAllAccounts();
 
         assertEquals(list, result);
     }
 
+    @Test
+    void getAllAccounts_OverLimit_ThrowsInvalidDataException() {
+        var accounts = Collections.nCopies(AccountServiceImpl.MAX_ALL_ACCOUNTS + 1, new Account("Nikolay", "4321"));
+        when(accountRepository.findAllBy(PageRequest.of(0, AccountServiceImpl.MAX_ALL_ACCOUNTS + 1, Sort.by("accNum"))))
+                .thenReturn(accounts);
+
+        assertThrows(InvalidDataException.class, () -> accountService.getAllAccounts());
+    }
+
     @Test
     void getAccountByAccNum_WithValidAccNum_ReturnsAccount() {
         var accNum = "6ce5e8d1-61af-4b92-9fa8-b2a2466c9bc4";
@@ -87,6 +164,59 @@ class AccountServiceImplTest {
         assertEquals(result.get(), account);
     }
 
+    @Test
+    void getAccountByAccNum_SecondCall_IsServedFromCache() {
+        var accNum = "6ce5e8d1-61af-4b92-9fa8-b2a2466c9bc4";
+        when(accountRepository.findById(accNum)).thenReturn(Optional.of(new Account(accNum, "Petr", "1234", BigDecimal.TEN)));
+
+        accountService.getAccountByAccNum(accNum);
+        var result = accountService.getAccountByAccNum(accNum);
+
+        assertEquals(BigDecimal.TEN, result.get().getAmount());
+        verify(accountRepository, times(1)).findById(accNum);
+    }
+
+    @Test
+    void deposit_RecordsWriteForReplicaGuardBeforeEvictingCache() {
+        var accNum = "4587fcc0-f406-4f45-9c67-30c7fa02e30f";
+        when(accountRepository.findByIdForUpdate(accNum))
+                .thenReturn(Optional.of(new Account(accNum, "Viktor Larionov", "3333", BigDecimal.TEN)));
+
+        accountService.deposit(accNum, BigDecimal.ONE);
+
+        var inOrder = inOrder(replicaLagGuard, accountCache);
+        inOrder.verify(replicaLagGuard).recordWritesAfterCommit(accNum);
+        inOrder.verify(accountCache).evictAfterCommit(accNum);
+    }
+
+    @Test
+    void getAccountByAccNum_FromReplica_IsNotCached() {
+        var accNum = "6ce5e8d1-61af-4b92-9fa8-b2a2466c9bc4";
+        when(replicaLagGuard.isReplicaRead()).thenReturn(true);
+        when(accountRepository.findById(accNum)).thenReturn(Optional.of(new Account(accNum, "Petr", "1234", BigDecimal.TEN)));
+
+        accountService.getAccountByAccNum(accNum);
+        accountService.getAccountByAccNum(accNum);
+
+        verify(accountRepository, times(2)).findById(accNum);
+    }
+
+    @Test
+    void deposit_EvictsCachedAccount() {
+        var accNum = "4587fcc0-f406-4f45-9c67-30c7fa02e30f";
+        var account = new Account(accNum, "Viktor Larionov", "3333", BigDecimal.TEN);
+        when(accountRepository.findById(accNum)).thenReturn(Optional.of(account));
+        when(accountRepository.findByIdForUpdate(accNum)).thenReturn(Optional.of(account));
+
+        accountService.getAccountByAccNum(accNum);
+        accountService.deposit(accNum, BigDecimal.ONE);
+        var result = accountService.getAccountByAccNum(accNum);
+
+        assertEquals(new BigDecimal("11"), result.get().getAmount());
+        verify(accountCache).evictAfterCommit(accNum);
+        verify(accountRepository, times(2)).findById(accNum);
+    }
+
     @Test
     public void deposit_WithValidAccNum_DepositsAmountAndSavesTransaction() {
         var accNum = "4587fcc0-f406-4f45-9c67-30c7fa02e30f";
@@ -94,14 +224,14 @@ class AccountServiceImplTest {
         var existingAccount = new Account(accNum, "Viktor Larionov", "3333", new BigDecimal("230.00"));
         var transaction = new Transaction(accNum, accNum, LocalTime.now(), amountToDeposit, Operation.DEPOSIT);
 
-        when(accountRepository.findById(accNum)).thenReturn(Optional.of(existingAccount));
-        when(transactionRepository.save(any())).thenReturn(transaction);
+        when(accountRepository.findByIdForUpdate(accNum)).thenReturn(Optional.of(existingAccount));
+        when(transactionService.save(any())).thenReturn(transaction);
         // act
         accountService.deposit(accNum, amountToDeposit);
 
         // assert
         verify(accountRepository).save(existingAccount);
-        verify(transactionRepository, times(1)).save(any(Transaction.class));
+        verify(transactionService, times(1)).save(any(Transaction.class));
         assertEquals(new BigDecimal("255.00"), existingAccount.getAmount());
     }
 
@@ -109,11 +239,11 @@ class AccountServiceImplTest {
     void deposit_ThrowsNotFoundException_WhenAccountNotFound() {
         var accNum = "4587fcc0-f406-4f45-9c67-30c7fa02e30f";
 
-        when(accountRepository.findById(accNum)).thenReturn(Optional.empty());
+        when(accountRepository.findByIdForUpdate(accNum)).thenReturn(Optional.empty());
 
         assertThrows(NotFoundException.class, () -> accountService.deposit(accNum, BigDecimal.TEN));
 
-        verify(accountRepository, times(1)).findById(accNum);
+        verify(accountRepository, times(1)).findByIdForUpdate(accNum);
     }
 
     @Test
@@ -122,7 +252,7 @@ class AccountServiceImplTest {
         var existingAccount = new Account(accNum, "Ivan Ivanovich", "3210", BigDecimal.TEN);
 
 
-        when(accountRepository.findById(accNum)).thenReturn(Optional.of(existingAccount));
+        when(accountRepository.findByIdForUpdate(accNum)).thenReturn(Optional.of(existingAccount));
 
         BigDecimal amount = new BigDecimal(500);
         accountService.deposit(accNum, amount);
@@ -138,12 +268,12 @@ class AccountServiceImplTest {
         var accNum = "4587fcc0-f406-4f45-9c67-30c7fa02e30f";
         var existingAccount = new Account(accNum, "Ivan Ivanovich", "3535", BigDecimal.TEN);
 
-        when(accountRepository.findById(accNum)).thenReturn(Optional.of(existingAccount));
+        when(accountRepository.findByIdForUpdate(accNum)).thenReturn(Optional.of(existingAccount));
 
         var amount = new BigDecimal(500);
         accountService.deposit(accNum, amount);
 
-        verify(transactionRepository, times(1)).save(any(Transaction.class));
+        verify(transactionService, times(1)).save(any(Transaction.class));
     }
 
     @Test
@@ -153,8 +283,9 @@ class AccountServiceImplTest {
         var accNum = "4587fcc0-f406-4f45-9c67-30c7fa02e555";
         var toAccount = new Account(accNum, "Ivan Ivanovich", "4321", BigDecimal.ZERO);
 
-        when(accountRepository.findById(fromAccNum)).thenReturn(Optional.of(fromAccount));
-        when(accountRepository.findById(accNum)).thenReturn(Optional.of(toAccount));
+        when(accountRepository.findByIdForUpdate(fromAccNum)).thenReturn(Optional.of(fromAccount));
+        when(accountRepository.findByIdForUpdate(accNum)).thenReturn(Optional.of(toAccount));
+        stubPinCodes(fromAccount);
 
         accountService.transfer(fromAccNum, accNum, BigDecimal.TEN, "3210");
 
@@ -169,13 +300,51 @@ class AccountServiceImplTest {
         var toAccNum = "4587fcc0-f406-4f45-9c67-30c7fa02e4ee";
         var toAccount = new Account(toAccNum, "Ivan Ivanovich", "4321", BigDecimal.ZERO);
 
+        when(accountRepository.findByIdForUpdate(fromAccNum)).thenReturn(Optional.of(fromAccount));
+        when(accountRepository.findByIdForUpdate(toAccNum)).thenReturn(Optional.of(toAccount));
+        stubPinCodes(fromAccount);
+
+        accountService.transfer(fromAccNum, toAccNum, BigDecimal.TEN, "3210");
+
+        verify(transactionService, times(1)).save(any(Transaction.class));
+
+    }
+
+    @Test
+    void transfer_LocksAccountsInAccNumOrder() {
+        var lowerAccNum = "1587fcc0-f406-4f45-9c67-30c7fa02e30f";
+        var higherAccNum = "9587fcc0-f406-4f45-9c67-30c7fa02e30f";
+        var lowerAccount = new Account(lowerAccNum, "Ivan Ivanovich", "3210", BigDecimal.TEN);
+        var higherAccount = new Account(higherAccNum, "Petr Petrovich", "4321", BigDecimal.TEN);
+
+        when(accountRepository.findByIdForUpdate(lowerAccNum)).thenReturn(Optional.of(lowerAccount));
+        when(accountRepository.findByIdForUpdate(higherAccNum)).thenReturn(Optional.of(higherAccount));
+        stubPinCodes(higherAccount);
+
+        accountService.transfer(higherAccNum, lowerAccNum, BigDecimal.ONE, "4321");
+
+        var inOrder = inOrder(accountRepository);
+        inOrder.verify(accountRepository).findByIdForUpdate(lowerAccNum);
+        inOrder.verify(accountRepository).findByIdForUpdate(higherAccNum);
+    }
+
+    @Test
+    void transfer_InOptimisticMode_ReadsAccountsWithoutRowLocks() {
+        var fromAccNum = "4587fcc0-f406-4f45-9c67-30c7fa02e30f";
+        var fromAccount = new Account(fromAccNum, "Ivan Ivanovich", "3210", BigDecimal.TEN);
+        var toAccNum = "4587fcc0-f406-4f45-9c67-30c7fa02e4ee";
+        var toAccount = new Account(toAccNum, "Ivan Ivanovich", "4321", BigDecimal.ZERO);
+        concurrencyProperties.setMode(LockingMode.OPTIMISTIC);
+
         when(accountRepository.findById(fromAccNum)).thenReturn(Optional.of(fromAccount));
         when(accountRepository.findById(toAccNum)).thenReturn(Optional.of(toAccount));
+        stubPinCodes(fromAccount);
 
         accountService.transfer(fromAccNum, toAccNum, BigDecimal.TEN, "3210");
 
-        verify(transactionRepository, times(1)).save(any(Transaction.class));
-
+        verify(accountRepository, never()).findByIdForUpdate(any());
+        assertEquals(BigDecimal.ZERO, fromAccount.getAmount());
+        assertEquals(BigDecimal.TEN, toAccount.getAmount());
     }
 
     @Test()
@@ -185,8 +354,9 @@ class AccountServiceImplTest {
         var toAccNum = "4587fcc0-f406-4f45-9c67-30c7fa02e4ee";
         var toAccount = new Account(toAccNum, "Ivan Ivanovich", "4321", BigDecimal.ZERO);
 
-        when(accountRepository.findById(fromAccNum)).thenReturn(Optional.of(fromAccount));
-        when(accountRepository.findById(toAccNum)).thenReturn(Optional.of(toAccount));
+        when(accountRepository.findByIdForUpdate(fromAccNum)).thenReturn(Optional.of(fromAccount));
+        when(accountRepository.findByIdForUpdate(toAccNum)).thenReturn(Optional.of(toAccount));
+        stubPinCodes(fromAccount);
 
         assertThrows(NotEnoughFundsException.class, () -> accountService.transfer(fromAccNum, toAccNum, BigDecimal.valueOf(20), "3210"));
     }
@@ -198,19 +368,89 @@ class AccountServiceImplTest {
         var fromAccount = new Account(fromAccNum, "Ivan Ivanovich", "3210", BigDecimal.TEN);
         String toAccNum = "4587fcc0-f406-4f45-9c67-30c7fa02e4ee";
 
-        when(accountRepository.findById(fromAccNum)).thenReturn(Optional.of(fromAccount));
-        when(accountRepository.findById(toAccNum)).thenReturn(Optional.empty());
+        when(accountRepository.findByIdForUpdate(fromAccNum)).thenReturn(Optional.of(fromAccount));
+        when(accountRepository.findByIdForUpdate(toAccNum)).thenReturn(Optional.empty());
+        stubPinCodes(fromAccount);
 
         assertThrows(NotFoundException.class, () ->
                 accountService.transfer(fromAccNum, toAccNum, BigDecimal.TEN, "3210"));
     }
 
+    @Test
+    void transferBatch_BestEffort_AppliesValidTransfersAndReportsFailures() {
+        var first = new Account("1587fcc0-f406-4f45-9c67-30c7fa02e30f", "Ivan Ivanovich", "1111", BigDecimal.TEN);
+        var second = new Account("2587fcc0-f406-4f45-9c67-30c7fa02e30f", "Petr Petrovich", "2222", BigDecimal.ZERO);
+        var transfers = List.of(
+                new TransferDto(first.getAccNum(), second.getAccNum(), new BigDecimal("6"), "1111"),
+                new TransferDto(first.getAccNum(), second.getAccNum(), new BigDecimal("6"), "1111"),
+                new TransferDto(second.getAccNum(), first.getAccNum(), new BigDecimal("1"), "0000"),
+                new TransferDto(second.getAccNum(), "missing", new BigDecimal("1"), "2222"));
+
+        when(accountRepository.findAllByIdForUpdate(any())).thenReturn(List.of(first, second));
+        stubPinCodes(first, second);
+
+        var results = accountService.transferBatch(transfers, false);
+
+        assertEquals(List.of(TransferResultDto.Status.SUCCESS, TransferResultDto.Status.NOT_ENOUGH_FUNDS,
+                        TransferResultDto.Status.INVALID_PIN, TransferResultDto.Status.NOT_FOUND),
+                results.stream().map(TransferResultDto::getStatus).toList());
+        assertEquals(new BigDecimal("4"), first.getAmount());
+        assertEquals(new BigDecimal("6"), second.getAmount());
+        verify(accountRepository).saveAll(List.of(first, second));
+        verify(transactionService).saveAll(argThat(list -> list.size() == 1));
+    }
+
+    @Test
+    void transferBatch_Atomic_WritesNothingWhenAnyTransferFails() {
+        var first = new Account("1587fcc0-f406-4f45-9c67-30c7fa02e30f", "Ivan Ivanovich", "1111", BigDecimal.TEN);
+        var second = new Account("2587fcc0-f406-4f45-9c67-30c7fa02e30f", "Petr Petrovich", "2222", BigDecimal.ZERO);
+        var transfers = List.of(
+                new TransferDto(first.getAccNum(), second.getAccNum(), new BigDecimal("6"), "1111"),
+                new TransferDto(second.getAccNum(), first.getAccNum(), new BigDecimal("100"), "2222"),
+                new TransferDto(second.getAccNum(), first.getAccNum(), new BigDecimal("1"), "2222"));
+
+        when(accountRepository.findAllByIdForUpdate(any())).thenReturn(List.of(first, second));
+        stubPinCodes(first, second);
+
+        var results = accountService.transferBatch(transfers, true);
+
+        assertEquals(List.of(TransferResultDto.Status.ROLLED_BACK, TransferResultDto.Status.NOT_ENOUGH_FUNDS,
+                        TransferResultDto.Status.SKIPPED),
+                results.stream().map(TransferResultDto::getStatus).toList());
+        assertEquals(BigDecimal.TEN, first.getAmount());
+        assertEquals(BigDecimal.ZERO, second.getAmount());
+        verify(accountRepository, never()).saveAll(any());
+        verify(transactionService, never()).saveAll(any());
+    }
+
+    @Test
+    void transferBatch_WithEmptyBatch_ThrowsInvalidDataException() {
+        assertThrows(InvalidDataException.class, () -> accountService.transferBatch(List.of(), false));
+    }
+
+    @Test
+    void transferBatch_WithIncompleteOrNonPositiveTransfer_ThrowsInvalidDataException() {
+        var invalid = Arrays.asList(
+                Arrays.asList((TransferDto) null),
+                List.of(new TransferDto(null, "2", BigDecimal.ONE, "1111")),
+                List.of(new TransferDto("1", null, BigDecimal.ONE, "1111")),
+                List.of(new TransferDto("1", "2", null, "1111")),
+                List.of(new TransferDto("1", "2", BigDecimal.ZERO, "1111")),
+                List.of(new TransferDto("1", "2", new BigDecimal("-5"), "1111")));
+
+        for (var transfers : invalid) {
+            assertThrows(InvalidDataException.class, () -> accountService.transferBatch(transfers, false));
+        }
+        verifyNoInteractions(accountRepository);
+    }
+
     @Test
     public void testWithdrawSuccess() {
         var fromAccNum = "4587fcc0-f406-4f45-9c67-30c7fa02e30f";
         var fromAccount = new Account(fromAccNum, "Ivan Ivanovich", "3210", BigDecimal.TEN);
 
-        when(accountRepository.findById(fromAccNum)).thenReturn(Optional.of(fromAccount));
+        when(accountRepository.findByIdForUpdate(fromAccNum)).thenReturn(Optional.of(fromAccount));
+        stubPinCodes(fromAccount);
 
         accountService.withdraw(fromAccNum, BigDecimal.TEN, fromAccount.getPinCode());
 
@@ -233,7 +473,8 @@ class AccountServiceImplTest {
         var fromAccNum = "4587fcc0-f406-4f45-9c67-30c7fa02e30f";
         var fromAccount = new Account(fromAccNum, "Ivan Ivanovich", "3210", BigDecimal.TEN);
 
-        when(accountRepository.findById(fromAccNum)).thenReturn(Optional.of(fromAccount));
+        when(accountRepository.findByIdForUpdate(fromAccNum)).thenReturn(Optional.of(fromAccount));
+        stubPinCodes(fromAccount);
 
         assertThrows(NotEnoughFundsException.class, () ->
             accountService.withdraw(fromAccNum, BigDecimal.valueOf(55), fromAccount.getPinCode())
@@ -245,10 +486,108 @@ class AccountServiceImplTest {
         var fromAccNum = "4587fcc0-f406-4f45-9c67-30c7fa02e30f";
         var fromAccount = new Account(fromAccNum, "Ivan Ivanovich", "3210", BigDecimal.TEN);
 
-        when(accountRepository.findById(fromAccNum)).thenReturn(Optional.of(fromAccount));
+        when(accountRepository.findByIdForUpdate(fromAccNum)).thenReturn(Optional.of(fromAccount));
 
         assertThrows(InvalidDataException.class, () ->
             accountService.withdraw(fromAccNum, BigDecimal.TEN, "5")
         );
     }
-}
\ No newline at end of file
+
+    @Test
+    public void getAccountsPage_WithoutSort_OrdersByAccNumAndCounts() {
+        var summary = new AccountSummaryDto("1", "Ivan Ivanovich", BigDecimal.TEN);
+        var request = PageRequest.of(0, 1, Sort.by("accNum"));
+        when(accountRepository.findSummaries(request)).thenReturn(new PageImpl<>(List.of(summary), request, 3));
+
+        var page = accountService.getAccountsPage(PageRequest.of(0, 1), false);
+
+        assertEquals(List.of(summary), page.getAccounts());
+        assertEquals(3L, page.getTotalElements());
+        assertTrue(page.isHasNext());
+    }
+
+    @Test
+    public void getAccountsPage_InSliceMode_SkipsCount() {
+        var summary = new AccountSummaryDto("1", "Ivan Ivanovich", BigDecimal.TEN);
+        var request = PageRequest.of(5, 1, Sort.by("amount"));
+        when(accountRepository.findSummarySlice(request)).thenReturn(new SliceImpl<>(List.of(summary), request, false));
+
+        var page = accountService.getAccountsPage(request, true);
+
+        assertEquals(List.of(summary), page.getAccounts());
+        assertNull(page.getTotalElements());
+        verify(accountRepository, never()).findSummaries(any());
+    }
+
+    @Test
+    public void getAccountsPage_WithUnknownSort_ThrowsInvalidDataException() {
+        assertThrows(InvalidDataException.class, () ->
+            accountService.getAccountsPage(PageRequest.of(0, 10, Sort.by("pinCode")), false)
+        );
+        verifyNoInteractions(accountRepository);
+    }
+
+    @Test
+    public void transfer_WithIdempotencyKey_ReservesKeyAndLinksTransaction() {
+        var from = new Account("1", "Ivan Ivanovich", "3210", BigDecimal.TEN);
+        var to = new Account("2", "Petr Petrovich", "1234", BigDecimal.ZERO);
+        var fingerprint = IdempotencyStore.fingerprint("1", "2", BigDecimal.ONE);
+        var key = new IdempotencyKey("key-1", Operation.TRANSFER, fingerprint, null);
+        when(idempotencyStore.reserve("key-1", Operation.TRANSFER, fingerprint)).thenReturn(key);
+        when(accountRepository.findByIdForUpdate("1")).thenReturn(Optional.of(from));
+        when(accountRepository.findByIdForUpdate("2")).thenReturn(Optional.of(to));
+        stubPinCodes(from);
+
+        accountService.transfer("1", "2", BigDecimal.ONE, "3210", "key-1");
+
+        verify(idempotencyStore).complete(eq(key), any(Transaction.class));
+        assertEquals(BigDecimal.valueOf(9), from.getAmount());
+    }
+
+    @Test
+    public void withdraw_WithUsedIdempotencyKey_DoesNotTouchAccounts() {
+        when(idempotencyStore.reserve(eq("key-1"), eq(Operation.WITHDRAW), any()))
+                .thenThrow(new DuplicateRequestException("Запрос с этим ключом идемпотентности уже выполнен"));
+
+        assertThrows(DuplicateRequestException.class, () ->
+            accountService.withdraw("1", BigDecimal.ONE, "3210", "key-1")
+        );
+        verifyNoInteractions(accountRepository, transactionService);
+    }
+
+    @Test
+    public void withdraw_VerifiesPinBeforeLockingAccount() {
+        var account = new Account("1", "Ivan Ivanovich", pinVerifier.hash("3210"), BigDecimal.TEN);
+        when(accountRepository.findByIdForUpdate("1")).thenReturn(Optional.of(account));
+        stubPinCodes(account);
+
+        accountService.withdraw("1", BigDecimal.ONE, "3210");
+
+        var inOrder = inOrder(pinVerifier, accountRepository);
+        inOrder.verify(pinVerifier).matches("1", account.getPinCode(), "3210");
+        inOrder.verify(accountRepository).findByIdForUpdate("1");
+    }
+
+    @Test
+    public void withdraw_WhenPinChangedAfterVerification_ThrowsInvalidDataException() {
+        var account = new Account("1", "Ivan Ivanovich", pinVerifier.hash("7777"), BigDecimal.TEN);
+        var previous = pinVerifier.hash("3210");
+        when(accountRepository.findPinCode("1")).thenReturn(Optional.of(previous));
+        when(accountRepository.findByIdForUpdate("1")).thenReturn(Optional.of(account));
+
+        assertThrows(InvalidDataException.class, () -> accountService.withdraw("1", BigDecimal.ONE, "3210"));
+        assertEquals(BigDecimal.TEN, account.getAmount());
+    }
+
+    private void stubPinCodes(Account... accounts) {
+        for (var account : accounts) {
+            lenient().when(accountRepository.findPinCode(account.getAccNum())).thenReturn(Optional.of(account.getPinCode()));
+        }
+    }
+
+    private static PinProperties fastPinProperties() {
+        var properties = new PinProperties();
+        properties.setIterations(1_000);
+        return properties;
+    }
+}
@@ -0,0 +1,124 @@
+package ru.aston.bankapi.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.aston.bankapi.model.Operation;
+import ru.aston.bankapi.model.Transaction;
+import ru.aston.bankapi.repository.TransactionRepository;
+
+import java.math.BigDecimal;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Вставки истории операций в секунду до и после пула идентификаторов и пакетов JDBC.
+ * Конфигурация "до" обращается к последовательности на каждую вставку и отправляет
+ * каждую вставку отдельным запросом, "после" - настройки приложения (allocationSize 50
+ * и hibernate.jdbc.batch_size). В каждой конфигурации сравниваются вставка по одной
+ * записи на транзакцию (как в deposit/withdraw) и пакетная через {@link TransactionService#saveAll}.
+ * Запуск: mvn test -Pbenchmark -Dtest=TransactionInsertBenchmarkTest; для сравнения без влияния
+ * прогрева JIT первой конфигурации - по одной, например -Dtest='TransactionInsertBenchmarkTest$SequencePerInsert'.
+ */
+@Slf4j
+@Tag("benchmark")
+@SpringBootTest(properties = {
+        "spring.jpa.show-sql=false",
+        "logging.level.org.hibernate.SQL=WARN",
+        "logging.level.ru.aston.bankapi=WARN",
+        "logging.level.ru.aston.bankapi.service.TransactionInsertBenchmarkTest=INFO"
+})
+class TransactionInsertBenchmarkTest {
+
+    private static final int ROWS = 20_000;
+    private static final int CHUNK = 1_000;
+
+    @Nested
+    @DirtiesContext
+    @TestPropertySource(properties = {
+            "spring.jpa.properties.hibernate.id.optimizer.pooled.preferred=none",
+            "spring.jpa.properties.hibernate.jdbc.batch_size=1",
+            "spring.jpa.properties.hibernate.order_inserts=false"
+    })
+    class SequencePerInsert extends InsertScenario {
+
+        @Test
+        void insertRate() {
+            run("до: последовательность на каждую вставку, без пакетов JDBC");
+        }
+    }
+
+    @Nested
+    @DirtiesContext
+    class PooledAndBatched extends InsertScenario {
+
+        @Test
+        void insertRate() {
+            run("после: пул идентификаторов и пакеты JDBC");
+        }
+    }
+
+    abstract static class InsertScenario {
+
+        @Autowired
+        private TransactionService transactionService;
+
+        @Autowired
+        private TransactionRepository transactionRepository;
+
+        @Autowired
+        private TransactionTemplate transactionTemplate;
+
+        void run(String configuration) {
+            transactionRepository.deleteAllInBatch();
+
+            // Прогрев
+            insertOneByOne(2_000);
+            insertInBulk(2_000);
+            transactionRepository.deleteAllInBatch();
+
+            long single = insertOneByOne(ROWS);
+            long bulk = insertInBulk(ROWS);
+
+            log.info("{}: вставка по одной {} записей/с, пакетная вставка {} записей/с", configuration,
+                    ROWS * 1_000_000_000L / single, ROWS * 1_000_000_000L / bulk);
+
+            assertEquals(2L * ROWS, transactionRepository.count());
+        }
+
+        private long insertOneByOne(int rows) {
+            long start = System.nanoTime();
+            for (int i = 0; i < rows; i++) {
+                var transaction = transaction(i);
+                transactionTemplate.executeWithoutResult(status -> transactionService.save(transaction));
+            }
+            return System.nanoTime() - start;
+        }
+
+        private long insertInBulk(int rows) {
+            long start = System.nanoTime();
+            for (int offset = 0; offset < rows; offset += CHUNK) {
+                List<Transaction> chunk = new ArrayList<>(CHUNK);
+                for (int i = offset; i < Math.min(offset + CHUNK, rows); i++) {
+                    chunk.add(transaction(i));
+                }
+                transactionService.saveAll(chunk);
+            }
+            return System.nanoTime() - start;
+        }
+    }
+
+    private static Transaction transaction(int i) {
+        return new Transaction("acc-" + i % 100, "acc-" + (i + 1) % 100, LocalTime.now(),
+                BigDecimal.valueOf(i % 1000, 2), Operation.TRANSFER);
+    }
+}
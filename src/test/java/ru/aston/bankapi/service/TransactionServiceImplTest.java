@@ -4,16 +4,33 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import jakarta.persistence.EntityManager;
+import org.springframework.data.domain.PageRequest;
+import ru.aston.bankapi.config.HistoryProperties;
+import ru.aston.bankapi.config.ReplicaLagGuard;
+import ru.aston.bankapi.dto.TransactionFilterDto;
+import ru.aston.bankapi.exceptionHandler.InvalidDataException;
+import ru.aston.bankapi.model.AccountHistoryEntry;
+import ru.aston.bankapi.model.Direction;
 import ru.aston.bankapi.model.Operation;
 import ru.aston.bankapi.model.Transaction;
+import ru.aston.bankapi.model.TransactionOutboxEntry;
+import ru.aston.bankapi.repository.AccountHistoryRepository;
+import ru.aston.bankapi.repository.TransactionOutboxRepository;
 import ru.aston.bankapi.repository.TransactionRepository;
 
 import java.math.BigDecimal;
 import java.time.LocalTime;
 import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 @ExtendWith(MockitoExtension.class)
@@ -21,6 +38,16 @@ public class TransactionServiceImplTest {
 
     @Mock
     private TransactionRepository transactionRepository;
+    @Mock
+    private TransactionOutboxRepository transactionOutboxRepository;
+    @Mock
+    private AccountHistoryRepository accountHistoryRepository;
+    @Mock
+    private EntityManager entityManager;
+    @Mock
+    private ReplicaLagGuard replicaLagGuard;
+    @Spy
+    private HistoryProperties historyProperties = new HistoryProperties();
 
     @InjectMocks
     private TransactionServiceImpl transactionService;
@@ -35,11 +62,12 @@ public class TransactionServiceImplTest {
 
         var transactions = Arrays.asList(transaction1, transaction2);
 
-        when(transactionRepository.findAll()).thenReturn(transactions);
+        when(accountHistoryRepository.findByDirectionOrderByTransactionId(Direction.OUTGOING, PageRequest.ofSize(1001)))
+                .thenReturn(outgoing(transaction1, transaction2));
 
         var result = transactionService.getAllTransactions();
 
-        assertEquals(transactions, result);
+        assertEquals(ids(transactions), ids(result));
     }
 
     @Test
@@ -47,15 +75,88 @@ public class TransactionServiceImplTest {
         var transaction1 = new Transaction(1L,"12345","12345",
                 LocalTime.now(),BigDecimal.TEN,Operation.DEPOSIT);
 
-        var transaction2 = new Transaction(2L,"54525","352553",
+        var transaction2 = new Transaction(2L,"54525","12345",
                 LocalTime.now(),BigDecimal.TEN,Operation.TRANSFER);
 
-        var transactions = Arrays.asList(transaction1, transaction2);
-
-        when(transactionRepository.findTransactionsByAccNumFrom("12345")).thenReturn(Arrays.asList(transaction1));
+        var incoming = new AccountHistoryEntry(new TransactionOutboxEntry(transaction2), Direction.INCOMING);
+        when(accountHistoryRepository.findByAccNumOrderByTransactionId("12345", PageRequest.ofSize(1001)))
+                .thenReturn(List.of(outgoing(transaction1).get(0), incoming));
 
         var result = transactionService.getAllTransactionsByAccNum("12345");
 
-        assertEquals(Arrays.asList(transaction1), result);
+        assertEquals(List.of(1L, 2L), ids(result));
+        assertEquals("54525", result.get(1).getAccNumFrom());
+        assertEquals("12345", incoming.getAccNum());
+    }
+
+    @Test
+    public void testGetAllTransactionsByAccNumOverLimitThrowsInvalidDataException() {
+        historyProperties.setMaxPageSize(1);
+        var transaction1 = new Transaction(1L, "12345", "12345", LocalTime.now(), BigDecimal.TEN, Operation.DEPOSIT);
+        var transaction2 = new Transaction(2L, "12345", "12345", LocalTime.now(), BigDecimal.TEN, Operation.DEPOSIT);
+
+        when(accountHistoryRepository.findByAccNumOrderByTransactionId("12345", PageRequest.ofSize(2)))
+                .thenReturn(outgoing(transaction1, transaction2));
+
+        assertThrows(InvalidDataException.class, () -> transactionService.getAllTransactionsByAccNum("12345"));
+    }
+
+    @Test
+    public void testSaveWithoutJournalUsesRepository() {
+        var transaction = new Transaction("12345", "12345", LocalTime.now(), BigDecimal.TEN, Operation.DEPOSIT);
+        var service = new TransactionServiceImpl(transactionRepository, transactionOutboxRepository,
+                accountHistoryRepository, Optional.empty(), historyProperties, entityManager, replicaLagGuard);
+
+        when(transactionRepository.save(transaction)).thenReturn(transaction);
+
+        assertEquals(transaction, service.save(transaction));
+        verify(transactionRepository).save(transaction);
+        verify(transactionOutboxRepository).append(List.of(transaction));
+    }
+
+    @Test
+    public void testGetTransactionsPageReturnsCursorOfLastRow() {
+        var transaction1 = new Transaction(11L, "12345", "12345", LocalTime.now(), BigDecimal.TEN, Operation.DEPOSIT);
+        var transaction2 = new Transaction(12L, "12345", "12345", LocalTime.now(), BigDecimal.TEN, Operation.DEPOSIT);
+        var transaction3 = new Transaction(13L, "12345", "12345", LocalTime.now(), BigDecimal.TEN, Operation.DEPOSIT);
+        var filter = new TransactionFilterDto("12345", null, null, null);
+
+        when(accountHistoryRepository.findPage(10L, "12345", null, null, null, PageRequest.ofSize(3)))
+                .thenReturn(outgoing(transaction1, transaction2, transaction3));
+
+        var page = transactionService.getTransactionsPage(filter, 10L, 2);
+
+        assertEquals(List.of(11L, 12L), ids(page.getTransactions()));
+        assertEquals(12L, page.getNextAfterId());
+    }
+
+    @Test
+    public void testGetTransactionsPageWithoutNextPage() {
+        var transaction1 = new Transaction(1L, "12345", "12345", LocalTime.now(), BigDecimal.TEN, Operation.DEPOSIT);
+        var filter = new TransactionFilterDto();
+
+        when(accountHistoryRepository.findPage(0L, null, null, null, null, PageRequest.ofSize(101)))
+                .thenReturn(outgoing(transaction1));
+
+        var page = transactionService.getTransactionsPage(filter, null, null);
+
+        assertEquals(List.of(1L), ids(page.getTransactions()));
+        assertNull(page.getNextAfterId());
+    }
+
+    @Test
+    public void testGetTransactionsPageRejectsTooLargePage() {
+        assertThrows(InvalidDataException.class, () ->
+                transactionService.getTransactionsPage(new TransactionFilterDto(), null, 100_000));
+    }
+
+    private static List<AccountHistoryEntry> outgoing(Transaction... transactions) {
+        return Arrays.stream(transactions)
+                .map(transaction -> new AccountHistoryEntry(new TransactionOutboxEntry(transaction), Direction.OUTGOING))
+                .toList();
+    }
+
+    private static List<Long> ids(List<Transaction> transactions) {
+        return transactions.stream().map(Transaction::getId).toList();
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,85 @@
+package ru.aston.bankapi.service.cache;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.aston.bankapi.model.Account;
+import ru.aston.bankapi.repository.AccountRepository;
+import ru.aston.bankapi.service.AccountService;
+
+import java.math.BigDecimal;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest(properties = {
+        "spring.jpa.show-sql=false",
+        "logging.level.org.hibernate.SQL=WARN",
+        "logging.level.ru.aston.bankapi=WARN"
+})
+class AccountCacheTest {
+
+    private static final String PIN_CODE = "1234";
+
+    @Autowired
+    private AccountService accountService;
+    @Autowired
+    private AccountRepository accountRepository;
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Test
+    void committedTransfer_IsVisibleOnNextRead() {
+        var from = accountRepository.save(new Account("Ivan", PIN_CODE));
+        var to = accountRepository.save(new Account("Petr", PIN_CODE));
+        accountService.deposit(from.getAccNum(), new BigDecimal("100"));
+
+        assertAmount("100", from.getAccNum());
+        assertAmount("0", to.getAccNum());
+
+        accountService.transfer(from.getAccNum(), to.getAccNum(), new BigDecimal("30"), PIN_CODE);
+
+        assertAmount("70", from.getAccNum());
+        assertAmount("30", to.getAccNum());
+    }
+
+    @Test
+    void uncommittedDeposit_IsNotVisibleToOtherReaders() {
+        var account = accountRepository.save(new Account("Anna", PIN_CODE));
+        assertAmount("0", account.getAccNum());
+
+        transactionTemplate.executeWithoutResult(status -> {
+            accountService.deposit(account.getAccNum(), new BigDecimal("50"));
+
+            var concurrentRead = CompletableFuture
+                    .supplyAsync(() -> accountService.getAccountByAccNum(account.getAccNum()).get().getAmount())
+                    .join();
+            assertEquals(0, concurrentRead.compareTo(BigDecimal.ZERO));
+        });
+
+        assertAmount("50", account.getAccNum());
+    }
+
+    @Test
+    void cacheMetrics_AreRegistered() {
+        var account = accountRepository.save(new Account("Olga", PIN_CODE));
+        accountService.getAccountByAccNum(account.getAccNum());
+        accountService.getAccountByAccNum(account.getAccNum());
+
+        assertTrue(meterRegistry.get("cache.gets").tag("cache", AccountCache.CACHE_NAME).tag("result", "hit")
+                .functionCounter().count() >= 1);
+        assertTrue(meterRegistry.get("cache.gets").tag("cache", AccountCache.CACHE_NAME).tag("result", "miss")
+                .functionCounter().count() >= 1);
+        meterRegistry.get("cache.evictions").tag("cache", AccountCache.CACHE_NAME).functionCounter();
+    }
+
+    private void assertAmount(String expected, String accNum) {
+        var amount = accountService.getAccountByAccNum(accNum).get().getAmount();
+        assertEquals(0, new BigDecimal(expected).compareTo(amount), "баланс счета " + accNum + ": " + amount);
+    }
+}
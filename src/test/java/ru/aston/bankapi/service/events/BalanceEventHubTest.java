@@ -0,0 +1,103 @@
+package ru.aston.bankapi.service.events;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import ru.aston.bankapi.config.EventsProperties;
+import ru.aston.bankapi.model.Account;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+
+class BalanceEventHubTest {
+
+    private static final String ACC_NUM = "1";
+    private static final Pattern AMOUNT = Pattern.compile("\"amount\":(\\d+)");
+
+    private final BalanceEventHub hub = new BalanceEventHub(new EventsProperties(), new SimpleMeterRegistry());
+
+    @AfterEach
+    void tearDown() {
+        hub.stop();
+    }
+
+    @Test
+    void subscribe_DoesNotSendBalanceOlderThanAlreadySent() throws Exception {
+        // Пока снимок читается с отстающей реплики, успевает прийти событие с версией 6.
+        MockMvc mockMvc = MockMvcBuilders.standaloneSetup(new EventsController(() -> {
+            publish(6);
+            return Optional.of(account(5));
+        })).build();
+        MvcResult result = mockMvc.perform(get("/events")).andReturn();
+
+        awaitBalances(result, List.of(6L));
+
+        // afterCommit транзакции с версией 5 выполнился позже, чем у версии 6.
+        publish(5);
+        publish(7);
+
+        awaitBalances(result, List.of(6L, 7L));
+    }
+
+    @Test
+    void subscribe_WhenLoaderFails_ReleasesSubscription() {
+        assertThrows(IllegalStateException.class, () -> hub.subscribe(ACC_NUM, accNum -> {
+            throw new IllegalStateException("Реплика недоступна");
+        }));
+
+        assertEquals(0, hub.subscriberCount());
+    }
+
+    private void publish(long version) {
+        hub.publishAfterCommit(List.of(account(version)), List.of());
+    }
+
+    private static Account account(long version) {
+        return new Account(ACC_NUM, "Ivan", "1234", BigDecimal.valueOf(version), version);
+    }
+
+    private static void awaitBalances(MvcResult result, List<Long> expected) throws Exception {
+        assertTimeoutPreemptively(Duration.ofSeconds(5), () -> {
+            while (balances(result).size() < expected.size()) {
+                Thread.sleep(10);
+            }
+        });
+        assertEquals(expected, balances(result));
+    }
+
+    private static List<Long> balances(MvcResult result) throws Exception {
+        return AMOUNT.matcher(result.getResponse().getContentAsString()).results()
+                .map(match -> Long.parseLong(match.group(1)))
+                .toList();
+    }
+
+    @RestController
+    private class EventsController {
+
+        private final Supplier<Optional<Account>> loader;
+
+        EventsController(Supplier<Optional<Account>> loader) {
+            this.loader = loader;
+        }
+
+        @GetMapping("/events")
+        SseEmitter events() {
+            return hub.subscribe(ACC_NUM, accNum -> loader.get());
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package ru.aston.bankapi.service.history;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.aston.bankapi.dto.TransactionFilterDto;
+import ru.aston.bankapi.model.Account;
+import ru.aston.bankapi.model.AccountHistoryEntry;
+import ru.aston.bankapi.model.Direction;
+import ru.aston.bankapi.model.Operation;
+import ru.aston.bankapi.model.Transaction;
+import ru.aston.bankapi.repository.AccountHistoryRepository;
+import ru.aston.bankapi.repository.AccountRepository;
+import ru.aston.bankapi.repository.TransactionOutboxRepository;
+import ru.aston.bankapi.service.AccountService;
+import ru.aston.bankapi.service.TransactionService;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:historydb;LOCK_TIMEOUT=3000",
+        "spring.jpa.show-sql=false",
+        "logging.level.org.hibernate.SQL=WARN",
+        "logging.level.ru.aston.bankapi=WARN",
+        "bank.history.relay-interval=PT1H",
+        "bank.history.relay-batch-size=2"
+})
+class HistoryRelayTest {
+
+    private static final String PIN_CODE = "1234";
+
+    @Autowired
+    private HistoryRelay historyRelay;
+    @Autowired
+    private AccountService accountService;
+    @Autowired
+    private TransactionService transactionService;
+    @Autowired
+    private AccountRepository accountRepository;
+    @Autowired
+    private TransactionOutboxRepository transactionOutboxRepository;
+    @Autowired
+    private AccountHistoryRepository accountHistoryRepository;
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Test
+    void drain_BuildsHistoryOfBothAccountsFromOutbox() {
+        historyRelay.drain();
+        var from = accountRepository.save(new Account("Ivan", PIN_CODE)).getAccNum();
+        var to = accountRepository.save(new Account("Petr", PIN_CODE)).getAccNum();
+        accountService.deposit(from, new BigDecimal("100"));
+        accountService.transfer(from, to, new BigDecimal("30"), PIN_CODE);
+        accountService.withdraw(to, BigDecimal.TEN, PIN_CODE);
+
+        assertEquals(3, transactionOutboxRepository.count());
+        assertTrue(transactionService.getAllTransactionsByAccNum(from).isEmpty());
+        assertTrue(historyRelay.lag().compareTo(Duration.ZERO) >= 0);
+
+        assertEquals(3, historyRelay.drain());
+
+        assertEquals(0, transactionOutboxRepository.count());
+        assertEquals(Duration.ZERO, historyRelay.lag());
+        assertEquals(List.of(Operation.DEPOSIT, Operation.TRANSFER),
+                operations(transactionService.getAllTransactionsByAccNum(from)));
+        assertEquals(List.of(Operation.TRANSFER, Operation.WITHDRAW),
+                operations(transactionService.getAllTransactionsByAccNum(to)));
+
+        var outgoingOfTo = transactionService.getTransactionsPage(new TransactionFilterDto(to, null, null, null), null, 10);
+        assertEquals(List.of(Operation.WITHDRAW), operations(outgoingOfTo.getTransactions()));
+    }
+
+    @Test
+    void drain_AfterFailedBatch_ResumesWithoutLosingOrDuplicatingRows() {
+        historyRelay.drain();
+        var accNum = accountRepository.save(new Account("Ivan", PIN_CODE)).getAccNum();
+        accountService.deposit(accNum, BigDecimal.ONE);
+        accountService.deposit(accNum, BigDecimal.TEN);
+
+        // Транзакция переноса откатывается, как при падении процесса до фиксации.
+        assertThrows(IllegalStateException.class, () -> transactionTemplate.executeWithoutResult(status -> {
+            accountHistoryRepository.saveAll(transactionOutboxRepository.findAll().stream()
+                    .map(entry -> new AccountHistoryEntry(entry, Direction.OUTGOING))
+                    .toList());
+            transactionOutboxRepository.deleteAllInBatch();
+            throw new IllegalStateException("crash");
+        }));
+
+        assertEquals(2, transactionOutboxRepository.count());
+        assertEquals(2, historyRelay.drain());
+        assertEquals(2, accountHistoryRepository.findByAccNumOrderByTransactionId(accNum, Pageable.unpaged()).size());
+    }
+
+    private static List<Operation> operations(List<Transaction> transactions) {
+        return transactions.stream().map(Transaction::getOperation).toList();
+    }
+}
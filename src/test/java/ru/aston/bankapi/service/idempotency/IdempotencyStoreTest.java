@@ -0,0 +1,61 @@
+package ru.aston.bankapi.service.idempotency;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import ru.aston.bankapi.config.IdempotencyProperties;
+import ru.aston.bankapi.model.Operation;
+import ru.aston.bankapi.model.Transaction;
+import ru.aston.bankapi.repository.IdempotencyKeyRepository;
+
+import java.math.BigDecimal;
+import java.time.LocalTime;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+
+class IdempotencyStoreTest {
+
+    private final IdempotencyStore store = new IdempotencyStore(mock(IdempotencyKeyRepository.class),
+            new IdempotencyProperties());
+
+    @BeforeEach
+    void setUp() {
+        TransactionSynchronizationManager.initSynchronization();
+    }
+
+    @AfterEach
+    void tearDown() {
+        TransactionSynchronizationManager.clearSynchronization();
+    }
+
+    @Test
+    void complete_InJournalMode_LinksKeyByJournalSeqAssignedBeforeCommit() {
+        var record = store.newKey("key-1", Operation.DEPOSIT, IdempotencyStore.fingerprint("1", "1", BigDecimal.TEN));
+        var transaction = new Transaction("1", "1", LocalTime.NOON, BigDecimal.TEN, Operation.DEPOSIT);
+
+        store.complete(record, transaction);
+        // Журнал назначает номер записи в своей синхронизации beforeCommit.
+        transaction.setJournalSeq(7L);
+        TransactionSynchronizationManager.getSynchronizations().forEach(sync -> sync.beforeCommit(false));
+        TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+
+        assertNull(record.getTransactionId());
+        assertEquals(7L, record.getJournalSeq());
+        assertTrue(store.find("key-1").isPresent());
+    }
+
+    @Test
+    void isSameRequest_ComparesAccountsAndAmount() {
+        var record = store.newKey("key-1", Operation.TRANSFER, IdempotencyStore.fingerprint("1", "2", new BigDecimal("30")));
+
+        assertTrue(IdempotencyStore.isSameRequest(record, IdempotencyStore.fingerprint("1", "2", new BigDecimal("30.00"))));
+        assertFalse(IdempotencyStore.isSameRequest(record, IdempotencyStore.fingerprint("1", "2", new BigDecimal("31"))));
+        assertFalse(IdempotencyStore.isSameRequest(record, IdempotencyStore.fingerprint("1", "3", new BigDecimal("30"))));
+    }
+}
@@ -0,0 +1,176 @@
+package ru.aston.bankapi.service.journal;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import ru.aston.bankapi.config.JournalProperties;
+import ru.aston.bankapi.model.Operation;
+import ru.aston.bankapi.model.Transaction;
+import ru.aston.bankapi.repository.TransactionOutboxRepository;
+import ru.aston.bankapi.repository.TransactionRepository;
+
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class TransactionJournalTest {
+
+    @Mock
+    private TransactionRepository transactionRepository;
+    @Mock
+    private TransactionOutboxRepository transactionOutboxRepository;
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @TempDir
+    private Path directory;
+
+    private final List<Transaction> stored = new ArrayList<>();
+
+    @AfterEach
+    void clearSynchronization() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void append_WithoutTransaction_LoadsRecordIntoRepository() throws Exception {
+        storeSavedTransactions();
+        var journal = start();
+
+        journal.append(transaction("100.50", Operation.DEPOSIT));
+
+        assertTrue(journal.awaitLoaded(Duration.ofSeconds(5)));
+        journal.stop();
+
+        assertEquals(1, stored.size());
+        assertEquals(1L, stored.get(0).getJournalSeq());
+        assertEquals(new BigDecimal("100.50"), stored.get(0).getAmount());
+    }
+
+    @Test
+    void append_InRolledBackTransaction_IsNotLoaded() throws Exception {
+        var journal = start();
+        var transaction = transaction("10", Operation.WITHDRAW);
+
+        TransactionSynchronizationManager.initSynchronization();
+        journal.append(transaction);
+        for (var synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+            synchronization.beforeCommit(false);
+            synchronization.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK);
+        }
+
+        assertNotNull(transaction.getJournalSeq());
+        assertTrue(journal.awaitLoaded(Duration.ofSeconds(5)));
+        journal.stop();
+
+        assertTrue(stored.isEmpty());
+    }
+
+    @Test
+    void start_ReplaysRecordsMissingFromRepository() throws Exception {
+        when(transactionRepository.saveAll(any())).thenThrow(new IllegalStateException("БД недоступна"));
+        var crashed = start();
+        crashed.append(transaction("1", Operation.DEPOSIT));
+        crashed.append(transaction("2", Operation.TRANSFER));
+        crashed.append(transaction("3", Operation.WITHDRAW));
+        crashed.stop();
+
+        when(transactionRepository.findJournalSeqsBetween(anyLong(), anyLong())).thenReturn(Set.of(1L));
+        storeSavedTransactions();
+        var recovered = start();
+        recovered.stop();
+
+        assertEquals(List.of(2L, 3L), stored.stream().map(Transaction::getJournalSeq).toList());
+        assertEquals(List.of(new BigDecimal("2"), new BigDecimal("3")), stored.stream().map(Transaction::getAmount).toList());
+    }
+
+    @Test
+    void start_AfterRestart_ContinuesSequenceOfLoadedRecords() throws Exception {
+        storeSavedTransactions();
+        when(transactionRepository.findMaxJournalSeq()).thenAnswer(invocation -> stored.stream()
+                .map(Transaction::getJournalSeq).max(Long::compare));
+        when(transactionRepository.findJournalSeqsBetween(anyLong(), anyLong())).thenAnswer(invocation ->
+                stored.stream().map(Transaction::getJournalSeq).collect(Collectors.toSet()));
+
+        var first = start();
+        first.append(transaction("1", Operation.DEPOSIT));
+        first.append(transaction("2", Operation.DEPOSIT));
+        assertTrue(first.awaitLoaded(Duration.ofSeconds(5)));
+        first.stop();
+        // Перезапуск без новых операций оставляет только пустой активный сегмент.
+        start().stop();
+
+        var restarted = start();
+        restarted.append(transaction("3", Operation.DEPOSIT));
+        assertTrue(restarted.awaitLoaded(Duration.ofSeconds(5)));
+        restarted.stop();
+
+        assertEquals(List.of(1L, 2L, 3L), stored.stream().map(Transaction::getJournalSeq).toList());
+    }
+
+    @Test
+    void codec_SkipsTornRecord() {
+        var buffer = ByteBuffer.allocate(1024);
+        var original = transaction("5.25", Operation.TRANSFER);
+        JournalCodec.encode(JournalRecord.data(7, original), buffer);
+        int end = buffer.position();
+        JournalCodec.encode(JournalRecord.data(8, transaction("6", Operation.TRANSFER)), buffer);
+        buffer.put(end + JournalCodec.HEADER_SIZE + 3, (byte) 0x7f);
+        buffer.flip();
+
+        var first = JournalCodec.decode(buffer);
+
+        assertEquals(7, first.seq());
+        assertEquals(new BigDecimal("5.25"), first.transaction().getAmount());
+        assertEquals(original.getCreatedAt().truncatedTo(ChronoUnit.MICROS), first.transaction().getCreatedAt());
+        assertNull(JournalCodec.decode(buffer));
+    }
+
+    private TransactionJournal start() throws Exception {
+        var properties = new JournalProperties();
+        properties.setDirectory(directory);
+        properties.setLoadInterval(Duration.ofMillis(10));
+        var journal = new TransactionJournal(transactionRepository, transactionOutboxRepository, transactionManager, properties);
+        journal.start();
+        return journal;
+    }
+
+    @SuppressWarnings("unchecked")
+    private void storeSavedTransactions() {
+        var captor = ArgumentCaptor.forClass(Iterable.class);
+        doAnswer(invocation -> {
+            ((Iterable<Transaction>) invocation.getArgument(0)).forEach(stored::add);
+            return null;
+        }).when(transactionRepository).saveAll(captor.capture());
+    }
+
+    private static Transaction transaction(String amount, Operation operation) {
+        return new Transaction("from", "to", LocalTime.NOON, new BigDecimal(amount), operation);
+    }
+}
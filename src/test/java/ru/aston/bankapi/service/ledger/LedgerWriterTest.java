@@ -0,0 +1,76 @@
+package ru.aston.bankapi.service.ledger;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.boot.actuate.health.Status;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.transaction.PlatformTransactionManager;
+import ru.aston.bankapi.config.LedgerProperties;
+import ru.aston.bankapi.model.Operation;
+import ru.aston.bankapi.model.Transaction;
+import ru.aston.bankapi.repository.AccountRepository;
+import ru.aston.bankapi.repository.IdempotencyKeyRepository;
+import ru.aston.bankapi.repository.TransactionOutboxRepository;
+import ru.aston.bankapi.repository.TransactionRepository;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalTime;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+class LedgerWriterTest {
+
+    @TempDir
+    private Path deadLetterDirectory;
+
+    @Test
+    void persist_WhenBatchKeepsFailing_DeadLettersItAndMarksEngineUnhealthy() throws Exception {
+        var accountRepository = mock(AccountRepository.class);
+        doThrow(new DataAccessResourceFailureException("БД недоступна"))
+                .when(accountRepository).addToAmount(any(), any());
+        var properties = new LedgerProperties();
+        properties.setFlushInterval(Duration.ofMillis(1));
+        properties.setMaxFlushAttempts(3);
+        properties.setDeadLetterDirectory(deadLetterDirectory);
+        var writer = new LedgerWriter(accountRepository, mock(TransactionRepository.class),
+                mock(TransactionOutboxRepository.class), mock(IdempotencyKeyRepository.class),
+                mock(PlatformTransactionManager.class), properties,
+                new ObjectMapper().registerModule(new JavaTimeModule()));
+        writer.start();
+        try {
+            var transaction = new Transaction("A", "A", LocalTime.NOON, BigDecimal.TEN, Operation.DEPOSIT);
+            writer.submit(LedgerEntry.of(transaction, "A", BigDecimal.TEN, null));
+
+            assertFalse(writer.flush(Duration.ofSeconds(5)));
+
+            verify(accountRepository, times(3)).addToAmount(eq("A"), any());
+            assertEquals(Status.DOWN, writer.health().getStatus());
+            assertThrows(IllegalStateException.class, writer::checkHealthy);
+            assertTrue(deadLetters().contains("\"accNumFrom\":\"A\""));
+        } finally {
+            writer.stop();
+        }
+    }
+
+    private String deadLetters() throws IOException {
+        try (var files = Files.list(deadLetterDirectory)) {
+            var file = files.findFirst().orElseThrow();
+            return Files.readString(file);
+        }
+    }
+}
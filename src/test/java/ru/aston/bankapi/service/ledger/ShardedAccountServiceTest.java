@@ -0,0 +1,113 @@
+package ru.aston.bankapi.service.ledger;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpStatus;
+import ru.aston.bankapi.controller.ApiAccountController;
+import ru.aston.bankapi.exceptionHandler.NotEnoughFundsException;
+import ru.aston.bankapi.exceptionHandler.NotFoundException;
+import ru.aston.bankapi.repository.AccountRepository;
+import ru.aston.bankapi.service.AccountService;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest(properties = {
+        "bank.ledger.enabled=true",
+        "bank.ledger.shards=4",
+        "spring.jpa.show-sql=false",
+        "logging.level.org.hibernate.SQL=WARN",
+        "logging.level.ru.aston.bankapi=WARN"
+})
+class ShardedAccountServiceTest {
+
+    private static final String PIN_CODE = "1234";
+    private static final BigDecimal INITIAL_AMOUNT = new BigDecimal("1000");
+
+    @Autowired
+    private AccountService accountService;
+
+    @Autowired
+    private AccountRepository accountRepository;
+
+    @Autowired
+    private LedgerWriter ledgerWriter;
+
+    @Autowired
+    private ApiAccountController apiAccountController;
+
+    @Test
+    void concurrentTransfers_ConserveBalancesInMemoryAndInDatabase() throws InterruptedException {
+        assertInstanceOf(ShardedAccountService.class, accountService);
+
+        int accounts = 16;
+        List<String> accNums = new ArrayList<>();
+        for (int i = 0; i < accounts; i++) {
+            var accNum = accountService.createAccount("Ledger " + i, PIN_CODE).orElseThrow().getAccNum();
+            accountService.deposit(accNum, INITIAL_AMOUNT);
+            accNums.add(accNum);
+        }
+
+        int transfers = 10_000;
+        var done = new CountDownLatch(transfers);
+        ExecutorService executor = Executors.newFixedThreadPool(16);
+        for (int i = 0; i < transfers; i++) {
+            executor.execute(() -> {
+                var random = ThreadLocalRandom.current();
+                try {
+                    accountService.transfer(accNums.get(random.nextInt(accounts)), accNums.get(random.nextInt(accounts)),
+                            BigDecimal.valueOf(random.nextInt(1, 50)), PIN_CODE);
+                } catch (NotEnoughFundsException ignored) {
+                } finally {
+                    done.countDown();
+                }
+            });
+        }
+        assertTrue(done.await(2, TimeUnit.MINUTES));
+        executor.shutdown();
+
+        var inMemoryTotal = BigDecimal.ZERO;
+        for (var accNum : accNums) {
+            inMemoryTotal = inMemoryTotal.add(accountService.getAccountByAccNum(accNum).orElseThrow().getAmount());
+        }
+        assertEquals(0, INITIAL_AMOUNT.multiply(BigDecimal.valueOf(accounts)).compareTo(inMemoryTotal));
+
+        assertTrue(ledgerWriter.flush(Duration.ofSeconds(30)));
+        for (var accNum : accNums) {
+            var inMemory = accountService.getAccountByAccNum(accNum).orElseThrow().getAmount();
+            var stored = accountRepository.findById(accNum).orElseThrow().getAmount();
+            assertEquals(0, inMemory.compareTo(stored), accNum);
+        }
+    }
+
+    @Test
+    void transfer_ToMissingAccount_LeavesBalanceUnchanged() {
+        var accNum = accountService.createAccount("Ledger", PIN_CODE).orElseThrow().getAccNum();
+        accountService.deposit(accNum, BigDecimal.TEN);
+
+        assertThrows(NotFoundException.class,
+                () -> accountService.transfer(accNum, "missing-account", BigDecimal.ONE, PIN_CODE));
+
+        assertEquals(0, BigDecimal.TEN.compareTo(accountService.getAccountByAccNum(accNum).orElseThrow().getAmount()));
+    }
+
+    @Test
+    void subscribe_WithLedger_IsRejectedBecauseNoEventsArePublished() {
+        var accNum = accountService.createAccount("Ledger", PIN_CODE).orElseThrow().getAccNum();
+
+        assertEquals(HttpStatus.NOT_IMPLEMENTED, apiAccountController.subscribe(accNum).getStatusCode());
+    }
+}
@@ -0,0 +1,88 @@
+package ru.aston.bankapi.service.pin;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.aston.bankapi.config.ConcurrencyProperties;
+import ru.aston.bankapi.config.LockingMode;
+import ru.aston.bankapi.model.Account;
+import ru.aston.bankapi.repository.AccountRepository;
+import ru.aston.bankapi.service.AccountService;
+
+import java.math.BigDecimal;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:pindb;LOCK_TIMEOUT=3000",
+        "spring.jpa.show-sql=false",
+        "logging.level.org.hibernate.SQL=WARN",
+        "logging.level.ru.aston.bankapi=WARN",
+        "bank.pin.iterations=1000",
+        "bank.pin.migration-batch-size=2"
+})
+class PinMigrationTest {
+
+    @Autowired
+    private PinMigration pinMigration;
+    @Autowired
+    private AccountRepository accountRepository;
+    @Autowired
+    private AccountService accountService;
+    @Autowired
+    private ConcurrencyProperties concurrencyProperties;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Test
+    void migrate_HashesPlaintextPinsAndKeepsThemUsable() {
+        var plain = accountRepository.save(new Account("Ivan", "1234"));
+        accountRepository.save(new Account("Petr", "4321"));
+        accountRepository.save(new Account("Anna", "0000"));
+        var hashed = accountService.createAccount("Olga", "5555").orElseThrow();
+        accountService.deposit(plain.getAccNum(), BigDecimal.TEN);
+
+        assertEquals(3, pinMigration.migrate());
+        assertEquals(0, pinMigration.migrate());
+
+        accountRepository.findAll().forEach(account -> assertTrue(PinVerifier.isHashed(account.getPinCode())));
+        assertEquals(hashed.getPinCode(), accountRepository.findById(hashed.getAccNum()).orElseThrow().getPinCode());
+
+        accountService.withdraw(plain.getAccNum(), BigDecimal.ONE, "1234");
+        assertEquals(0, new BigDecimal("9").compareTo(
+                accountService.getAccountByAccNum(plain.getAccNum()).orElseThrow().getAmount()));
+    }
+
+    @Test
+    void migrate_ConcurrentOptimisticUpdateDoesNotRestorePlaintextPin() {
+        concurrencyProperties.setMode(LockingMode.OPTIMISTIC);
+        try {
+            var account = accountRepository.save(new Account("Ivan", "1234"));
+            var transactionTemplate = new TransactionTemplate(transactionManager);
+
+            // Пополнение прочитало счет до миграции, а фиксируется после нее.
+            assertThrows(ObjectOptimisticLockingFailureException.class, () ->
+                    transactionTemplate.executeWithoutResult(status -> {
+                        var stale = accountRepository.findById(account.getAccNum()).orElseThrow();
+                        stale.setAmount(stale.getAmount().add(BigDecimal.TEN));
+                        assertTrue(CompletableFuture.supplyAsync(pinMigration::migrate).join() > 0);
+                    }));
+
+            assertTrue(PinVerifier.isHashed(accountRepository.findPinCode(account.getAccNum()).orElseThrow()));
+
+            accountService.deposit(account.getAccNum(), BigDecimal.TEN);
+            accountService.withdraw(account.getAccNum(), BigDecimal.ONE, "1234");
+            assertTrue(PinVerifier.isHashed(accountRepository.findPinCode(account.getAccNum()).orElseThrow()));
+            assertEquals(0, new BigDecimal("9").compareTo(
+                    accountService.getAccountByAccNum(account.getAccNum()).orElseThrow().getAmount()));
+        } finally {
+            concurrencyProperties.setMode(LockingMode.PESSIMISTIC);
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package ru.aston.bankapi.service.pin;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import ru.aston.bankapi.config.PinProperties;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PinVerifierTest {
+
+    private static final String ACC_NUM = "4587fcc0-f406-4f45-9c67-30c7fa02e30f";
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final PinVerifier pinVerifier = new PinVerifier(properties(), meterRegistry);
+
+    @Test
+    void hash_IsSaltedAndVerifiesOnlyOriginalPin() {
+        var first = pinVerifier.hash("1234");
+        var second = pinVerifier.hash("1234");
+
+        assertTrue(PinVerifier.isHashed(first));
+        assertNotEquals(first, second);
+        assertTrue(pinVerifier.matches(ACC_NUM, first, "1234"));
+        assertTrue(pinVerifier.matches("other", second, "1234"));
+        assertFalse(pinVerifier.matches("third", first, "4321"));
+        assertFalse(pinVerifier.matches("third", first, null));
+    }
+
+    @Test
+    void matches_RepeatedSuccess_SkipsDerivationUntilInvalidated() {
+        var stored = pinVerifier.hash("1234");
+        var afterHash = derivations();
+
+        assertTrue(pinVerifier.matches(ACC_NUM, stored, "1234"));
+        assertEquals(afterHash + 1, derivations());
+        for (int i = 0; i < 10; i++) {
+            assertTrue(pinVerifier.matches(ACC_NUM, stored, "1234"));
+        }
+        assertEquals(afterHash + 1, derivations());
+
+        assertFalse(pinVerifier.matches(ACC_NUM, stored, "0000"));
+        assertEquals(afterHash + 2, derivations());
+
+        pinVerifier.invalidate(ACC_NUM);
+        assertTrue(pinVerifier.matches(ACC_NUM, stored, "1234"));
+        assertEquals(afterHash + 3, derivations());
+    }
+
+    @Test
+    void matches_AfterPinChange_DoesNotAcceptCachedOldPin() {
+        var oldHash = pinVerifier.hash("1234");
+        assertTrue(pinVerifier.matches(ACC_NUM, oldHash, "1234"));
+
+        var newHash = pinVerifier.hash("7777");
+
+        assertFalse(pinVerifier.matches(ACC_NUM, newHash, "1234"));
+        assertTrue(pinVerifier.matches(ACC_NUM, newHash, "7777"));
+    }
+
+    @Test
+    void matches_LegacyPlaintext_ComparesWithoutHashing() {
+        assertTrue(pinVerifier.matches(ACC_NUM, "1234", "1234"));
+        assertFalse(pinVerifier.matches(ACC_NUM, "1234", "1235"));
+        assertFalse(pinVerifier.matches(ACC_NUM, "pbkdf2-sha256$broken", "1234"));
+        assertEquals(0, derivations());
+    }
+
+    private double derivations() {
+        return meterRegistry.get("bank.pin.derivations").counter().count();
+    }
+
+    private static PinProperties properties() {
+        var properties = new PinProperties();
+        properties.setIterations(1_000);
+        return properties;
+    }
+}
@@ -0,0 +1,68 @@
+package ru.aston.bankapi.service.provisioning;
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import ru.aston.bankapi.dto.AccountDto;
+import ru.aston.bankapi.repository.AccountRepository;
+import ru.aston.bankapi.service.pin.PinVerifier;
+
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Скорость пакетной загрузки счетов с готовыми хешами пин-кодов. Запуск: mvn test -Pbenchmark
+ */
+@Slf4j
+@Tag("benchmark")
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:provisioningbenchdb;LOCK_TIMEOUT=3000",
+        "spring.jpa.show-sql=false",
+        "logging.level.org.hibernate.SQL=WARN",
+        "logging.level.ru.aston.bankapi=WARN",
+        "logging.level.ru.aston.bankapi.service.provisioning.AccountProvisioningBenchmarkTest=INFO"
+})
+class AccountProvisioningBenchmarkTest {
+
+    private static final int ROWS = 200_000;
+
+    @Autowired
+    private AccountProvisioner accountProvisioner;
+    @Autowired
+    private AccountRepository accountRepository;
+    @Autowired
+    private PinVerifier pinVerifier;
+
+    @Test
+    void provisionWithPrehashedPins() {
+        var hash = pinVerifier.hash("1234");
+        var created = new LongAdder();
+
+        // Прогрев
+        provision(20_000, hash, created);
+
+        long start = System.nanoTime();
+        provision(ROWS, hash, created);
+        long elapsed = System.nanoTime() - start;
+
+        log.info("Пакетная загрузка: {} счетов/мин", ROWS * 60_000_000_000L / elapsed);
+
+        assertEquals(20_000 + ROWS, created.sum());
+        assertEquals(20_000L + ROWS, accountRepository.count());
+    }
+
+    private void provision(int rows, String hash, LongAdder created) {
+        var accounts = Stream.iterate(0, i -> i + 1).limit(rows)
+                .map(i -> new AccountDto("client-" + i, hash))
+                .iterator();
+        accountProvisioner.provision(accounts, result -> {
+            if (result.getAccNum() != null) {
+                created.increment();
+            }
+        });
+    }
+}
@@ -0,0 +1,59 @@
+package ru.aston.bankapi.service.ratelimit;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class PinLockoutsTest {
+
+    private final AtomicLong now = new AtomicLong();
+
+    @Test
+    void recordFailure_LocksUntilAttemptRestoredAndResetUnlocks() {
+        var lockouts = new PinLockouts(2, Duration.ofSeconds(2), now::get);
+
+        lockouts.recordFailure("A");
+        assertEquals(0, lockouts.waitTime("A"));
+        lockouts.recordFailure("A");
+        lockouts.recordFailure("A");
+        assertEquals(TimeUnit.SECONDS.toNanos(1), lockouts.waitTime("A"));
+        assertEquals(0, lockouts.waitTime("B"));
+
+        lockouts.reset("A");
+        assertEquals(0, lockouts.waitTime("A"));
+    }
+
+    @Test
+    void recordFailure_SubSecondLockoutRefillsAtFiniteRate() {
+        var lockouts = new PinLockouts(1, Duration.ofMillis(500), now::get);
+
+        lockouts.recordFailure("A");
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(500), lockouts.waitTime("A"));
+
+        now.addAndGet(TimeUnit.MILLISECONDS.toNanos(500));
+        assertEquals(0, lockouts.waitTime("A"));
+    }
+
+    @Test
+    void purgeExpired_KeepsLockedAccountsWhateverOtherFailures() {
+        var lockouts = new PinLockouts(1, Duration.ofMinutes(15), now::get);
+
+        lockouts.recordFailure("locked");
+        for (int i = 0; i < 10_000; i++) {
+            lockouts.recordFailure("key-" + i);
+        }
+        now.addAndGet(TimeUnit.MINUTES.toNanos(10));
+        lockouts.purgeExpired();
+        assertEquals(10_001, lockouts.size());
+        assertEquals(TimeUnit.MINUTES.toNanos(5), lockouts.waitTime("locked"));
+
+        now.addAndGet(TimeUnit.MINUTES.toNanos(5));
+        lockouts.purgeExpired();
+        assertEquals(0, lockouts.size());
+        assertEquals(0, lockouts.waitTime("locked"));
+    }
+}
@@ -0,0 +1,64 @@
+package ru.aston.bankapi.service.ratelimit;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TokenBucketsTest {
+
+    private final AtomicLong now = new AtomicLong();
+
+    @Test
+    void tryConsume_AllowsBurstThenRefillsAtRate() {
+        var buckets = new TokenBuckets(3, 2, 100, 4, now::get);
+
+        for (int i = 0; i < 3; i++) {
+            assertEquals(0, buckets.tryConsume("A"));
+        }
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(500), buckets.tryConsume("A"));
+        assertEquals(0, buckets.tryConsume("B"));
+
+        now.addAndGet(TimeUnit.MILLISECONDS.toNanos(500));
+        assertEquals(0, buckets.tryConsume("A"));
+        assertTrue(buckets.tryConsume("A") > 0);
+
+        now.addAndGet(TimeUnit.SECONDS.toNanos(10));
+        for (int i = 0; i < 3; i++) {
+            assertEquals(0, buckets.tryConsume("A"));
+        }
+        assertTrue(buckets.tryConsume("A") > 0);
+    }
+
+    @Test
+    void drain_LocksKeyUntilTokenRestoredAndResetUnlocks() {
+        var buckets = new TokenBuckets(2, 1, 100, 4, now::get);
+
+        buckets.drain("A");
+        assertEquals(0, buckets.waitTime("A"));
+        buckets.drain("A");
+        buckets.drain("A");
+        assertEquals(TimeUnit.SECONDS.toNanos(1), buckets.waitTime("A"));
+        assertEquals(0, buckets.waitTime("B"));
+
+        buckets.reset("A");
+        assertEquals(0, buckets.waitTime("A"));
+    }
+
+    @Test
+    void size_IsBoundedByEvictingLeastRecentlyUsedKeys() {
+        var buckets = new TokenBuckets(1, 1, 8, 1, now::get);
+
+        buckets.tryConsume("hot");
+        for (int i = 0; i < 100; i++) {
+            buckets.tryConsume("key-" + i);
+            buckets.waitTime("hot");
+        }
+
+        assertEquals(8, buckets.size());
+        assertTrue(buckets.waitTime("hot") > 0);
+    }
+}
@@ -0,0 +1,93 @@
+package ru.aston.bankapi.service.reconciliation;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import ru.aston.bankapi.model.Account;
+import ru.aston.bankapi.repository.AccountRepository;
+import ru.aston.bankapi.repository.TransactionOutboxRepository;
+import ru.aston.bankapi.service.AccountService;
+
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.doAnswer;
+
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:reconciliationjournaldb",
+        "spring.jpa.show-sql=false",
+        "logging.level.org.hibernate.SQL=WARN",
+        "logging.level.ru.aston.bankapi=WARN",
+        "bank.journal.enabled=true",
+        "bank.history.relay-interval=PT1H",
+        "bank.reconciliation.journal-load-timeout=2s"
+})
+class ReconciliationJobJournalTest {
+
+    @TempDir
+    static Path journalDirectory;
+
+    @DynamicPropertySource
+    static void journalProperties(DynamicPropertyRegistry registry) {
+        registry.add("bank.journal.directory", journalDirectory::toString);
+    }
+
+    @Autowired
+    private ReconciliationJob reconciliationJob;
+    @Autowired
+    private AccountService accountService;
+    @Autowired
+    private AccountRepository accountRepository;
+    @SpyBean
+    private TransactionOutboxRepository transactionOutboxRepository;
+
+    private final CountDownLatch loaderGate = new CountDownLatch(1);
+
+    @BeforeEach
+    void holdJournalLoader() {
+        doAnswer(invocation -> {
+            loaderGate.await(10, TimeUnit.SECONDS);
+            return invocation.callRealMethod();
+        }).when(transactionOutboxRepository).append(anyCollection());
+    }
+
+    @AfterEach
+    void releaseJournalLoader() {
+        loaderGate.countDown();
+    }
+
+    @Test
+    void reconcile_WaitsForJournalInsteadOfReportingUnloadedOperations() {
+        var accNum = accountRepository.save(new Account("Ivan", "1234")).getAccNum();
+        accountService.deposit(accNum, new BigDecimal("100"));
+
+        // Баланс уже зафиксирован, а операция загрузится в transactions чуть позже.
+        CompletableFuture.runAsync(loaderGate::countDown,
+                CompletableFuture.delayedExecutor(300, TimeUnit.MILLISECONDS));
+
+        assertEquals(0, reconciliationJob.reconcile().mismatchCount());
+    }
+
+    @Test
+    void reconcile_WhileJournalIsBehind_IsDeferred() {
+        var accNum = accountRepository.save(new Account("Petr", "1234")).getAccNum();
+        accountService.deposit(accNum, new BigDecimal("100"));
+
+        assertThrows(ReconciliationJob.JournalBehindException.class, reconciliationJob::reconcile);
+
+        loaderGate.countDown();
+        assertEquals(0, reconciliationJob.reconcile().mismatchCount());
+    }
+}
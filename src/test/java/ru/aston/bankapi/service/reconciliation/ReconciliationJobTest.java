@@ -0,0 +1,70 @@
+package ru.aston.bankapi.service.reconciliation;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.aston.bankapi.model.Account;
+import ru.aston.bankapi.repository.AccountRepository;
+import ru.aston.bankapi.service.AccountService;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest(properties = {
+        "spring.jpa.show-sql=false",
+        "logging.level.org.hibernate.SQL=WARN",
+        "logging.level.ru.aston.bankapi=WARN",
+        "bank.reconciliation.chunk-size=3",
+        "bank.reconciliation.workers=2"
+})
+class ReconciliationJobTest {
+
+    private static final String PIN_CODE = "1234";
+
+    @Autowired
+    private ReconciliationJob reconciliationJob;
+    @Autowired
+    private AccountService accountService;
+    @Autowired
+    private AccountRepository accountRepository;
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Test
+    void reconcile_ReportsOnlyAccountsWhoseAmountDiffersFromTheirOperations() {
+        List<String> accNums = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            var accNum = accountRepository.save(new Account("Ivan", PIN_CODE)).getAccNum();
+            accountService.deposit(accNum, new BigDecimal("100"));
+            if (!accNums.isEmpty()) {
+                accountService.transfer(accNum, accNums.get(i - 1), new BigDecimal("3"), PIN_CODE);
+            }
+            accNums.add(accNum);
+        }
+        accountService.withdraw(accNums.get(3), new BigDecimal("50"), PIN_CODE);
+        accountService.transfer(accNums.get(4), accNums.get(4), BigDecimal.TEN, PIN_CODE);
+
+        var clean = reconciliationJob.reconcile();
+        assertEquals(0, clean.mismatchCount());
+        assertTrue(clean.accountsChecked() >= accNums.size());
+
+        var broken = accNums.get(5);
+        transactionTemplate.executeWithoutResult(status -> accountRepository.addToAmount(broken, BigDecimal.ONE));
+
+        var report = reconciliationJob.reconcile();
+
+        assertEquals(1, report.mismatchCount());
+        var mismatch = report.mismatches().get(0);
+        assertEquals(broken, mismatch.accNum());
+        assertEquals(0, new BigDecimal("101").compareTo(mismatch.amount()));
+        assertEquals(0, new BigDecimal("100").compareTo(mismatch.expected()));
+        assertEquals(report, reconciliationJob.getLastReport());
+
+        transactionTemplate.executeWithoutResult(status -> accountRepository.addToAmount(broken, BigDecimal.ONE.negate()));
+    }
+}
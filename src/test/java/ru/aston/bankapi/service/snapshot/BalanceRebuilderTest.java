@@ -0,0 +1,98 @@
+package ru.aston.bankapi.service.snapshot;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.aston.bankapi.model.Account;
+import ru.aston.bankapi.model.BalanceSnapshot;
+import ru.aston.bankapi.repository.AccountRepository;
+import ru.aston.bankapi.service.AccountService;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+@SpringBootTest(properties = {
+        "spring.jpa.show-sql=false",
+        "logging.level.org.hibernate.SQL=WARN",
+        "logging.level.ru.aston.bankapi=WARN",
+        "bank.snapshots.batch-size=2"
+})
+class BalanceRebuilderTest {
+
+    private static final String PIN_CODE = "1234";
+
+    @Autowired
+    private BalanceRebuilder balanceRebuilder;
+    @Autowired
+    private AccountService accountService;
+    @Autowired
+    private AccountRepository accountRepository;
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Test
+    void balanceAsOf_CombinesSnapshotWithLaterOperations() throws InterruptedException {
+        var first = accountRepository.save(new Account("Ivan", PIN_CODE)).getAccNum();
+        var second = accountRepository.save(new Account("Petr", PIN_CODE)).getAccNum();
+        accountService.deposit(first, new BigDecimal("100"));
+        accountService.transfer(first, second, new BigDecimal("30"), PIN_CODE);
+        accountService.transfer(first, first, new BigDecimal("10"), PIN_CODE);
+
+        assertNotNull(snapshot(first));
+        assertNull(snapshot(first));
+        var afterSnapshot = pause();
+
+        accountService.withdraw(first, new BigDecimal("5"), PIN_CODE);
+        accountService.transfer(second, first, new BigDecimal("20"), PIN_CODE);
+
+        assertEquals(0, new BigDecimal("70").compareTo(balanceRebuilder.balanceAsOf(first, afterSnapshot)));
+        assertEquals(0, new BigDecimal("30").compareTo(balanceRebuilder.balanceAsOf(second, afterSnapshot)));
+        assertEquals(0, amount(first).compareTo(balanceRebuilder.balanceAsOf(first, Instant.now())));
+        assertEquals(0, amount(second).compareTo(balanceRebuilder.balanceAsOf(second, Instant.now())));
+        assertEquals(0, BigDecimal.ZERO.compareTo(balanceRebuilder.balanceAsOf(first, Instant.EPOCH)));
+    }
+
+    @Test
+    void balancesAsOf_RebuildsEveryAccountInParallel() {
+        List<String> accNums = new ArrayList<>();
+        for (int i = 0; i < 9; i++) {
+            var accNum = accountRepository.save(new Account("Anna", PIN_CODE)).getAccNum();
+            accountService.deposit(accNum, BigDecimal.valueOf(100 + i));
+            if (!accNums.isEmpty()) {
+                accountService.transfer(accNum, accNums.get(i - 1), BigDecimal.valueOf(i), PIN_CODE);
+            }
+            accNums.add(accNum);
+        }
+        balanceRebuilder.takeSnapshots();
+        accountService.deposit(accNums.get(0), new BigDecimal("7.5"));
+
+        var balances = balanceRebuilder.balancesAsOf(Instant.now());
+
+        for (var accNum : accNums) {
+            assertEquals(0, amount(accNum).compareTo(balances.get(accNum)), accNum);
+        }
+        assertEquals(accountRepository.count(), balances.size());
+    }
+
+    private BalanceSnapshot snapshot(String accNum) {
+        return transactionTemplate.execute(status -> balanceRebuilder.snapshot(accNum));
+    }
+
+    private BigDecimal amount(String accNum) {
+        return accountRepository.findById(accNum).orElseThrow().getAmount();
+    }
+
+    private static Instant pause() throws InterruptedException {
+        Thread.sleep(5);
+        var instant = Instant.now();
+        Thread.sleep(5);
+        return instant;
+    }
+}
@@ -0,0 +1,146 @@
+package ru.aston.bankapi;
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+import ru.aston.bankapi.service.AccountService;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Сравнение платформенных и виртуальных потоков Tomcat при медленных клиентах:
+ * каждый запрос обращается к БД и затем 200 мс удерживает поток. Измеряется максимум
+ * одновременно обрабатываемых запросов и p99 задержки.
+ * Запуск: mvn test -Pjdk21,benchmark
+ */
+@Slf4j
+@Tag("benchmark")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "spring.jpa.show-sql=false",
+        "logging.level.org.hibernate.SQL=WARN",
+        "logging.level.ru.aston.bankapi=WARN",
+        "logging.level.ru.aston.bankapi.VirtualThreadLoadTest=INFO",
+        "server.tomcat.threads.max=50",
+        "server.tomcat.accept-count=2000"
+})
+@Import(VirtualThreadLoadTest.SlowEndpoint.class)
+class VirtualThreadLoadTest {
+
+    private static final int REQUESTS = 1_000;
+    private static final long HOLD_MILLIS = 200;
+    private static final int PLATFORM_THREADS = 50;
+
+    @Nested
+    @TestPropertySource(properties = "bank.virtual-threads.enabled=false")
+    class PlatformThreads extends LoadScenario {
+
+        @Test
+        void inFlightRequests_AreCappedByThreadPool() throws Exception {
+            var maxInFlight = run("платформенные потоки");
+
+            assertTrue(maxInFlight <= PLATFORM_THREADS);
+        }
+    }
+
+    @Nested
+    @TestPropertySource(properties = "bank.virtual-threads.enabled=true")
+    class VirtualThreads extends LoadScenario {
+
+        @Test
+        void inFlightRequests_AreNotCappedByThreadPool() throws Exception {
+            var maxInFlight = run("виртуальные потоки");
+
+            assertTrue(maxInFlight > PLATFORM_THREADS);
+        }
+    }
+
+    abstract static class LoadScenario {
+
+        @LocalServerPort
+        private int port;
+
+        int run(String mode) throws Exception {
+            // Прогрев JIT, чтобы в замер попало время ожидания потоков, а не компиляции.
+            send(REQUESTS / 5);
+            SlowEndpoint.reset();
+
+            var latencies = send(REQUESTS);
+            latencies.sort(null);
+            long p99 = latencies.get((int) Math.ceil(REQUESTS * 0.99) - 1) / 1_000_000;
+            log.info("{}: одновременно в обработке до {} запросов, p99 {} мс",
+                    mode, SlowEndpoint.maxInFlight.get(), p99);
+            return SlowEndpoint.maxInFlight.get();
+        }
+
+        private List<Long> send(int count) {
+            var request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/test/slow-client")).build();
+            List<Long> latencies = new ArrayList<>(count);
+
+            try (var executor = Executors.newVirtualThreadPerTaskExecutor();
+                 var client = HttpClient.newBuilder().executor(executor).build()) {
+                List<CompletableFuture<Long>> responses = new ArrayList<>(count);
+                for (int i = 0; i < count; i++) {
+                    long start = System.nanoTime();
+                    responses.add(client.sendAsync(request, HttpResponse.BodyHandlers.discarding())
+                            .thenApply(response -> {
+                                assertEquals(200, response.statusCode());
+                                return System.nanoTime() - start;
+                            }));
+                }
+                for (var response : responses) {
+                    latencies.add(response.join());
+                }
+            }
+            return latencies;
+        }
+    }
+
+    @RestController
+    static class SlowEndpoint {
+
+        static final AtomicInteger inFlight = new AtomicInteger();
+        static final AtomicInteger maxInFlight = new AtomicInteger();
+
+        private final AccountService accountService;
+
+        SlowEndpoint(AccountService accountService) {
+            this.accountService = accountService;
+        }
+
+        static void reset() {
+            inFlight.set(0);
+            maxInFlight.set(0);
+        }
+
+        @GetMapping("/test/slow-client")
+        public String slowClient() throws InterruptedException {
+            maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+            try {
+                accountService.getAccountsPage(PageRequest.of(0, 10), true);
+                Thread.sleep(HOLD_MILLIS);
+                return "ok";
+            } finally {
+                inFlight.decrementAndGet();
+            }
+        }
+    }
+}